@@ -3,16 +3,17 @@ package com.taoyuanx.littlefile.combine.core.store.ftp;
 import com.taoyuanx.littlefile.combine.core.FileStoreTypeEnum;
 import com.taoyuanx.littlefile.combine.core.store.AbstractFileStoreService;
 import com.taoyuanx.littlefile.combine.core.store.FileStoreService;
+import com.taoyuanx.littlefile.combine.core.store.ftp.FtpClientPool.PooledClient;
 import com.taoyuanx.littlefile.combine.core.utils.Utils;
 import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
-import org.apache.commons.net.ftp.FTPReply;
 import org.apache.commons.net.ftp.FTPSClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.TrustManager;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
@@ -24,6 +25,10 @@ public class FtpFileService extends AbstractFileStoreService implements FileStor
     private TrustManager trustManager;
     private boolean isWorkDirNotEmpty = false, isSSL = false;
     private int default_timeout = 3000;
+    /**
+     * pool 连接池,各操作借出已登录的连接,完成后归还
+     */
+    private volatile FtpClientPool pool;
 
     public FtpFileService(String host, int port, String username, String password, String workDir, String keyManagerPath, String keyManagerPassword,
                           String trustManagerPath, String trustManagerPassword) {
@@ -44,13 +49,28 @@ public class FtpFileService extends AbstractFileStoreService implements FileStor
         }
 
         this.port = port;
+        this.pool = new FtpClientPool(this::createFtpClient, FtpClientPool.MAX_TOTAL_DEFAULT,
+                FtpClientPool.MAX_IDLE_TIME_DEFAULT, FtpClientPool.MAX_LIFETIME_DEFAULT);
     }
 
     public FtpFileService(String host, int port, String username, String password, String workDir) {
         this(host, port, username, password, workDir, null, null, null, null);
     }
 
-    public FTPClient getFtpClient() throws Exception {
+    /**
+     * 设置连接池
+     *
+     * @param maxTotal    最大连接数
+     * @param maxIdleTime 空闲超时时间(毫秒)
+     * @param maxLifetime 最长存活时间(毫秒)
+     */
+    public void setPool(int maxTotal, long maxIdleTime, long maxLifetime) {
+        FtpClientPool old = this.pool;
+        this.pool = new FtpClientPool(this::createFtpClient, maxTotal, maxIdleTime, maxLifetime);
+        old.close();
+    }
+
+    private FTPClient createFtpClient() throws Exception {
         try {
             FTPClient ftpClient = null;
             if (isSSL) {
@@ -65,10 +85,10 @@ public class FtpFileService extends AbstractFileStoreService implements FileStor
             }
             ftpClient.setDefaultTimeout(default_timeout);
             ftpClient.connect(host, port);
-            ftpClient.login(username, password);
-            int reply = ftpClient.getReplyCode();
-            if (!FTPReply.isPositiveCompletion(reply)) {
-                LOG.info("{} ftp server 拒绝连接", host);
+            if (!ftpClient.login(username, password)) {
+                int reply = ftpClient.getReplyCode();
+                ftpClient.disconnect();
+                throw new IOException(host + " ftp server 拒绝连接, reply " + reply);
             }
             ftpClient.setFileType(FTP.BINARY_FILE_TYPE);
             if (isWorkDirNotEmpty) {
@@ -78,72 +98,89 @@ public class FtpFileService extends AbstractFileStoreService implements FileStor
             return ftpClient;
 
         } catch (Exception e) {
-            LOG.error("{} ftp server connect failed,异常", e);
+            LOG.error("{} ftp server connect failed,异常", host, e);
             throw e;
         }
     }
 
-    @Override
-    public String store(InputStream inputStream, String fileName) throws Exception {
-        FTPClient ftpClient = getFtpClient();
+    /**
+     * 借出连接执行操作,操作异常时关闭连接
+     */
+    public <T> T execute(FtpCallback<T> callback) throws Exception {
+        FtpClientPool current = pool;
+        PooledClient pooled = current.borrow();
+        boolean broken = true;
         try {
-            FTPClient client = getFtpClient();
-            String filePath = Utils.buildFilePath(Utils.newFileName(fileName));
-            mkdirs(filePath);
-            client.storeFile(filePath, inputStream);
-            return Utils.addFileStoreProtocol(getStoreProtocol(), filePath);
+            T result = callback.doInFtp(pooled.getClient());
+            broken = false;
+            return result;
         } finally {
-            close(ftpClient);
+            current.release(pooled, broken);
         }
     }
 
     @Override
-    public void delete(String fileId) throws Exception {
-        FTPClient ftpClient = getFtpClient();
-        try {
-            fileId = Utils.removeFileStoreProtocol(fileId);
-            ftpClient.deleteFile(fileId);
-        } finally {
-            close(ftpClient);
-        }
+    public String store(InputStream inputStream, String fileName) throws Exception {
+        String filePath = Utils.buildFilePath(Utils.newFileName(fileName));
+        return execute(client -> {
+            mkdirs(client, filePath);
+            if (!client.storeFile(filePath, inputStream)) {
+                throw new IOException("store file " + filePath + " failed, reply " + client.getReplyCode());
+            }
+            return Utils.addFileStoreProtocol(getStoreProtocol(), filePath);
+        });
+    }
 
+    @Override
+    public void delete(String fileId) throws Exception {
+        String filePath = Utils.removeFileStoreProtocol(fileId);
+        execute(client -> client.deleteFile(filePath));
     }
 
     @Override
     public void downLoad(String fileId, OutputStream outputStream) throws Exception {
-        FTPClient ftpClient = getFtpClient();
-        try {
-            fileId = Utils.removeFileStoreProtocol(fileId);
-            ftpClient.retrieveFile(fileId, outputStream);
-        } finally {
-            close(ftpClient);
-        }
+        String filePath = Utils.removeFileStoreProtocol(fileId);
+        execute(client -> client.retrieveFile(filePath, outputStream));
     }
 
     public void mkdirs(String path) throws Exception {
         try {
-            FTPClient client = getFtpClient();
-            int index = path.lastIndexOf("/");
-            if (index > 0) {
-                client.makeDirectory(path.substring(0, index));
-            } else if (path.endsWith("/")) {
-                client.makeDirectory(path);
-            }
+            execute(client -> {
+                mkdirs(client, path);
+                return null;
+            });
         } catch (Exception e) {
             LOG.error("mkdirs {}  failed,异常", path, e);
             throw e;
         }
     }
 
-    public void close(FTPClient ftpClient) {
-        try {
-            if (ftpClient != null) {
-                ftpClient.disconnect();
-            }
-        } catch (Exception e) {
-            LOG.error("close error", e);
+    private static void mkdirs(FTPClient client, String path) throws IOException {
+        int index = path.lastIndexOf("/");
+        if (index > 0) {
+            client.makeDirectory(path.substring(0, index));
+        } else if (path.endsWith("/")) {
+            client.makeDirectory(path);
         }
     }
 
+    public FtpClientPool getPool() {
+        return pool;
+    }
+
+    /**
+     * 关闭连接池
+     */
+    public void close() {
+        pool.close();
+    }
+
+    /**
+     * 使用连接的操作
+     */
+    public interface FtpCallback<T> {
+        T doInFtp(FTPClient client) throws Exception;
+    }
+
 
 }
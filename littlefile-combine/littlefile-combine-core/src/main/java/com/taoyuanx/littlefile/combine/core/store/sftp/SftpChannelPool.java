@@ -0,0 +1,322 @@
+package com.taoyuanx.littlefile.combine.core.store.sftp;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.Session;
+
+/**
+ * @author dushitaoyuan
+ * @desc sftp 连接池, 保持少量长连接的ssh会话, 每个会话复用多个sftp通道, 避免每次操作ssh握手及密钥交换
+ * 借出时空闲超过校验间隔的通道发送stat校验, 会话断开时重新连接, 空闲超时的通道及超过最长存活时间的会话关闭
+ * combine 不依赖 littlefile-core, 与 littlefile-core 的 sftp.SftpChannelPool 相同, 修改时需同步
+ * @date 2026/10/18
+ */
+public class SftpChannelPool {
+    private static final Logger LOG = LoggerFactory.getLogger(SftpChannelPool.class);
+    public static final int MAX_SESSIONS_DEFAULT = 2;
+    public static final int CHANNELS_PER_SESSION_DEFAULT = 5;
+    public static final long MAX_IDLE_TIME_DEFAULT = TimeUnit.MINUTES.toMillis(1);
+    public static final long MAX_LIFETIME_DEFAULT = TimeUnit.MINUTES.toMillis(30);
+    /**
+     * 空闲超过该时间的通道借出前校验
+     */
+    private static final long VALIDATE_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+    private static final long BORROW_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * factory 创建已连接的会话
+     * workDir 通道打开后进入的目录
+     * channelsPerSession 每个会话最多通道数(需不超过服务端 MaxSessions)
+     * sessions 会话
+     * idle 空闲通道,后进先出
+     * permits 通道总数限制: 会话数*每个会话通道数
+     */
+    private final SessionFactory factory;
+    private final String workDir;
+    private final int channelsPerSession;
+    private final long maxIdleTime;
+    private final long maxLifetime;
+    private final List<SessionHolder> sessions = new ArrayList<>();
+    private final LinkedBlockingDeque<PooledChannel> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final int maxChannels;
+    private volatile boolean closed = false;
+
+    public SftpChannelPool(SessionFactory factory, String workDir, int maxSessions, int channelsPerSession,
+            long maxIdleTime, long maxLifetime) {
+        this.factory = factory;
+        this.workDir = workDir;
+        this.channelsPerSession = channelsPerSession;
+        this.maxIdleTime = maxIdleTime;
+        this.maxLifetime = maxLifetime;
+        this.maxChannels = maxSessions * channelsPerSession;
+        this.permits = new Semaphore(maxChannels);
+    }
+
+    /**
+     * 借出通道,用完后需调用 {@link #release(PooledChannel, boolean)}
+     */
+    public PooledChannel borrow() throws Exception {
+        if (closed) {
+            throw new IllegalStateException("sftp pool closed");
+        }
+        if (!permits.tryAcquire(BORROW_TIMEOUT, TimeUnit.MILLISECONDS)) {
+            throw new TimeoutException("borrow sftp channel timeout");
+        }
+        try {
+            PooledChannel pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                if (isValid(pooled)) {
+                    return pooled;
+                }
+                destroy(pooled);
+            }
+            try {
+                return openChannel();
+            } catch (Exception e) {
+                //会话已断开,重新连接一次
+                LOG.warn("open sftp channel error {}, reconnect", e.getMessage());
+                return openChannel();
+            }
+        } catch (Exception e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 归还通道
+     *
+     * @param broken 操作出现异常,通道状态未知时关闭
+     */
+    public void release(PooledChannel pooled, boolean broken) {
+        try {
+            long now = System.currentTimeMillis();
+            if (!broken && !closed && !pooled.holder.isExpired(now) && resetDir(pooled)) {
+                pooled.lastUsed = now;
+                idle.offerFirst(pooled);
+            } else {
+                destroy(pooled);
+            }
+            evictIdle(now);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * 在已有会话上打开通道,会话已满或断开时新建会话
+     */
+    private PooledChannel openChannel() throws Exception {
+        SessionHolder holder = null;
+        long now = System.currentTimeMillis();
+        evictSessions(now);
+        synchronized (this) {
+            for (SessionHolder candidate : sessions) {
+                if (candidate.session.isConnected() && !candidate.isExpired(now) && candidate.channels < channelsPerSession) {
+                    holder = candidate;
+                    break;
+                }
+            }
+            if (holder != null) {
+                holder.channels++;
+            }
+        }
+        if (holder == null) {
+            holder = new SessionHolder(factory.create());
+            holder.channels = 1;
+            synchronized (this) {
+                sessions.add(holder);
+            }
+            LOG.debug("sftp session created, sessions {}", sessions.size());
+        }
+        try {
+            ChannelSftp channel = (ChannelSftp) holder.session.openChannel("sftp");
+            channel.connect();
+            if (workDir != null && !workDir.isEmpty()) {
+                channel.cd(workDir);
+            }
+            return new PooledChannel(channel, holder, channel.pwd());
+        } catch (Exception e) {
+            closeSession(holder, true);
+            throw e;
+        }
+    }
+
+    /**
+     * 恢复初始目录,上传时会进入子目录
+     */
+    private boolean resetDir(PooledChannel pooled) {
+        try {
+            if (!pooled.baseDir.equals(pooled.channel.pwd())) {
+                pooled.channel.cd(pooled.baseDir);
+            }
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void evictIdle(long now) {
+        Iterator<PooledChannel> iterator = idle.descendingIterator();
+        while (iterator.hasNext()) {
+            PooledChannel pooled = iterator.next();
+            if (now - pooled.lastUsed <= maxIdleTime) {
+                break;
+            }
+            if (idle.removeLastOccurrence(pooled)) {
+                destroy(pooled);
+            }
+        }
+        evictSessions(now);
+    }
+
+    /**
+     * 关闭没有通道且已断开或过期的会话,最后一个通道关闭时会话未过期的会话在此关闭
+     */
+    private void evictSessions(long now) {
+        List<SessionHolder> evicted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<SessionHolder> iterator = sessions.iterator();
+            while (iterator.hasNext()) {
+                SessionHolder holder = iterator.next();
+                if (holder.channels <= 0 && (holder.isExpired(now) || !holder.session.isConnected())) {
+                    iterator.remove();
+                    evicted.add(holder);
+                }
+            }
+        }
+        for (SessionHolder holder : evicted) {
+            holder.session.disconnect();
+        }
+    }
+
+    private boolean isValid(PooledChannel pooled) {
+        long now = System.currentTimeMillis();
+        if (pooled.holder.isExpired(now) || now - pooled.lastUsed > maxIdleTime
+                || !pooled.channel.isConnected() || !pooled.holder.session.isConnected()) {
+            return false;
+        }
+        if (now - pooled.lastUsed <= VALIDATE_INTERVAL) {
+            return true;
+        }
+        try {
+            pooled.channel.stat(pooled.baseDir);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void destroy(PooledChannel pooled) {
+        try {
+            pooled.channel.disconnect();
+        } catch (Exception e) {
+        }
+        closeSession(pooled.holder, false);
+    }
+
+    /**
+     * 通道关闭,会话上没有通道且已断开,过期或连接池关闭时关闭会话
+     *
+     * @param broken 会话上无法打开通道,不再使用
+     */
+    private void closeSession(SessionHolder holder, boolean broken) {
+        boolean disconnect;
+        synchronized (this) {
+            holder.channels--;
+            if (broken) {
+                holder.broken = true;
+            }
+            disconnect = holder.channels <= 0 && (holder.broken || closed || !holder.session.isConnected()
+                    || holder.isExpired(System.currentTimeMillis()));
+            if (disconnect) {
+                sessions.remove(holder);
+            }
+        }
+        if (disconnect) {
+            holder.session.disconnect();
+        }
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * 借出中的通道数
+     */
+    public int getActiveCount() {
+        return maxChannels - permits.availablePermits();
+    }
+
+    public synchronized int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * 关闭连接池,借出的通道归还时关闭
+     */
+    public void close() {
+        closed = true;
+        PooledChannel pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    /**
+     * 会话及其上打开的通道数
+     */
+    private class SessionHolder {
+        private final Session session;
+        private final long createdAt = System.currentTimeMillis();
+        private int channels = 0;
+        private boolean broken = false;
+
+        SessionHolder(Session session) {
+            this.session = session;
+        }
+
+        boolean isExpired(long now) {
+            return broken || now - createdAt > maxLifetime;
+        }
+    }
+
+    /**
+     * 池中的通道
+     */
+    public static class PooledChannel {
+        private final ChannelSftp channel;
+        private final SessionHolder holder;
+        private final String baseDir;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        PooledChannel(ChannelSftp channel, SessionHolder holder, String baseDir) {
+            this.channel = channel;
+            this.holder = holder;
+            this.baseDir = baseDir;
+        }
+
+        public ChannelSftp getChannel() {
+            return channel;
+        }
+    }
+
+    /**
+     * 创建已连接的会话
+     */
+    public interface SessionFactory {
+        Session create() throws Exception;
+    }
+}
@@ -2,10 +2,13 @@ package com.taoyuanx.littlefile.combine.core.store.sftp;
 
 import com.jcraft.jsch.ChannelSftp;
 import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpException;
 import com.taoyuanx.littlefile.combine.core.FileStoreTypeEnum;
 import com.taoyuanx.littlefile.combine.core.store.AbstractFileStoreService;
 import com.taoyuanx.littlefile.combine.core.store.FileStoreService;
+import com.taoyuanx.littlefile.combine.core.store.sftp.SftpChannelPool.PooledChannel;
 import com.taoyuanx.littlefile.combine.core.utils.Utils;
 
 import java.io.InputStream;
@@ -22,6 +25,14 @@ public class SftpFileService extends AbstractFileStoreService implements FileSto
     private int port;
     private boolean usePassword = true, isWorkDirNotEmpty = false;
     private JSch jsch;
+    /**
+     * 会话保活探测间隔(毫秒)
+     */
+    private static final int SERVER_ALIVE_INTERVAL = 30000;
+    /**
+     * pool 连接池,长连接会话上复用sftp通道,各操作借出通道,完成后归还
+     */
+    private volatile SftpChannelPool pool;
 
     /**
      * 私钥认证
@@ -47,47 +58,84 @@ public class SftpFileService extends AbstractFileStoreService implements FileSto
             usePassword = false;
         }
         jsch = new JSch(); // 创建JSch对象
+        if (!usePassword) {
+            try {
+                jsch.addIdentity(privateKey, privateKeyPassword);
+            } catch (JSchException e) {
+                throw new RuntimeException("load privateKey failed", e);
+            }
+        }
+        this.pool = new SftpChannelPool(this::createSession, workDir, SftpChannelPool.MAX_SESSIONS_DEFAULT,
+                SftpChannelPool.CHANNELS_PER_SESSION_DEFAULT, SftpChannelPool.MAX_IDLE_TIME_DEFAULT,
+                SftpChannelPool.MAX_LIFETIME_DEFAULT);
     }
 
     public SftpFileService(String host, int port, String username, String password, String workDir) {
         this(host, port, username, password, workDir, null, null);
     }
 
+    /**
+     * 设置连接池
+     *
+     * @param maxSessions        最大会话数
+     * @param channelsPerSession 每个会话最多通道数
+     * @param maxIdleTime        通道空闲超时时间(毫秒)
+     * @param maxLifetime        会话最长存活时间(毫秒)
+     */
+    public void setPool(int maxSessions, int channelsPerSession, long maxIdleTime, long maxLifetime) {
+        SftpChannelPool old = this.pool;
+        this.pool = new SftpChannelPool(this::createSession, workDir, maxSessions, channelsPerSession, maxIdleTime,
+                maxLifetime);
+        old.close();
+    }
+
+    /**
+     * 借出通道执行操作,通道异常时关闭
+     */
+    public <T> T execute(SftpCallback<T> callback) throws Exception {
+        SftpChannelPool current = pool;
+        PooledChannel pooled = current.borrow();
+        boolean broken = true;
+        try {
+            T result = callback.doInSftp(pooled.getChannel());
+            broken = false;
+            return result;
+        } catch (SftpException e) {
+            //服务端返回的错误(文件不存在,无权限等),通道正常
+            broken = e.id == ChannelSftp.SSH_FX_NO_CONNECTION || e.id == ChannelSftp.SSH_FX_CONNECTION_LOST;
+            throw e;
+        } finally {
+            current.release(pooled, broken);
+        }
+    }
+
     @Override
     public String store(InputStream inputStream, String fileName) throws Exception {
-        ChannelSftp channel = getSftpChannel();
-        try {
-            String filePath = Utils.buildFilePath(Utils.newFileName(fileName));
+        String filePath = Utils.buildFilePath(Utils.newFileName(fileName));
+        execute(channel -> {
             String file = mkdirs(filePath, channel);
             channel.put(inputStream, file);
-            return Utils.addFileStoreProtocol(getStoreProtocol(), filePath);
-        } finally {
-            closeChannel(channel);
-        }
+            return null;
+        });
+        return Utils.addFileStoreProtocol(getStoreProtocol(), filePath);
     }
 
     @Override
     public void delete(String fileId) throws Exception {
-        ChannelSftp channel = getSftpChannel();
-        try {
-            fileId = Utils.removeFileStoreProtocol(fileId);
-            channel.rm(fileId);
-        } finally {
-            closeChannel(channel);
-        }
+        String filePath = Utils.removeFileStoreProtocol(fileId);
+        execute(channel -> {
+            channel.rm(filePath);
+            return null;
+        });
     }
 
     @Override
     public void downLoad(String fileId, OutputStream outputStream) throws Exception {
-
-
-        ChannelSftp channel = getSftpChannel();
-        try {
-            fileId = Utils.removeFileStoreProtocol(fileId);
-            channel.get(fileId, outputStream);
-        } finally {
-            closeChannel(channel);
-        }
+        String filePath = Utils.removeFileStoreProtocol(fileId);
+        execute(channel -> {
+            channel.get(filePath, outputStream);
+            return null;
+        });
     }
 
 
@@ -118,46 +166,41 @@ public class SftpFileService extends AbstractFileStoreService implements FileSto
     }
 
     /**
-     * 关闭channel
-     *
-     * @param channel
-     * @throws Exception
+     * 关闭连接池
      */
-    public void closeChannel(ChannelSftp channel) throws Exception {
-        if (channel != null) {
-            channel.disconnect();
-            if (channel.getSession() != null) {
-                channel.getSession().disconnect();
-            }
-        }
+    public void close() {
+        pool.close();
+    }
+
+    public SftpChannelPool getPool() {
+        return pool;
     }
 
     /**
-     * 打开stfp 通道
+     * 创建ssh会话, 开启保活探测, 断开的会话由连接池重连
      *
-     * @return sftp通道
+     * @return ssh会话
      * @throws Exception
      */
-    private ChannelSftp getSftpChannel() throws Exception {
+    private Session createSession() throws Exception {
         Session session = jsch.getSession(username, host, port);
         if (usePassword) {
             session.setPassword(password);
-        } else {
-            jsch.addIdentity(privateKey, privateKeyPassword);
         }
         Properties config = new Properties();
         config.put("StrictHostKeyChecking", "no");
         session.setTimeout(3000);
         session.setConfig(config);
+        session.setServerAliveInterval(SERVER_ALIVE_INTERVAL);
         session.connect();
-        ChannelSftp channel = (ChannelSftp) session.openChannel("sftp");
-        channel.connect();
-        if (isWorkDirNotEmpty) {
-            channel.cd(workDir);
-        }
-        return channel;
-
+        return session;
+    }
 
+    /**
+     * 使用通道的操作
+     */
+    public interface SftpCallback<T> {
+        T doInSftp(ChannelSftp channel) throws Exception;
     }
 
 
@@ -1,5 +1,7 @@
 package com.taoyuanx.littlefile.combine.config;
 
+import com.taoyuanx.littlefile.combine.core.store.ftp.FtpClientPool;
+import com.taoyuanx.littlefile.combine.core.store.sftp.SftpChannelPool;
 import lombok.Data;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -73,6 +75,13 @@ public class FileProperties implements InitializingBean {
         private String host;
         private Integer port;
         private String workDir;
+        /**
+         * 连接池最大会话数,每个会话通道数,通道空闲超时时间(毫秒),会话最长存活时间(毫秒)
+         */
+        private int poolMaxSessions = SftpChannelPool.MAX_SESSIONS_DEFAULT;
+        private int poolChannelsPerSession = SftpChannelPool.CHANNELS_PER_SESSION_DEFAULT;
+        private long poolMaxIdleTime = SftpChannelPool.MAX_IDLE_TIME_DEFAULT;
+        private long poolMaxLifetime = SftpChannelPool.MAX_LIFETIME_DEFAULT;
     }
     @Data
     public static class FtpConfig {
@@ -81,6 +90,12 @@ public class FileProperties implements InitializingBean {
         private String host;
         private Integer port;
         private String workDir;
+        /**
+         * 连接池最大连接数,空闲超时时间(毫秒),最长存活时间(毫秒)
+         */
+        private int poolMaxTotal = FtpClientPool.MAX_TOTAL_DEFAULT;
+        private long poolMaxIdleTime = FtpClientPool.MAX_IDLE_TIME_DEFAULT;
+        private long poolMaxLifetime = FtpClientPool.MAX_LIFETIME_DEFAULT;
     }
     @Data
     public static class FdfsConfig {
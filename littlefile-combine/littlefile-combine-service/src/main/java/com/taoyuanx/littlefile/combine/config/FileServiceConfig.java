@@ -38,16 +38,19 @@ public class FileServiceConfig {
     @Bean(name = "sftpFileService")
     public AbstractFileStoreService sftpFileService(FileProperties fileProperties) {
         FileProperties.SftpConfig sftpConfig = fileProperties.getSftp();
-        AbstractFileStoreService sftpStoreService = new SftpFileService(sftpConfig.getHost(), sftpConfig.getPort(), sftpConfig.getUsername(),
+        SftpFileService sftpStoreService = new SftpFileService(sftpConfig.getHost(), sftpConfig.getPort(), sftpConfig.getUsername(),
                 sftpConfig.getPassword(), sftpConfig.getWorkDir(), null, null);
+        sftpStoreService.setPool(sftpConfig.getPoolMaxSessions(), sftpConfig.getPoolChannelsPerSession(),
+                sftpConfig.getPoolMaxIdleTime(), sftpConfig.getPoolMaxLifetime());
         return sftpStoreService;
     }
 
     @Bean(name = "ftpFileService")
     public AbstractFileStoreService ftpFileService(FileProperties fileProperties) {
         FileProperties.FtpConfig ftpConfig = fileProperties.getFtp();
-        AbstractFileStoreService ftpStoreService = new FtpFileService(ftpConfig.getHost(), ftpConfig.getPort(), ftpConfig.getUsername(),
+        FtpFileService ftpStoreService = new FtpFileService(ftpConfig.getHost(), ftpConfig.getPort(), ftpConfig.getUsername(),
                 ftpConfig.getPassword(), ftpConfig.getWorkDir());
+        ftpStoreService.setPool(ftpConfig.getPoolMaxTotal(), ftpConfig.getPoolMaxIdleTime(), ftpConfig.getPoolMaxLifetime());
         return ftpStoreService;
     }
 
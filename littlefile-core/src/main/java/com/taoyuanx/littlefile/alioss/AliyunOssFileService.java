@@ -10,6 +10,7 @@ import com.aliyun.oss.model.ObjectMetadata;
 import javax.annotation.PreDestroy;
 import java.io.*;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.UUID;
@@ -112,28 +113,34 @@ public class AliyunOssFileService {
      * @param dest
      * @throws Throwable
      */
-    public void download(String fileKey, String dest) {
-        ossClient.getObject(new GetObjectRequest(bucketName, fileKey), new File(dest));
+    public ObjectMetadata download(String fileKey, String dest) {
+        return ossClient.getObject(new GetObjectRequest(bucketName, fileKey), new File(dest));
     }
 
     /**
-     * 文件下载
+     * 文件下载,写入失败(如下载被取消)时断开连接,不读完剩余数据
      *
      * @param fileKey
+     * @return 文件元信息
      * @throws Throwable
      */
-    public void download(String fileKey, OutputStream outputStream, int buffSize) throws IOException {
+    public ObjectMetadata download(String fileKey, OutputStream outputStream, int buffSize) throws IOException {
         GetObjectRequest getObjectRequest = new GetObjectRequest(bucketName, fileKey);
         OSSObject object = ossClient.getObject(getObjectRequest);
-        InputStream objectContent = object.getObjectContent();
-        byte[] buffer = new byte[buffSize];
-        int len = 0;
-        while ((len = objectContent.read(buffer)) > 0) {
-            outputStream.write(buffer, 0, len);
-            outputStream.flush();
+        try {
+            InputStream objectContent = object.getObjectContent();
+            byte[] buffer = new byte[buffSize];
+            int len = 0;
+            while ((len = objectContent.read(buffer)) > 0) {
+                outputStream.write(buffer, 0, len);
+                outputStream.flush();
+            }
+            objectContent.close();
+        } catch (IOException | RuntimeException e) {
+            object.forcedClose();
+            throw e;
         }
-        objectContent.close();
-
+        return object.getObjectMetadata();
     }
 
     /**
@@ -162,6 +169,29 @@ public class AliyunOssFileService {
     }
 
 
+    /**
+     * 范围下载,不压缩
+     *
+     * @param fileKey
+     * @param offset  起始位置
+     * @param length  下载字节数
+     * @return
+     * @throws IOException
+     */
+    public byte[] downloadRange(String fileKey, long offset, int length) throws IOException {
+        GetObjectRequest getObjectRequest = new GetObjectRequest(bucketName, fileKey);
+        getObjectRequest.withRange(offset, offset + length - 1);
+        OSSObject object = ossClient.getObject(getObjectRequest);
+        try (InputStream objectContent = object.getObjectContent()) {
+            byte[] data = new byte[length];
+            int pos = 0, len = 0;
+            while (pos < length && (len = objectContent.read(data, pos, length - pos)) > 0) {
+                pos += len;
+            }
+            return pos == length ? data : Arrays.copyOf(data, pos);
+        }
+    }
+
     /**
      * 文件属性获取
      *
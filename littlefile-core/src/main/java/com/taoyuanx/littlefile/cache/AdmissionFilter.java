@@ -0,0 +1,93 @@
+package com.taoyuanx.littlefile.cache;
+
+import java.util.BitSet;
+
+/**
+ * @author dushitaoyuan
+ * @desc 磁盘缓存准入(TinyLFU), 仅访问过多次的文件写入缓存目录, 只访问一次的文件直接从后端输出给客户端
+ * 首次访问只记录在门卫(doorkeeper, 布隆过滤器)中, 再次访问才计入频率估计, 大量只访问一次的文件不占用频率计数
+ * 门卫按访问次数定期清空, 频率估计定期减半, 旧的访问记录逐渐失效
+ * @date 2026/10/18
+ */
+public class AdmissionFilter {
+    private static final int HASHES = 3;
+    private static final int[] SEEDS = {0x9e3779b9, 0x7f4a7c15, 0x94d049bb};
+    /**
+     * 准入所需的最少访问次数
+     */
+    public static final int THRESHOLD_DEFAULT = 2;
+    private final FrequencySketch sketch;
+    private final BitSet doorkeeper;
+    private final int mask;
+    private final int threshold;
+    /**
+     * resetSize 访问次数达到该值时清空门卫
+     */
+    private final int resetSize;
+    private int accesses;
+
+    /**
+     * @param maximumSize 预计跟踪的文件个数
+     * @param threshold   准入所需的最少访问次数
+     */
+    public AdmissionFilter(int maximumSize, int threshold) {
+        int bits = Integer.highestOneBit(Math.max(64, maximumSize * 8) - 1) << 1;
+        this.sketch = new FrequencySketch(maximumSize);
+        this.doorkeeper = new BitSet(bits);
+        this.mask = bits - 1;
+        this.threshold = threshold;
+        this.resetSize = maximumSize * 10;
+    }
+
+    /**
+     * 记录一次缓存未命中并判断是否写入缓存
+     *
+     * @param key 文件路径
+     * @return 估计访问次数达到准入次数时返回true
+     */
+    public synchronized boolean admit(String key) {
+        int frequency;
+        if (mightContain(key)) {
+            sketch.increment(key);
+            frequency = 1 + sketch.frequency(key);
+        } else {
+            put(key);
+            frequency = 1;
+        }
+        if (++accesses >= resetSize) {
+            doorkeeper.clear();
+            accesses = 0;
+        }
+        return frequency >= threshold;
+    }
+
+    /**
+     * 估计访问次数
+     */
+    public synchronized int frequency(String key) {
+        return mightContain(key) ? 1 + sketch.frequency(key) : 0;
+    }
+
+    private boolean mightContain(String key) {
+        int hash = key.hashCode();
+        for (int i = 0; i < HASHES; i++) {
+            if (!doorkeeper.get(indexOf(hash, i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void put(String key) {
+        int hash = key.hashCode();
+        for (int i = 0; i < HASHES; i++) {
+            doorkeeper.set(indexOf(hash, i));
+        }
+    }
+
+    private int indexOf(int hash, int i) {
+        int h = hash * SEEDS[i];
+        h ^= h >>> 15;
+        return h & mask;
+    }
+}
@@ -0,0 +1,90 @@
+package com.taoyuanx.littlefile.cache;
+
+import java.io.File;
+
+/**
+ * @author dushitaoyuan
+ * @desc 缓存文件元信息, 用于生成强校验ETag及响应HEAD请求
+ * ETag及Last-Modified只由后端提供的crc32及修改时间生成, 缓存淘汰重新下载及多个网关实例间保持一致, 后端均未提供时不生成
+ * @date 2026/10/18
+ */
+public class CacheEntry {
+    /**
+     * key 文件路径
+     * size 文件大小
+     * lastModified 后端文件修改时间,未知时为-1
+     * crc32 后端提供的crc32,未知时为-1
+     * lastAccess 最后访问时间,用于淘汰
+     */
+    private final String key;
+    private final long size;
+    private final long lastModified;
+    private final long crc32;
+    private volatile long lastAccess;
+
+    public CacheEntry(String key, long size, long lastModified, long crc32) {
+        this.key = key;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.crc32 = crc32;
+        this.lastAccess = System.currentTimeMillis();
+    }
+
+    /**
+     * 本机源文件元信息,修改时间即源文件修改时间
+     */
+    public static CacheEntry of(String key, File file) {
+        return new CacheEntry(key, file.length(), file.lastModified(), -1);
+    }
+
+    /**
+     * 强校验ETag: 大小+crc32, crc32未知时使用大小+修改时间
+     *
+     * @return 均未知时返回null
+     */
+    public String getETag() {
+        if (crc32 < 0 && lastModified < 0) {
+            return null;
+        }
+        return "\"" + Long.toHexString(size) + "-" + Long.toHexString(crc32 >= 0 ? crc32 : lastModified) + "\"";
+    }
+
+    /**
+     * gzip副本的ETag
+     *
+     * @return 无ETag时返回null
+     */
+    public String getGzipETag() {
+        String etag = getETag();
+        return etag == null ? null : etag.substring(0, etag.length() - 1) + "-gz\"";
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public long getCrc32() {
+        return crc32;
+    }
+
+    public long getLastAccess() {
+        return lastAccess;
+    }
+
+    public void setLastAccess(long lastAccess) {
+        this.lastAccess = lastAccess;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheEntry [key=" + key + ", size=" + size + ", lastModified=" + lastModified + ", crc32=" + crc32 + "]";
+    }
+}
@@ -0,0 +1,175 @@
+package com.taoyuanx.littlefile.cache;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * @author dushitaoyuan
+ * @desc 缓存文件索引, 缓存文件元信息, 避免每次请求读取文件
+ * 按访问顺序排列(最久未访问的在前), 统计缓存总大小, 淘汰时只需从头部取出, 无需遍历目录
+ * @date 2026/10/18
+ */
+public class CacheIndex {
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(1024, 0.75f, true);
+    private long usedBytes = 0;
+    private Listener listener;
+
+    /**
+     * 获取缓存文件元信息,并记录访问
+     */
+    public synchronized CacheEntry get(String key) {
+        CacheEntry entry = entries.get(key);
+        if (entry != null) {
+            entry.setLastAccess(System.currentTimeMillis());
+            if (listener != null) {
+                listener.onAccess(entry);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * 恢复访问记录,移到最近访问位置,不回调监听
+     */
+    public synchronized void touch(String key, long lastAccess) {
+        CacheEntry entry = entries.get(key);
+        if (entry != null) {
+            entry.setLastAccess(lastAccess);
+        }
+    }
+
+    /**
+     * 是否在索引中,不记录访问
+     */
+    public synchronized boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * 不在索引中时加入
+     *
+     * @return 是否加入
+     */
+    public synchronized boolean putIfAbsent(CacheEntry entry) {
+        if (entries.containsKey(entry.getKey())) {
+            return false;
+        }
+        put(entry);
+        return true;
+    }
+
+    /**
+     * 获取缓存文件元信息,不存在时根据本地文件生成,本地文件修改时间不作为校验信息
+     *
+     * @param key  文件路径
+     * @param file 本地完整缓存文件
+     */
+    public synchronized CacheEntry load(String key, File file) {
+        CacheEntry entry = get(key);
+        if (entry == null) {
+            entry = new CacheEntry(key, file.length(), -1, -1);
+            put(entry);
+        }
+        return entry;
+    }
+
+    public synchronized void put(CacheEntry entry) {
+        CacheEntry old = entries.put(entry.getKey(), entry);
+        usedBytes += entry.getSize() - (old == null ? 0 : old.getSize());
+        if (listener != null) {
+            listener.onPut(entry);
+        }
+    }
+
+    public synchronized CacheEntry remove(String key) {
+        CacheEntry entry = entries.remove(key);
+        if (entry != null) {
+            usedBytes -= entry.getSize();
+            if (listener != null) {
+                listener.onRemove(key);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * 仅当索引中仍为该元信息时删除,避免误删期间重新填充的文件
+     */
+    public synchronized boolean remove(CacheEntry entry) {
+        if (entries.get(entry.getKey()) != entry) {
+            return false;
+        }
+        remove(entry.getKey());
+        return true;
+    }
+
+    /**
+     * 从最久未访问的文件开始淘汰,直到未超过容量且没有过期文件
+     *
+     * @param ttl      未访问超过该时间的文件过期(毫秒),0 不过期
+     * @param maxBytes 缓存容量(字节),0 不限制
+     * @param limit    本次最多淘汰个数,避免长时间持有锁
+     * @return 被淘汰的文件
+     */
+    public synchronized List<CacheEntry> evict(long ttl, long maxBytes, int limit) {
+        List<CacheEntry> evicted = new ArrayList<>();
+        long expireBefore = System.currentTimeMillis() - ttl;
+        Iterator<CacheEntry> iterator = entries.values().iterator();
+        while (iterator.hasNext() && evicted.size() < limit) {
+            CacheEntry entry = iterator.next();
+            boolean expired = ttl > 0 && entry.getLastAccess() < expireBefore;
+            boolean overCapacity = maxBytes > 0 && usedBytes > maxBytes;
+            if (!expired && !overCapacity) {
+                break;
+            }
+            iterator.remove();
+            usedBytes -= entry.getSize();
+            evicted.add(entry);
+            if (listener != null) {
+                listener.onRemove(entry.getKey());
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * 按访问顺序复制全部元信息
+     *
+     * @param whileLocked 复制时在同一锁内执行,可为空
+     */
+    public synchronized List<CacheEntry> snapshot(Runnable whileLocked) {
+        if (whileLocked != null) {
+            whileLocked.run();
+        }
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * @param listener 索引变更监听,在索引锁内回调
+     */
+    public synchronized void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 索引变更监听
+     */
+    public interface Listener {
+        void onPut(CacheEntry entry);
+
+        void onRemove(String key);
+
+        void onAccess(CacheEntry entry);
+    }
+}
@@ -0,0 +1,316 @@
+package com.taoyuanx.littlefile.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * @author dushitaoyuan
+ * @desc 缓存索引持久化, 索引变更追加写入日志(journal), 日志达到一定条数后合并为快照(snapshot)
+ * 启动时读取快照并重放日志恢复索引, 不再遍历缓存目录
+ * 快照记录代数 g, 合并时先切换到日志 g+1 再写快照 g+1, 启动时从快照代数开始依次重放存在的日志, 合并中断不丢失记录
+ * 访问记录在内存中合并, 刷盘时每个文件只写一条最近访问时间, 重启后恢复访问顺序
+ * 日志按周期刷盘, 宕机丢失的记录由请求时读取清单补回, 启动后的后台核对也会补回
+ * @date 2026/10/18
+ */
+public class CacheJournal implements CacheIndex.Listener {
+    private static final Logger LOG = LoggerFactory.getLogger(CacheJournal.class);
+    public static final String SNAPSHOT_NAME = "index.lf.snapshot";
+    public static final String JOURNAL_PREFIX = "index.lf.journal.";
+    private static final String SNAPSHOT_TEMP_NAME = "index.lf.snapshot.tmp";
+    private static final String SNAPSHOT_HEADER = "littlefile-index";
+    private static final String PUT = "P", REMOVE = "R", ACCESS = "A";
+    private static final char SEPARATOR = '\t';
+    /**
+     * 日志条数超过该值时合并
+     */
+    public static final int COMPACT_THRESHOLD_DEFAULT = 100000;
+
+    /**
+     * dir 缓存目录
+     * generation 当前日志代数
+     * records 当前日志条数
+     * accessed 上次刷盘后访问过的文件,按访问顺序
+     */
+    private final File dir;
+    private final CacheIndex cacheIndex;
+    private final int compactThreshold;
+    private long generation = 0;
+    private long records = 0;
+    private Writer writer;
+    private final LinkedHashMap<String, CacheEntry> accessed = new LinkedHashMap<>(1024, 0.75f, true);
+
+    public CacheJournal(File dir, CacheIndex cacheIndex) {
+        this(dir, cacheIndex, COMPACT_THRESHOLD_DEFAULT);
+    }
+
+    public CacheJournal(File dir, CacheIndex cacheIndex, int compactThreshold) {
+        this.dir = dir;
+        this.cacheIndex = cacheIndex;
+        this.compactThreshold = compactThreshold;
+    }
+
+    /**
+     * 读取快照及日志恢复索引,之后索引变更写入日志
+     *
+     * @return 快照或日志不存在时返回false,需遍历目录重建
+     */
+    public synchronized boolean load() throws IOException {
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        boolean loaded = false;
+        int count = 0;
+        File snapshot = new File(dir, SNAPSHOT_NAME);
+        if (snapshot.exists()) {
+            try (BufferedReader reader = open(snapshot)) {
+                String header = reader.readLine();
+                if (header != null && header.startsWith(SNAPSHOT_HEADER + SEPARATOR)) {
+                    generation = Long.parseLong(header.substring(SNAPSHOT_HEADER.length() + 1));
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        CacheEntry entry = parseEntry(line, 0);
+                        if (entry != null) {
+                            cacheIndex.put(entry);
+                            count++;
+                        }
+                    }
+                    loaded = true;
+                }
+            } catch (Exception e) {
+                LOG.warn("read cache index snapshot [{}] error {}", snapshot, e.getMessage());
+            }
+        }
+        long last = generation;
+        for (long gen = generation; ; gen++) {
+            File journal = journalOf(gen);
+            if (!journal.exists()) {
+                break;
+            }
+            count += replay(journal);
+            last = gen;
+            loaded = true;
+        }
+        deleteJournalsBefore(generation);
+        generation = last;
+        records = 0;
+        writer = openWriter(journalOf(generation));
+        cacheIndex.setListener(this);
+        LOG.info("load cache index {} records, {} files, {} bytes", count, cacheIndex.size(), cacheIndex.getUsedBytes());
+        return loaded;
+    }
+
+    private int replay(File journal) {
+        int count = 0;
+        try (BufferedReader reader = open(journal)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(PUT + SEPARATOR)) {
+                    CacheEntry entry = parseEntry(line, 2);
+                    if (entry != null) {
+                        cacheIndex.put(entry);
+                    }
+                } else if (line.startsWith(REMOVE + SEPARATOR)) {
+                    cacheIndex.remove(line.substring(2));
+                } else if (line.startsWith(ACCESS + SEPARATOR) && line.lastIndexOf(SEPARATOR) > 2) {
+                    int split = line.lastIndexOf(SEPARATOR);
+                    cacheIndex.touch(line.substring(2, split), Long.parseLong(line.substring(split + 1)));
+                } else {
+                    //宕机时最后一行可能不完整
+                    continue;
+                }
+                count++;
+            }
+        } catch (Exception e) {
+            LOG.warn("replay cache index journal [{}] error {}", journal, e.getMessage());
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized void onPut(CacheEntry entry) {
+        if (!isPersistable(entry.getKey())) {
+            return;
+        }
+        append(PUT + SEPARATOR + formatEntry(entry));
+    }
+
+    @Override
+    public synchronized void onRemove(String key) {
+        if (!isPersistable(key)) {
+            return;
+        }
+        accessed.remove(key);
+        append(REMOVE + SEPARATOR + key);
+    }
+
+    /**
+     * 访问频繁,只记录在内存中,刷盘时写入
+     */
+    @Override
+    public synchronized void onAccess(CacheEntry entry) {
+        if (writer != null && isPersistable(entry.getKey())) {
+            accessed.put(entry.getKey(), entry);
+        }
+    }
+
+    private void append(String record) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.write(record);
+            writer.write('\n');
+            records++;
+        } catch (IOException e) {
+            LOG.warn("write cache index journal error {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 写入合并后的访问记录并刷盘
+     */
+    public synchronized void flush() {
+        if (writer == null) {
+            return;
+        }
+        for (CacheEntry entry : accessed.values()) {
+            append(ACCESS + SEPARATOR + entry.getKey() + SEPARATOR + entry.getLastAccess());
+        }
+        accessed.clear();
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            LOG.warn("flush cache index journal error {}", e.getMessage());
+        }
+    }
+
+    public synchronized boolean needCompact() {
+        return records >= compactThreshold;
+    }
+
+    /**
+     * 合并: 在索引锁内复制索引并切换到新日志,之后写快照,删除旧日志
+     */
+    public void compact() throws IOException {
+        long[] snapshotGeneration = new long[1];
+        List<CacheEntry> entries = cacheIndex.snapshot(() -> {
+            synchronized (this) {
+                closeWriter();
+                generation++;
+                records = 0;
+                //快照已包含最近访问时间及顺序
+                accessed.clear();
+                snapshotGeneration[0] = generation;
+                try {
+                    writer = openWriter(journalOf(generation));
+                } catch (IOException e) {
+                    LOG.warn("open cache index journal error {}", e.getMessage());
+                }
+            }
+        });
+        File temp = new File(dir, SNAPSHOT_TEMP_NAME);
+        try {
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+                out.write(SNAPSHOT_HEADER + SEPARATOR + snapshotGeneration[0] + "\n");
+                for (CacheEntry entry : entries) {
+                    if (isPersistable(entry.getKey())) {
+                        out.write(formatEntry(entry));
+                        out.write('\n');
+                    }
+                }
+            }
+            CacheManifest.moveAtomic(temp, new File(dir, SNAPSHOT_NAME));
+        } finally {
+            temp.delete();
+        }
+        deleteJournalsBefore(snapshotGeneration[0]);
+        LOG.debug("compact cache index {} files, generation {}", entries.size(), snapshotGeneration[0]);
+    }
+
+    public synchronized void close() {
+        cacheIndex.setListener(null);
+        closeWriter();
+    }
+
+    private void closeWriter() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            LOG.warn("close cache index journal error {}", e.getMessage());
+        }
+        writer = null;
+    }
+
+    private void deleteJournalsBefore(long gen) {
+        File[] journals = dir.listFiles((d, name) -> name.startsWith(JOURNAL_PREFIX));
+        if (journals == null) {
+            return;
+        }
+        for (File journal : journals) {
+            try {
+                if (Long.parseLong(journal.getName().substring(JOURNAL_PREFIX.length())) < gen) {
+                    journal.delete();
+                }
+            } catch (NumberFormatException e) {
+                journal.delete();
+            }
+        }
+    }
+
+    private File journalOf(long gen) {
+        return new File(dir, JOURNAL_PREFIX + gen);
+    }
+
+    private static BufferedReader open(File file) throws IOException {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+    }
+
+    private static Writer openWriter(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 记录格式: key size lastModified crc32 lastAccess, 以tab分隔
+     */
+    private static String formatEntry(CacheEntry entry) {
+        return entry.getKey() + SEPARATOR + entry.getSize() + SEPARATOR + entry.getLastModified()
+                + SEPARATOR + entry.getCrc32() + SEPARATOR + entry.getLastAccess();
+    }
+
+    private static CacheEntry parseEntry(String line, int from) {
+        String[] fields = line.substring(from).split(String.valueOf(SEPARATOR));
+        if (fields.length != 5) {
+            return null;
+        }
+        try {
+            CacheEntry entry = new CacheEntry(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]), Long.parseLong(fields[3]));
+            entry.setLastAccess(Long.parseLong(fields[4]));
+            return entry;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 含分隔符或换行的文件路径不记录,请求时由清单补回
+     */
+    private static boolean isPersistable(String key) {
+        return key.indexOf(SEPARATOR) < 0 && key.indexOf('\n') < 0 && key.indexOf('\r') < 0;
+    }
+}
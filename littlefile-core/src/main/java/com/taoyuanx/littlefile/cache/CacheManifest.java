@@ -0,0 +1,92 @@
+package com.taoyuanx.littlefile.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * @author dushitaoyuan
+ * @desc 缓存文件清单, 记录文件完整时的大小及crc32, 与缓存文件同目录
+ * 清单在缓存文件重命名完成后写入, 清单存在且大小一致即认为缓存文件完整
+ * @date 2026/10/18
+ */
+public class CacheManifest {
+    private static final Logger LOG = LoggerFactory.getLogger(CacheManifest.class);
+    public static final String MANIFEST_SUFFIX = ".lf.meta";
+    private static final String MANIFEST_TEMP_SUFFIX = ".lf.meta.tmp";
+    private static final String SIZE_KEY = "size";
+    private static final String CRC32_KEY = "crc32";
+    private static final String LAST_MODIFIED_KEY = "lastModified";
+
+    /**
+     * 读取缓存文件清单
+     *
+     * @param key       文件路径
+     * @param cacheFile 缓存文件
+     * @return 清单不存在或损坏时返回null
+     */
+    public static CacheEntry read(String key, File cacheFile) {
+        File manifest = manifestOf(cacheFile);
+        if (!manifest.exists()) {
+            return null;
+        }
+        Properties pro = new Properties();
+        try (InputStream in = new FileInputStream(manifest)) {
+            pro.load(in);
+            return new CacheEntry(key, Long.parseLong(pro.getProperty(SIZE_KEY)),
+                    Long.parseLong(pro.getProperty(LAST_MODIFIED_KEY, "-1")), Long.parseLong(pro.getProperty(CRC32_KEY, "-1")));
+        } catch (Exception e) {
+            LOG.warn("read manifest [{}] error {}", manifest, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 写入缓存文件清单,先写临时文件再重命名
+     */
+    public static void write(File cacheFile, CacheEntry entry) throws IOException {
+        File manifest = manifestOf(cacheFile);
+        File temp = new File(cacheFile.getParentFile(), cacheFile.getName() + MANIFEST_TEMP_SUFFIX);
+        Properties pro = new Properties();
+        pro.setProperty(SIZE_KEY, String.valueOf(entry.getSize()));
+        pro.setProperty(CRC32_KEY, String.valueOf(entry.getCrc32()));
+        pro.setProperty(LAST_MODIFIED_KEY, String.valueOf(entry.getLastModified()));
+        try {
+            try (OutputStream out = new FileOutputStream(temp)) {
+                pro.store(out, null);
+            }
+            moveAtomic(temp, manifest);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    public static void delete(File cacheFile) {
+        manifestOf(cacheFile).delete();
+    }
+
+    public static File manifestOf(File cacheFile) {
+        return new File(cacheFile.getParentFile(), cacheFile.getName() + MANIFEST_SUFFIX);
+    }
+
+    /**
+     * 原子重命名,文件系统不支持时退化为普通重命名
+     */
+    public static void moveAtomic(File src, File dest) throws IOException {
+        try {
+            Files.move(src.toPath(), dest.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(src.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.taoyuanx.littlefile.cache;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author dushitaoyuan
+ * @desc 一次正在进行的缓存填充, 支持边下载边读取(tail read)
+ * @date 2026/10/18
+ */
+public class FileFill {
+    /**
+     * key 文件key
+     * fillFile 填充过程中写入的临时文件,同步填充时为空
+     * future 填充结果,完成后为最终缓存文件
+     * followers 等待填充结果的请求数,最后一个请求离开时取消填充,-1 已取消
+     */
+    private final String key;
+    private final File fillFile;
+    private final CompletableFuture<File> future = new CompletableFuture<>();
+    private final AtomicInteger followers = new AtomicInteger();
+    /**
+     * 无新数据时的轮询间隔(毫秒)
+     */
+    private static final long TAIL_POLL_INTERVAL = 10;
+
+    public FileFill(String key, File fillFile) {
+        this.key = key;
+        this.fillFile = fillFile;
+    }
+
+    /**
+     * 跟随正在写入的文件,将已写入的数据持续输出,直到填充完成
+     *
+     * @param out     输出流
+     * @param buffer  读取缓冲区
+     * @param timeout 无新数据的最长等待时间(毫秒)
+     * @return 输出字节数
+     */
+    public long transferTo(OutputStream out, byte[] buffer, long timeout) throws Exception {
+        long position = 0, lastProgress = System.currentTimeMillis();
+        RandomAccessFile raf = null;
+        try {
+            while (true) {
+                //先判断是否完成,再读取,保证完成后的最后一次读取能读到全部数据
+                boolean done = future.isDone();
+                //同步填充没有临时文件,完成后读取最终文件
+                if (raf == null && fillFile != null) {
+                    raf = open(fillFile);
+                }
+                int len = 0;
+                if (raf != null) {
+                    raf.seek(position);
+                    while ((len = raf.read(buffer)) > 0) {
+                        out.write(buffer, 0, len);
+                        position += len;
+                        lastProgress = System.currentTimeMillis();
+                    }
+                    out.flush();
+                }
+                if (done) {
+                    File result = getResult();
+                    //临时文件在打开前已被重命名
+                    if (raf == null) {
+                        raf = new RandomAccessFile(result, "r");
+                        continue;
+                    }
+                    return position;
+                }
+                if (System.currentTimeMillis() - lastProgress > timeout) {
+                    throw new TimeoutException("tail file [" + key + "] no progress in " + timeout + "ms");
+                }
+                Thread.sleep(TAIL_POLL_INTERVAL);
+            }
+        } finally {
+            if (raf != null) {
+                raf.close();
+            }
+        }
+    }
+
+    /**
+     * 打开正在写入的文件,尚未创建或已被重命名时返回null
+     */
+    private static RandomAccessFile open(File file) {
+        try {
+            return new RandomAccessFile(file, "r");
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 跟随填充,离开时需调用 {@link #unfollow()}
+     *
+     * @return 填充已被取消时返回false
+     */
+    public boolean follow() {
+        for (int count = followers.get(); count >= 0; count = followers.get()) {
+            if (followers.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 停止跟随,最后一个请求离开(如客户端断开)且填充未完成时取消填充
+     */
+    public void unfollow() {
+        if (followers.decrementAndGet() == 0 && !future.isDone() && followers.compareAndSet(0, -1)) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * 获取填充结果,填充失败时抛出原始异常
+     */
+    public File getResult() throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public File getFillFile() {
+        return fillFile;
+    }
+
+    public CompletableFuture<File> getFuture() {
+        return future;
+    }
+}
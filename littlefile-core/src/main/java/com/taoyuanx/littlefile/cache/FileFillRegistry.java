@@ -0,0 +1,224 @@
+package com.taoyuanx.littlefile.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * @author dushitaoyuan
+ * @desc 缓存填充合并(single-flight), 同一文件并发未命中时只触发一次后端下载,其余请求等待其结果
+ * @date 2026/10/18
+ */
+public class FileFillRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(FileFillRegistry.class);
+    public static final Long FILL_TIMEOUT_DEFAULT = TimeUnit.MINUTES.toMillis(5);
+    /**
+     * inFlight 正在填充的文件 key->填充结果
+     * fillTimeout 等待其他请求填充的超时时间(毫秒)
+     * coalescedCount 被合并(等待他人填充)的请求次数
+     * fillCount 实际发起填充的次数
+     */
+    private final ConcurrentHashMap<String, FileFill> inFlight = new ConcurrentHashMap<>();
+    private long fillTimeout;
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong fillCount = new AtomicLong();
+
+    public FileFillRegistry() {
+        this(FILL_TIMEOUT_DEFAULT);
+    }
+
+    public FileFillRegistry(long fillTimeout) {
+        this.fillTimeout = fillTimeout;
+    }
+
+    /**
+     * 填充文件,同一key同时只有一个loader在执行
+     *
+     * @param key    文件key
+     * @param loader 实际填充逻辑
+     * @return 填充结果
+     */
+    public File fill(String key, Callable<File> loader) throws Exception {
+        return fill(key, null, loader);
+    }
+
+    /**
+     * 填充文件,同一key同时只有一个loader在执行,同时发起的异步请求可跟随fillFile读取已下载部分
+     *
+     * @param key      文件key
+     * @param fillFile 填充过程中写入的临时文件,可为null
+     * @param loader   实际填充逻辑
+     * @return 填充结果
+     */
+    public File fill(String key, File fillFile, Callable<File> loader) throws Exception {
+        FileFill fill = new FileFill(key, fillFile);
+        //同步填充不可取消,填充线程始终跟随
+        fill.follow();
+        FileFill exist = follow(key, fill);
+        if (exist != null) {
+            try {
+                return await(key, exist.getFuture());
+            } finally {
+                exist.unfollow();
+            }
+        }
+        try {
+            File file = loader.call();
+            fill.getFuture().complete(file);
+            return file;
+        } catch (Exception e) {
+            fill.getFuture().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, fill);
+            fill.unfollow();
+        }
+    }
+
+    /**
+     * 异步填充文件,调用方可通过 {@link FileFill#transferTo} 边下载边读取
+     *
+     * @param key      文件key
+     * @param fillFile 填充过程中写入的临时文件
+     * @param loader   实际填充逻辑,需写入fillFile并返回最终缓存文件
+     * @param executor 填充线程池
+     * @return 当前正在进行的填充, 可能由其他请求发起, 已跟随, 离开时需调用 {@link FileFill#unfollow()}
+     */
+    public FileFill fillAsync(String key, File fillFile, Callable<File> loader, Executor executor) {
+        FileFill fill = new FileFill(key, fillFile);
+        //填充线程无法中止,始终跟随,不因请求离开而取消
+        fill.follow();
+        fill.follow();
+        FileFill exist = follow(key, fill);
+        if (exist != null) {
+            return exist;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    fill.getFuture().complete(loader.call());
+                } catch (Throwable e) {
+                    fill.getFuture().completeExceptionally(e);
+                } finally {
+                    inFlight.remove(key, fill);
+                    fill.unfollow();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, fill);
+            fill.getFuture().completeExceptionally(e);
+            fill.unfollow();
+        }
+        return fill;
+    }
+
+    /**
+     * 异步填充文件,填充逻辑自行返回异步结果,等待下载期间不占用线程
+     * 填充结果被取消(所有跟随的请求都已离开)时取消填充逻辑
+     *
+     * @param key      文件key
+     * @param fillFile 填充过程中写入的临时文件
+     * @param loader   实际填充逻辑,需写入fillFile并返回最终缓存文件
+     * @return 当前正在进行的填充, 可能由其他请求发起, 已跟随, 离开时需调用 {@link FileFill#unfollow()}
+     */
+    public FileFill fillAsync(String key, File fillFile, Supplier<CompletableFuture<File>> loader) {
+        FileFill fill = new FileFill(key, fillFile);
+        fill.follow();
+        FileFill exist = follow(key, fill);
+        if (exist != null) {
+            return exist;
+        }
+        CompletableFuture<File> future;
+        try {
+            future = loader.get();
+        } catch (Throwable e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        CompletableFuture<File> loading = future;
+        loading.whenComplete((file, e) -> {
+            inFlight.remove(key, fill);
+            if (e != null) {
+                fill.getFuture().completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            } else {
+                fill.getFuture().complete(file);
+            }
+        });
+        fill.getFuture().whenComplete((file, e) -> {
+            if (fill.getFuture().isCancelled()) {
+                loading.cancel(true);
+            }
+        });
+        return fill;
+    }
+
+    /**
+     * 跟随正在进行的填充,已被取消的填充移除后由当前请求重新发起
+     *
+     * @return 正在进行的填充,不存在时登记fill并返回null
+     */
+    private FileFill follow(String key, FileFill fill) {
+        while (true) {
+            FileFill exist = inFlight.putIfAbsent(key, fill);
+            if (exist == null) {
+                fillCount.incrementAndGet();
+                return null;
+            }
+            if (exist.follow()) {
+                coalescedCount.incrementAndGet();
+                LOG.debug("file [{}] is filling, follow it", key);
+                return exist;
+            }
+            inFlight.remove(key, exist);
+        }
+    }
+
+    private File await(String key, CompletableFuture<File> future) throws Exception {
+        try {
+            return future.get(fillTimeout, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        } catch (TimeoutException e) {
+            throw new TimeoutException("wait file [" + key + "] fill timeout " + fillTimeout + "ms");
+        }
+    }
+
+    /**
+     * @return 等待指定填充完成
+     */
+    public File await(FileFill fill) throws Exception {
+        return await(fill.getKey(), fill.getFuture());
+    }
+
+    public boolean isFilling(String key) {
+        return inFlight.containsKey(key);
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    public long getFillCount() {
+        return fillCount.get();
+    }
+
+    public long getFillTimeout() {
+        return fillTimeout;
+    }
+
+    public void setFillTimeout(long fillTimeout) {
+        this.fillTimeout = fillTimeout;
+    }
+}
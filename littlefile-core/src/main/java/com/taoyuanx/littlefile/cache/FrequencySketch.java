@@ -0,0 +1,78 @@
+package com.taoyuanx.littlefile.cache;
+
+/**
+ * @author dushitaoyuan
+ * @desc 访问频率估计(Count-Min Sketch), 定期减半实现老化, 用于淘汰及准入判断
+ * 计数器非原子更新, 并发下允许少量误差
+ * @date 2026/10/18
+ */
+public class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x97cb3127, 0xb71ec3a3, 0x27d4eb2f, 0x85ebca6b};
+    private final int[] table;
+    private final int mask;
+    /**
+     * sampleSize 累计访问次数达到该值时计数减半
+     */
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param maximumSize 预计跟踪的key个数
+     */
+    public FrequencySketch(int maximumSize) {
+        int width = Integer.highestOneBit(Math.max(16, maximumSize) - 1) << 1;
+        this.table = new int[width * DEPTH];
+        this.mask = width - 1;
+        this.sampleSize = width * 10;
+    }
+
+    /**
+     * 记录一次访问
+     */
+    public void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = indexOf(hash, i);
+            if (table[index] < MAX_COUNT) {
+                table[index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * 估计访问频率
+     */
+    public int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            frequency = Math.min(frequency, table[indexOf(hash, i)]);
+        }
+        return frequency;
+    }
+
+    private synchronized void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] >>>= 1;
+        }
+        additions = 0;
+    }
+
+    private int indexOf(int hash, int depth) {
+        int h = (hash ^ SEEDS[depth]) * SEEDS[depth];
+        h ^= h >>> 16;
+        return depth * (mask + 1) + (h & mask);
+    }
+
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+}
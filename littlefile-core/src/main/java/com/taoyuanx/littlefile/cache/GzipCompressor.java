@@ -0,0 +1,110 @@
+package com.taoyuanx.littlefile.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * @author dushitaoyuan
+ * @desc 后台gzip压缩, 为缓存文件生成预压缩副本(sidecar), 请求时直接输出副本,不在请求线程中压缩
+ * @date 2026/10/18
+ */
+public class GzipCompressor {
+    private static final Logger LOG = LoggerFactory.getLogger(GzipCompressor.class);
+    public static final String SIDECAR_SUFFIX = ".lf.gz";
+    private static final String SIDECAR_TEMP_SUFFIX = ".lf.gz.tmp";
+    /**
+     * pending 等待或正在压缩的文件,防止重复压缩
+     * executor 低优先级压缩线程,队列满时丢弃,下次请求时重新提交
+     */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor executor;
+
+    public GzipCompressor() {
+        this(1, 1024);
+    }
+
+    public GzipCompressor(int threadNum, int queueSize) {
+        executor = new ThreadPoolExecutor(threadNum, threadNum, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueSize), r -> {
+            Thread thread = new Thread(r, "littlefile-gzip");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * 获取已生成的压缩副本,未生成或已过期时提交后台压缩并返回null
+     *
+     * @param src 缓存文件
+     */
+    public File getSidecar(File src) {
+        File sidecar = sidecarOf(src);
+        if (sidecar.exists() && sidecar.lastModified() >= src.lastModified()) {
+            return sidecar;
+        }
+        compressAsync(src);
+        return null;
+    }
+
+    /**
+     * 提交后台压缩
+     */
+    public void compressAsync(File src) {
+        String key = src.getAbsolutePath();
+        if (!pending.add(key)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    compress(src);
+                } catch (Exception e) {
+                    LOG.warn("gzip file [{}] failed", src, e);
+                } finally {
+                    pending.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(key);
+        }
+    }
+
+    private void compress(File src) throws Exception {
+        if (!src.exists()) {
+            return;
+        }
+        File sidecar = sidecarOf(src);
+        File temp = new File(src.getParentFile(), src.getName() + SIDECAR_TEMP_SUFFIX);
+        try {
+            try (OutputStream out = new GZIPOutputStream(new FileOutputStream(temp), 64 * 1024)) {
+                Files.copy(src.toPath(), out);
+            }
+            Files.move(temp.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            LOG.debug("gzip file [{}] {} -> {} bytes", src, src.length(), sidecar.length());
+        } finally {
+            temp.delete();
+        }
+    }
+
+    public static File sidecarOf(File src) {
+        return new File(src.getParentFile(), src.getName() + SIDECAR_SUFFIX);
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,220 @@
+package com.taoyuanx.littlefile.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author dushitaoyuan
+ * @desc 内存缓存, 位于磁盘缓存之前, 缓存小而热的文件, 命中时不访问文件系统
+ * 文件内容保存在堆外内存(DirectByteBuffer), 不增加GC压力, 需保证 -XX:MaxDirectMemorySize 不小于容量
+ * 淘汰: 从最久未访问的若干个文件中淘汰访问频率最低的; 准入: 新文件访问频率需高于被淘汰文件
+ * @date 2026/10/18
+ */
+public class MemoryCache {
+    private static final Logger LOG = LoggerFactory.getLogger(MemoryCache.class);
+    /**
+     * 淘汰时比较的候选个数
+     */
+    private static final int EVICTION_SAMPLE = 8;
+    /**
+     * maxBytes 内存容量
+     * maxObjectSize 单个文件最大大小,超过不缓存
+     * entries 访问顺序排列,最久未访问的在前
+     */
+    private final long maxBytes;
+    private final int maxObjectSize;
+    private final LinkedHashMap<String, MemoryEntry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final FrequencySketch sketch;
+    private long usedBytes = 0;
+    private final AtomicLong hitCount = new AtomicLong(), missCount = new AtomicLong(),
+            evictionCount = new AtomicLong(), rejectCount = new AtomicLong();
+
+    /**
+     * @param maxBytes      内存容量(字节)
+     * @param maxObjectSize 单个文件最大大小(字节)
+     */
+    public MemoryCache(long maxBytes, int maxObjectSize) {
+        this.maxBytes = maxBytes;
+        this.maxObjectSize = maxObjectSize;
+        this.sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE, maxBytes / Math.max(1, maxObjectSize / 4)));
+    }
+
+    public MemoryEntry get(String key) {
+        sketch.increment(key);
+        MemoryEntry memoryEntry;
+        synchronized (this) {
+            memoryEntry = entries.get(key);
+        }
+        if (memoryEntry == null) {
+            missCount.incrementAndGet();
+        } else {
+            hitCount.incrementAndGet();
+        }
+        return memoryEntry;
+    }
+
+    /**
+     * 文件是否可以放入内存缓存,放入前判断,避免读取不会被缓存的文件
+     */
+    public boolean isAdmissible(CacheEntry entry) {
+        return entry.getSize() <= maxObjectSize && entry.getSize() <= maxBytes;
+    }
+
+    /**
+     * 读取文件放入内存缓存
+     *
+     * @param entry 文件元信息
+     * @param file  本地完整缓存文件
+     * @return 是否放入
+     */
+    public boolean put(CacheEntry entry, File file) {
+        if (!isAdmissible(entry)) {
+            return false;
+        }
+        String key = entry.getKey();
+        synchronized (this) {
+            if (entries.containsKey(key) || !makeRoom(key, entry.getSize())) {
+                return false;
+            }
+        }
+        ByteBuffer data;
+        try {
+            data = read(file, (int) entry.getSize());
+        } catch (IOException e) {
+            LOG.warn("read file [{}] into memory error {}", file, e.getMessage());
+            return false;
+        }
+        synchronized (this) {
+            //读取文件期间容量可能被其他文件占用
+            if (entries.containsKey(key) || !makeRoom(key, data.capacity())) {
+                return false;
+            }
+            entries.put(key, new MemoryEntry(entry, data));
+            usedBytes += data.capacity();
+            return true;
+        }
+    }
+
+    public synchronized void remove(String key) {
+        MemoryEntry memoryEntry = entries.remove(key);
+        if (memoryEntry != null) {
+            usedBytes -= memoryEntry.getData().capacity();
+        }
+    }
+
+    /**
+     * 腾出空间,候选文件访问频率不高于被淘汰文件时拒绝放入
+     */
+    private boolean makeRoom(String key, long size) {
+        int candidateFrequency = sketch.frequency(key);
+        while (usedBytes + size > maxBytes) {
+            String victim = null;
+            int victimFrequency = Integer.MAX_VALUE, sample = 0;
+            Iterator<Map.Entry<String, MemoryEntry>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext() && sample++ < EVICTION_SAMPLE) {
+                String victimKey = iterator.next().getKey();
+                int frequency = sketch.frequency(victimKey);
+                if (frequency < victimFrequency) {
+                    victim = victimKey;
+                    victimFrequency = frequency;
+                }
+            }
+            if (victim == null || candidateFrequency <= victimFrequency) {
+                rejectCount.incrementAndGet();
+                return false;
+            }
+            usedBytes -= entries.remove(victim).getData().capacity();
+            evictionCount.incrementAndGet();
+        }
+        return true;
+    }
+
+    private static ByteBuffer read(File file, int size) throws IOException {
+        ByteBuffer data = ByteBuffer.allocateDirect(size);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (data.hasRemaining()) {
+                if (channel.read(data) < 0) {
+                    throw new IOException("file " + file + " truncated");
+                }
+            }
+        }
+        data.flip();
+        return data;
+    }
+
+    /**
+     * 命中率
+     */
+    public double getHitRatio() {
+        long hit = hitCount.get(), total = hit + missCount.get();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public long getRejectCount() {
+        return rejectCount.get();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MemoryCache [size=%s, usedBytes=%s, maxBytes=%s, hitRatio=%.4f, evictionCount=%s, rejectCount=%s]",
+                size(), getUsedBytes(), maxBytes, getHitRatio(), getEvictionCount(), getRejectCount());
+    }
+
+    /**
+     * 内存中的文件
+     */
+    public static class MemoryEntry {
+        private final CacheEntry entry;
+        private final ByteBuffer data;
+
+        MemoryEntry(CacheEntry entry, ByteBuffer data) {
+            this.entry = entry;
+            this.data = data;
+        }
+
+        public CacheEntry getEntry() {
+            return entry;
+        }
+
+        /**
+         * @return 只读视图,各请求独立读取位置
+         */
+        public ByteBuffer getData() {
+            return data.asReadOnlyBuffer();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.taoyuanx.littlefile.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author dushitaoyuan
+ * @desc 不存在文件缓存, 后端返回文件不存在后一段时间内不再请求后端
+ * 按加入顺序保存, 超出个数时淘汰最早加入的, 内存有界
+ * @date 2026/10/18
+ */
+public class NegativeCache {
+    /**
+     * ttl 缓存时间(毫秒)
+     * maxSize 最多缓存个数
+     * missing 文件路径 -> 过期时间
+     */
+    private final long ttl;
+    private final int maxSize;
+    private final LinkedHashMap<String, Long> missing = new LinkedHashMap<>(256);
+    private final AtomicLong suppressedCount = new AtomicLong();
+
+    public NegativeCache(long ttl, int maxSize) {
+        this.ttl = ttl;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 文件是否已知不存在,命中时记为一次省去的后端请求
+     */
+    public boolean isMissing(String key) {
+        synchronized (this) {
+            Long expireAt = missing.get(key);
+            if (expireAt == null) {
+                return false;
+            }
+            if (expireAt <= System.currentTimeMillis()) {
+                missing.remove(key);
+                return false;
+            }
+        }
+        suppressedCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 记录文件不存在,已记录且未过期时不延长,过期后需重新请求后端确认
+     */
+    public synchronized void put(String key) {
+        long now = System.currentTimeMillis();
+        Long expireAt = missing.get(key);
+        if (expireAt != null && expireAt > now) {
+            return;
+        }
+        //重新加入移到末尾
+        missing.remove(key);
+        missing.put(key, now + ttl);
+        Iterator<Map.Entry<String, Long>> iterator = missing.entrySet().iterator();
+        while (missing.size() > maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * 文件已上传,删除不存在记录
+     */
+    public synchronized void remove(String key) {
+        missing.remove(key);
+    }
+
+    /**
+     * 省去的后端请求次数
+     */
+    public long getSuppressedCount() {
+        return suppressedCount.get();
+    }
+
+    public synchronized int size() {
+        return missing.size();
+    }
+}
@@ -0,0 +1,301 @@
+package com.taoyuanx.littlefile.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+/**
+ * @author dushitaoyuan
+ * @desc 缓存预取, 部署后或活动前提前下载文件, 避免冷启动时流量全部打到后端
+ * 预取线程数有限且为最低优先级, 正在进行的请求填充较多时暂停预取, 让出后端给实时请求
+ * 启动预热: 停止时记录最近访问的文件, 下次启动时按热度顺序预取
+ * @date 2026/10/18
+ */
+public class Prefetcher {
+    private static final Logger LOG = LoggerFactory.getLogger(Prefetcher.class);
+    public static final int THREAD_NUM_DEFAULT = 2;
+    public static final String HOT_FILE_NAME = "index.lf.hot";
+    /**
+     * 等待执行的预取批次数,超过时放弃新的预取
+     */
+    private static final int QUEUE_SIZE = 1000;
+    /**
+     * 实时请求填充数达到该值时暂停预取,每次暂停时间及单个文件最多暂停次数
+     */
+    private static final int YIELD_FILLS = 4;
+    private static final long YIELD_PAUSE = 100;
+    private static final int YIELD_MAX_PAUSES = 50;
+
+    /**
+     * loader 预取单个文件
+     * inFlight 当前正在填充的文件数(含预取)
+     * active 正在预取的文件数
+     */
+    private final Loader loader;
+    private final IntSupplier inFlight;
+    private final ThreadPoolExecutor executor;
+    private final int threadNum;
+    private final AtomicInteger active = new AtomicInteger();
+
+    /**
+     * @param loader    预取单个文件
+     * @param inFlight  当前正在填充的文件数
+     * @param threadNum 预取线程数
+     */
+    public Prefetcher(Loader loader, IntSupplier inFlight, int threadNum) {
+        this.loader = loader;
+        this.inFlight = inFlight;
+        this.threadNum = threadNum;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threadNum, threadNum, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_SIZE), r -> {
+            Thread thread = new Thread(r, "littlefile-prefetch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 后台预取,已缓存的文件跳过
+     *
+     * @param paths 文件路径,按顺序预取
+     * @return 预取进度
+     */
+    public Progress prefetch(Collection<String> paths) {
+        Progress progress = new Progress(new ArrayList<>(paths));
+        int workers = Math.min(threadNum, progress.total);
+        if (workers == 0) {
+            progress.finish();
+            return progress;
+        }
+        for (int i = 0; i < workers; i++) {
+            try {
+                executor.execute(() -> work(progress));
+            } catch (RejectedExecutionException e) {
+                if (i == 0) {
+                    LOG.debug("prefetch queue full, skip {} files", progress.total);
+                    progress.cancel();
+                    progress.finish();
+                    return progress;
+                }
+                break;
+            }
+        }
+        return progress;
+    }
+
+    private void work(Progress progress) {
+        String path;
+        while ((path = progress.next()) != null) {
+            yieldToLive();
+            active.incrementAndGet();
+            try {
+                progress.done(loader.load(path) ? Progress.FETCHED : Progress.CACHED);
+            } catch (InterruptedException e) {
+                progress.done(Progress.FAILED);
+                progress.cancel();
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                LOG.debug("prefetch file [{}] error {}", path, e.getMessage());
+                progress.done(Progress.FAILED);
+            } finally {
+                active.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 实时请求填充较多时暂停,最多暂停一定时间,避免预取长期停滞
+     */
+    private void yieldToLive() {
+        for (int i = 0; i < YIELD_MAX_PAUSES && inFlight.getAsInt() - active.get() >= YIELD_FILLS; i++) {
+            try {
+                Thread.sleep(YIELD_PAUSE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 保存预热列表,按热度从高到低
+     */
+    public static void saveHot(File hotFile, List<String> paths) throws IOException {
+        File parent = hotFile.getAbsoluteFile().getParentFile();
+        if (!parent.exists()) {
+            parent.mkdirs();
+        }
+        File temp = new File(parent, hotFile.getName() + ".tmp");
+        Files.write(temp.toPath(), paths, StandardCharsets.UTF_8);
+        Files.move(temp.toPath(), hotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * 读取预热列表,不存在时返回空列表
+     */
+    public static List<String> loadHot(File hotFile, int maxCount) throws IOException {
+        if (!hotFile.exists()) {
+            return Collections.emptyList();
+        }
+        List<String> paths = new ArrayList<>();
+        for (String line : Files.readAllLines(hotFile.toPath(), StandardCharsets.UTF_8)) {
+            if (paths.size() >= maxCount) {
+                break;
+            }
+            if (!line.isEmpty()) {
+                paths.add(line);
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * 最近访问的文件,按访问时间从近到远
+     */
+    public static List<String> hottest(CacheIndex cacheIndex, int count) {
+        List<CacheEntry> entries = cacheIndex.snapshot(null);
+        List<String> paths = new ArrayList<>(Math.min(count, entries.size()));
+        for (int i = entries.size() - 1; i >= 0 && paths.size() < count; i--) {
+            paths.add(entries.get(i).getKey());
+        }
+        return paths;
+    }
+
+    /**
+     * 预取单个文件
+     */
+    public interface Loader {
+        /**
+         * @return 是否从后端下载,已缓存时返回false
+         */
+        boolean load(String path) throws Exception;
+    }
+
+    /**
+     * 预取进度
+     */
+    public static class Progress {
+        private static final int FETCHED = 0, CACHED = 1, FAILED = 2;
+        private final List<String> paths;
+        private final int total;
+        private final long start = System.currentTimeMillis();
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger fetched = new AtomicInteger();
+        private final AtomicInteger cached = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger done = new AtomicInteger();
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile boolean cancelled = false;
+
+        Progress(List<String> paths) {
+            this.paths = paths;
+            this.total = paths.size();
+        }
+
+        private String next() {
+            if (cancelled) {
+                return null;
+            }
+            int index = next.getAndIncrement();
+            return index < total ? paths.get(index) : null;
+        }
+
+        private void done(int result) {
+            (result == FETCHED ? fetched : result == CACHED ? cached : failed).incrementAndGet();
+            int count = done.incrementAndGet();
+            if (total >= 10 && count % (total / 10) == 0 && count < total) {
+                LOG.info("prefetch progress {}/{}", count, total);
+            }
+            if (count == total || cancelled && count == Math.min(next.get(), total)) {
+                finish();
+            }
+        }
+
+        private void finish() {
+            if (latch.getCount() > 0) {
+                latch.countDown();
+                LOG.info("prefetch {} files, fetched {}, cached {}, failed {}, cost {}ms", total, fetched.get(), cached.get(),
+                        failed.get(), System.currentTimeMillis() - start);
+            }
+        }
+
+        /**
+         * 取消未开始的预取
+         */
+        public void cancel() {
+            cancelled = true;
+            if (done.get() >= Math.min(next.get(), total)) {
+                finish();
+            }
+        }
+
+        /**
+         * 等待预取结束
+         *
+         * @return 是否已结束
+         */
+        public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+            return latch.await(timeout, unit);
+        }
+
+        public boolean isDone() {
+            return latch.getCount() == 0;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        /**
+         * 已处理的文件数
+         */
+        public int getDone() {
+            return done.get();
+        }
+
+        /**
+         * 从后端下载的文件数
+         */
+        public int getFetched() {
+            return fetched.get();
+        }
+
+        /**
+         * 已缓存跳过的文件数
+         */
+        public int getCached() {
+            return cached.get();
+        }
+
+        public int getFailed() {
+            return failed.get();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.taoyuanx.littlefile.cache;
+
+import com.taoyuanx.littlefile.support.FileDownStrategy;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * @author dushitaoyuan
+ * @desc 稀疏缓存, 管理正在按块填充的文件
+ * @date 2026/10/18
+ */
+public class SparseCache {
+    private final ConcurrentHashMap<String, SparseFile> files = new ConcurrentHashMap<>();
+    private final int blockSize;
+    private final FileDownStrategy fileDownStrategy;
+    private final FileFillRegistry fileFillRegistry;
+    private final BiConsumer<CacheEntry, File> onComplete;
+
+    /**
+     * @param blockSize        块大小(字节)
+     * @param fileDownStrategy 文件下载策略,需支持范围下载
+     * @param fileFillRegistry 块下载合并
+     * @param onComplete       文件全部下载完成后回调
+     */
+    public SparseCache(int blockSize, FileDownStrategy fileDownStrategy, FileFillRegistry fileFillRegistry,
+                       BiConsumer<CacheEntry, File> onComplete) {
+        this.blockSize = blockSize;
+        this.fileDownStrategy = fileDownStrategy;
+        this.fileFillRegistry = fileFillRegistry;
+        this.onComplete = onComplete;
+    }
+
+    /**
+     * 获取稀疏文件,不存在时创建
+     *
+     * @param key       文件路径
+     * @param cacheFile 完整缓存文件
+     * @return 后端无法提供文件大小时返回null
+     */
+    public SparseFile open(String key, File cacheFile) throws Exception {
+        SparseFile sparseFile = files.get(key);
+        if (sparseFile != null && sparseFile.isValid()) {
+            return sparseFile;
+        }
+        CacheEntry meta = fileDownStrategy.meta(key);
+        if (meta == null || meta.getSize() <= 0) {
+            return null;
+        }
+        synchronized (this) {
+            sparseFile = files.get(key);
+            if (sparseFile == null || !sparseFile.isValid()) {
+                sparseFile = SparseFile.open(meta, cacheFile, blockSize, fileDownStrategy, fileFillRegistry, (entry, file) -> {
+                    files.remove(key);
+                    onComplete.accept(entry, file);
+                });
+                files.put(key, sparseFile);
+            }
+            return sparseFile;
+        }
+    }
+
+    /**
+     * 完整文件已缓存,删除稀疏文件
+     */
+    public void remove(String key, File cacheFile) {
+        SparseFile sparseFile = files.remove(key);
+        if (sparseFile != null) {
+            sparseFile.delete();
+        } else {
+            SparseFile.dataOf(cacheFile).delete();
+            new File(cacheFile.getParentFile(), cacheFile.getName() + SparseFile.BLOCKS_SUFFIX).delete();
+        }
+    }
+
+    public int size() {
+        return files.size();
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+}
@@ -0,0 +1,291 @@
+package com.taoyuanx.littlefile.cache;
+
+import com.taoyuanx.littlefile.support.FileDownStrategy;
+import com.taoyuanx.littlefile.web.FileTransfer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Properties;
+import java.util.function.BiConsumer;
+
+/**
+ * @author dushitaoyuan
+ * @desc 稀疏缓存文件, 按固定大小分块, 断点下载时只下载请求区间内缺失的块
+ * 数据写入 name.lf.sparse, 已下载的块记录在 name.lf.blocks, 全部下载完成后重命名为缓存文件
+ * @date 2026/10/18
+ */
+public class SparseFile {
+    private static final Logger LOG = LoggerFactory.getLogger(SparseFile.class);
+    public static final String DATA_SUFFIX = ".lf.sparse";
+    public static final String BLOCKS_SUFFIX = ".lf.blocks";
+    private static final String BLOCKS_TEMP_SUFFIX = ".lf.blocks.tmp";
+    private static final String SIZE_KEY = "size", CRC32_KEY = "crc32", LAST_MODIFIED_KEY = "lastModified",
+            BLOCK_SIZE_KEY = "blockSize", BLOCKS_KEY = "blocks";
+
+    /**
+     * entry 文件元信息(后端大小及crc32)
+     * cacheFile 完整缓存文件
+     * dataFile 稀疏数据文件
+     * blocksFile 块记录文件
+     * blocks 已下载的块
+     * onComplete 全部块下载完成并重命名为缓存文件后回调
+     * readers 正在读取的请求数,deleted 已删除,有请求在读取时等读取结束后再删除文件
+     */
+    private final CacheEntry entry;
+    private final File cacheFile;
+    private final File dataFile;
+    private final File blocksFile;
+    private final int blockSize;
+    private final int blockCount;
+    private final BitSet blocks;
+    private final FileDownStrategy fileDownStrategy;
+    private final FileFillRegistry fileFillRegistry;
+    private final BiConsumer<CacheEntry, File> onComplete;
+    private volatile boolean complete = false;
+    private int readers;
+    private volatile boolean deleted = false;
+
+    private SparseFile(CacheEntry entry, File cacheFile, int blockSize, BitSet blocks, FileDownStrategy fileDownStrategy,
+                       FileFillRegistry fileFillRegistry, BiConsumer<CacheEntry, File> onComplete) {
+        this.entry = entry;
+        this.cacheFile = cacheFile;
+        this.dataFile = dataOf(cacheFile);
+        this.blocksFile = new File(cacheFile.getParentFile(), cacheFile.getName() + BLOCKS_SUFFIX);
+        this.blockSize = blockSize;
+        this.blockCount = (int) ((entry.getSize() + blockSize - 1) / blockSize);
+        this.blocks = blocks;
+        this.fileDownStrategy = fileDownStrategy;
+        this.fileFillRegistry = fileFillRegistry;
+        this.onComplete = onComplete;
+    }
+
+    /**
+     * 打开稀疏文件,存在上次未完成的稀疏文件且与后端一致时继续使用
+     * 一致: 大小相同, 且后端提供的crc32及修改时间均相同, 后端均未提供时无法判断文件是否被覆盖, 不继续使用
+     *
+     * @param meta 后端文件元信息
+     */
+    public static SparseFile open(CacheEntry meta, File cacheFile, int blockSize, FileDownStrategy fileDownStrategy,
+                                  FileFillRegistry fileFillRegistry, BiConsumer<CacheEntry, File> onComplete) throws IOException {
+        File parentFile = cacheFile.getParentFile();
+        if (!parentFile.exists()) {
+            parentFile.mkdirs();
+        }
+        File dataFile = dataOf(cacheFile);
+        File blocksFile = new File(parentFile, cacheFile.getName() + BLOCKS_SUFFIX);
+        if (dataFile.exists() && blocksFile.exists()) {
+            Properties pro = new Properties();
+            try (InputStream in = new FileInputStream(blocksFile)) {
+                pro.load(in);
+                long size = Long.parseLong(pro.getProperty(SIZE_KEY));
+                long crc32 = Long.parseLong(pro.getProperty(CRC32_KEY));
+                long lastModified = Long.parseLong(pro.getProperty(LAST_MODIFIED_KEY));
+                boolean validated = meta.getCrc32() >= 0 || meta.getLastModified() >= 0;
+                if (validated && size == meta.getSize() && crc32 == meta.getCrc32() && lastModified == meta.getLastModified()
+                        && dataFile.length() == size && blockSize == Integer.parseInt(pro.getProperty(BLOCK_SIZE_KEY))) {
+                    CacheEntry entry = new CacheEntry(meta.getKey(), size, lastModified, crc32);
+                    BitSet blocks = BitSet.valueOf(Base64.getDecoder().decode(pro.getProperty(BLOCKS_KEY)));
+                    return new SparseFile(entry, cacheFile, blockSize, blocks, fileDownStrategy, fileFillRegistry, onComplete);
+                }
+            } catch (Exception e) {
+                LOG.warn("read sparse blocks [{}] error {}", blocksFile, e.getMessage());
+            }
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(dataFile, "rw")) {
+            raf.setLength(meta.getSize());
+        }
+        CacheEntry entry = new CacheEntry(meta.getKey(), meta.getSize(), meta.getLastModified(), meta.getCrc32());
+        SparseFile sparseFile = new SparseFile(entry, cacheFile, blockSize, new BitSet(), fileDownStrategy, fileFillRegistry, onComplete);
+        sparseFile.saveBlocks();
+        return sparseFile;
+    }
+
+    /**
+     * 输出文件区间,逐块下载缺失的块并输出
+     *
+     * @param position 起始位置
+     * @param count    输出字节数
+     * @param target   输出通道
+     */
+    public void transferTo(long position, long count, WritableByteChannel target) throws Exception {
+        if (count <= 0) {
+            return;
+        }
+        long end = position + count;
+        synchronized (this) {
+            readers++;
+        }
+        try (FileChannel channel = openRead()) {
+            for (int block = (int) (position / blockSize); block <= (int) ((end - 1) / blockSize); block++) {
+                ensureBlock(block);
+                long blockStart = (long) block * blockSize;
+                long from = Math.max(position, blockStart), to = Math.min(end, blockStart + blockSize);
+                FileTransfer.transfer(channel, from, to - from, target);
+            }
+        } finally {
+            boolean delete;
+            synchronized (this) {
+                delete = --readers == 0 && deleted;
+            }
+            if (delete) {
+                deleteFiles();
+            }
+        }
+    }
+
+    /**
+     * 下载缺失的块,同一块并发请求只下载一次
+     */
+    private void ensureBlock(int block) throws Exception {
+        if (complete || hasBlock(block)) {
+            return;
+        }
+        fileFillRegistry.fill(entry.getKey() + "#" + block, () -> {
+            if (hasBlock(block)) {
+                return dataFile;
+            }
+            long offset = (long) block * blockSize;
+            int length = (int) Math.min(blockSize, entry.getSize() - offset);
+            LOG.debug("download block [{}] of file [{}] offset {} length {}", block, entry.getKey(), offset, length);
+            byte[] data = fileDownStrategy.downRange(entry.getKey(), offset, length);
+            if (data == null || data.length != length) {
+                throw new IOException("block " + block + " of file " + entry.getKey() + " incomplete");
+            }
+            try (FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                long pos = offset;
+                while (buffer.hasRemaining()) {
+                    pos += channel.write(buffer, pos);
+                }
+            }
+            markBlock(block);
+            return dataFile;
+        });
+    }
+
+    private synchronized boolean hasBlock(int block) {
+        return blocks.get(block);
+    }
+
+    private void markBlock(int block) throws IOException {
+        synchronized (this) {
+            blocks.set(block);
+            if (blocks.cardinality() < blockCount) {
+                saveBlocks();
+                return;
+            }
+            complete = true;
+        }
+        promote();
+    }
+
+    /**
+     * 全部块下载完成,重命名为缓存文件并写入清单
+     */
+    private void promote() throws IOException {
+        try {
+            CacheManifest.moveAtomic(dataFile, cacheFile);
+        } catch (IOException e) {
+            //文件被占用无法重命名时(如windows),复制
+            Files.copy(dataFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            dataFile.delete();
+        }
+        CacheManifest.write(cacheFile, entry);
+        blocksFile.delete();
+        LOG.debug("sparse file [{}] complete", entry.getKey());
+        onComplete.accept(entry, cacheFile);
+    }
+
+    private synchronized void saveBlocks() throws IOException {
+        File temp = new File(cacheFile.getParentFile(), cacheFile.getName() + BLOCKS_TEMP_SUFFIX);
+        Properties pro = new Properties();
+        pro.setProperty(SIZE_KEY, String.valueOf(entry.getSize()));
+        pro.setProperty(CRC32_KEY, String.valueOf(entry.getCrc32()));
+        pro.setProperty(LAST_MODIFIED_KEY, String.valueOf(entry.getLastModified()));
+        pro.setProperty(BLOCK_SIZE_KEY, String.valueOf(blockSize));
+        pro.setProperty(BLOCKS_KEY, Base64.getEncoder().encodeToString(blocks.toByteArray()));
+        try {
+            try (OutputStream out = new FileOutputStream(temp)) {
+                pro.store(out, null);
+            }
+            CacheManifest.moveAtomic(temp, blocksFile);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * 打开读取通道,稀疏文件已重命名为缓存文件时读取缓存文件
+     */
+    private FileChannel openRead() throws IOException {
+        try {
+            return FileChannel.open(dataFile.toPath(), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            if (!complete) {
+                throw e;
+            }
+            return FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ);
+        }
+    }
+
+    /**
+     * 删除稀疏文件及块记录,有请求在读取时由最后一个读取结束的请求删除
+     */
+    public void delete() {
+        synchronized (this) {
+            deleted = true;
+            if (readers > 0) {
+                return;
+            }
+        }
+        deleteFiles();
+    }
+
+    private void deleteFiles() {
+        dataFile.delete();
+        blocksFile.delete();
+    }
+
+    /**
+     * 稀疏文件是否可用,已删除或数据文件被清理时不可用
+     */
+    public boolean isValid() {
+        return complete || !deleted && dataFile.exists();
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public synchronized int getBlockCachedCount() {
+        return blocks.cardinality();
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    public CacheEntry getEntry() {
+        return entry;
+    }
+
+    public static File dataOf(File cacheFile) {
+        return new File(cacheFile.getParentFile(), cacheFile.getName() + DATA_SUFFIX);
+    }
+}
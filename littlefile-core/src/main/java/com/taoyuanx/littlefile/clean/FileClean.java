@@ -1,68 +1,474 @@
 package com.taoyuanx.littlefile.clean;
 
 import java.io.File;
-import java.util.Collection;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.DirectoryFileFilter;
-import org.apache.commons.io.filefilter.FileFileFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import com.taoyuanx.littlefile.cache.CacheEntry;
+import com.taoyuanx.littlefile.cache.CacheIndex;
+import com.taoyuanx.littlefile.cache.CacheJournal;
+import com.taoyuanx.littlefile.cache.CacheManifest;
+import com.taoyuanx.littlefile.cache.GzipCompressor;
+import com.taoyuanx.littlefile.cache.SparseFile;
 import com.taoyuanx.littlefile.clean.FileCleanTask.CheckDelete;
 
+/**
+ * @author 都市桃源
+ * 缓存清理: 根据缓存索引按最久未访问顺序淘汰过期文件及超出容量的文件,不再遍历目录
+ * 索引持久化到缓存目录下的日志及快照,启动时恢复后在后台逐个核对文件,并补回有清单但丢失日志记录的文件
+ * 仅首次启动(无快照及日志)时遍历一次缓存目录,将已有缓存文件加入索引
+ * 磁盘水位: 缓存目录所在磁盘使用率超过高水位时淘汰至低水位,填充前检查水位,超过硬水位时填充等待淘汰
+ * 不在索引中的稀疏缓存文件及下载临时文件,启动时及每小时遍历一次目录清理长时间未更新的残留
+ */
 public class FileClean {
-	private static ThreadPoolExecutor taskPool;
+	public static final Logger LOG = LoggerFactory.getLogger(FileClean.class);
+	/**
+	 * 淘汰检查周期及每批最多淘汰个数
+	 */
+	public static final Long CLEAN_PERIOD_DEFAULT = TimeUnit.SECONDS.toMillis(10);
+	private static final int EVICT_BATCH = 1000;
+	/**
+	 * 后台核对索引时每核对该数量的文件暂停一次,避免启动时磁盘繁忙
+	 */
+	private static final int RECONCILE_BATCH = 1000;
+	private static final long RECONCILE_PAUSE = 10;
+	private static final String CACHE_FILE_MARK = ".lf.";
+	private static final String FILL_FILE_SUFFIX = ".fill";
+	/**
+	 * 稀疏缓存文件及下载临时文件不在索引中,启动时及每隔该周期清理长时间未更新的残留(中断或放弃的下载)
+	 * 未设置缓存过期时间时,超过 STALE_EXPIRE_DEFAULT 未更新视为残留
+	 */
+	private static final long SWEEP_PERIOD = TimeUnit.HOURS.toMillis(1);
+	public static final Long STALE_EXPIRE_DEFAULT = TimeUnit.DAYS.toMillis(1);
+	private long lastSweep = 0;
+	private ThreadPoolExecutor taskPool;
 	private  volatile boolean run=true;
 	/**
-	 * dir 操作目录
-	 * checkDelete 文件判断条件
-	 * period 循环周期
+	 * dir 缓存目录
+	 * cacheIndex 缓存索引
+	 * journal 缓存索引持久化
+	 * checkDelete 启动时判断无清单的文件是否删除
+	 * cacheTime 未访问超过该时间的文件删除,0 不过期
+	 * maxBytes 缓存容量,0 不限制
+	 * period 淘汰检查周期
+	 * highWatermark lowWatermark hardWatermark 磁盘使用率高水位,低水位,硬水位(0-1),0 不检查
+	 * fileStore 缓存目录所在磁盘
+	 * lock 提前唤醒淘汰线程及等待淘汰完成
 	 */
 	private File dir;
+	private CacheIndex cacheIndex;
+	private CacheJournal journal;
+	private boolean journalLoaded = false;
 	private CheckDelete checkDelete;
-	private Long period;
+	private Long cacheTime;
+	private Long maxBytes;
+	private Long period = CLEAN_PERIOD_DEFAULT;
+	private double highWatermark = 0, lowWatermark = 0, hardWatermark = 0;
+	private FileStore fileStore;
+	private final Object lock = new Object();
+	private boolean wakeup = false;
 	private Thread thread=null;
-	public FileClean(Integer num, File dir,CheckDelete checkDelete,Long period) {
+	public FileClean(Integer num, File dir, CacheIndex cacheIndex, CheckDelete checkDelete, Long cacheTime, Long maxBytes) {
 		taskPool = new ThreadPoolExecutor(num, num, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
 		this.dir = dir;
+		this.cacheIndex = cacheIndex;
+		this.journal = new CacheJournal(dir, cacheIndex);
 		this.checkDelete=checkDelete;
-		this.period=period;
+		this.cacheTime = cacheTime;
+		this.maxBytes = maxBytes;
 	}
 
 	public void doClean(){
+		try {
+			if (journalLoaded) {
+				reconcile();
+			} else {
+				loadExisting();
+			}
+		} catch (InterruptedException e) {
+			run = false;
+		} catch (Exception e) {
+			LOG.warn("load cache dir [{}] error {}", dir, e.getMessage());
+		}
+		try {
+			sweepStale();
+		} catch (IOException e) {
+			LOG.warn("sweep cache dir [{}] error {}", dir, e.getMessage());
+		}
 		while (run) {
 			try {
-				Thread.sleep(period);
-				Collection<File> listFiles = FileUtils.listFiles(dir, FileFileFilter.FILE, DirectoryFileFilter.DIRECTORY);
-				if(null==listFiles||listFiles.isEmpty()){
-					continue;
+				synchronized (lock) {
+					if (!wakeup) {
+						lock.wait(period);
+					}
+					wakeup = false;
+				}
+				evict();
+				evictDisk();
+				if (System.currentTimeMillis() - lastSweep >= SWEEP_PERIOD) {
+					sweepStale();
+				}
+				synchronized (lock) {
+					lock.notifyAll();
 				}
-				for (File file : listFiles) {
-					taskPool.submit(new FileCleanTask(file,checkDelete));
+				journal.flush();
+				if (journal.needCompact()) {
+					journal.compact();
 				}
+			} catch (InterruptedException e) {
+				break;
 			} catch (Exception e) {
-				
+				LOG.warn("evict cache error {}", e.getMessage());
 			}
-			
 		}
+		journal.close();
 		taskPool.shutdownNow();
 	}
+
+	/**
+	 * 核对索引与磁盘,文件已不存在或大小不一致的移出索引,请求时由清单重新加入
+	 * 之后遍历清单,补回不在索引中的文件(宕机时未刷盘的日志记录),避免永远不被淘汰
+	 */
+	private void reconcile() throws InterruptedException, IOException {
+		int checked = 0, removed = 0;
+		for (CacheEntry entry : cacheIndex.snapshot(null)) {
+			if (!run) {
+				return;
+			}
+			if (new File(dir, entry.getKey()).length() != entry.getSize() && cacheIndex.remove(entry)) {
+				removed++;
+			}
+			if (++checked % RECONCILE_BATCH == 0) {
+				Thread.sleep(RECONCILE_PAUSE);
+			}
+		}
+		LOG.info("reconcile cache index {} files, {} removed, {} added", checked, removed, addMissing());
+	}
+
+	/**
+	 * 有清单且大小一致但不在索引中的文件加入索引,按文件修改时间作为最后访问时间
+	 */
+	private int addMissing() throws InterruptedException, IOException {
+		if (!dir.exists()) {
+			return 0;
+		}
+		int[] count = {0, 0};
+		boolean[] interrupted = {false};
+		Path root = dir.toPath();
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+				if (!run) {
+					return FileVisitResult.TERMINATE;
+				}
+				String name = path.getFileName().toString();
+				if (!name.endsWith(CacheManifest.MANIFEST_SUFFIX)) {
+					return FileVisitResult.CONTINUE;
+				}
+				File file = new File(path.getParent().toFile(), name.substring(0, name.length() - CacheManifest.MANIFEST_SUFFIX.length()));
+				String key = root.relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+				if (!cacheIndex.contains(key)) {
+					CacheEntry entry = CacheManifest.read(key, file);
+					if (entry != null && file.exists() && entry.getSize() == file.length()) {
+						entry.setLastAccess(file.lastModified());
+						if (cacheIndex.putIfAbsent(entry)) {
+							count[0]++;
+						}
+					}
+				}
+				if (++count[1] % RECONCILE_BATCH == 0) {
+					try {
+						Thread.sleep(RECONCILE_PAUSE);
+					} catch (InterruptedException e) {
+						interrupted[0] = true;
+						return FileVisitResult.TERMINATE;
+					}
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		if (interrupted[0]) {
+			throw new InterruptedException();
+		}
+		return count[0];
+	}
+
+	/**
+	 * 增量淘汰,每批从索引头部取出过期或超出容量的文件
+	 */
+	public int evict() throws InterruptedException {
+		int count = 0;
+		List<CacheEntry> evicted;
+		do {
+			evicted = cacheIndex.evict(cacheTime, maxBytes, EVICT_BATCH);
+			deleteAll(evicted);
+			count += evicted.size();
+		} while (evicted.size() == EVICT_BATCH);
+		if (count > 0) {
+			LOG.debug("evict {} files, cache used {} bytes", count, cacheIndex.getUsedBytes());
+		}
+		return count;
+	}
+
+	/**
+	 * 磁盘使用率超过高水位时,按最久未访问顺序淘汰至低水位
+	 * 只淘汰缓存按占用比例应承担的部分,删除后未释放空间(文件仍被打开)时停止,
+	 * 磁盘压力来自日志等其他数据时不会清空整个缓存
+	 */
+	public int evictDisk() throws IOException, InterruptedException {
+		if (fileStore == null || getDiskUsage() < highWatermark) {
+			return 0;
+		}
+		long total = fileStore.getTotalSpace(), usable = fileStore.getUsableSpace();
+		long needFree = (long) (total * (1 - lowWatermark)) - usable;
+		long used = cacheIndex.getUsedBytes();
+		if (needFree <= 0 || used == 0) {
+			return 0;
+		}
+		long share = (long) ((double) needFree * Math.min(used, total - usable) / Math.max(1, total - usable));
+		//evict 容量为0表示不限制,至少保留1字节
+		long target = Math.max(1, used - share);
+		int count = 0;
+		while (run) {
+			List<CacheEntry> evicted = cacheIndex.evict(0, target, EVICT_BATCH);
+			if (evicted.isEmpty()) {
+				break;
+			}
+			deleteAll(evicted);
+			count += evicted.size();
+			long freed = fileStore.getUsableSpace() - usable;
+			if (freed <= 0) {
+				break;
+			}
+			usable += freed;
+		}
+		LOG.info("disk usage {} over high watermark, evict {} files, cache used {} bytes",
+				String.format("%.2f", getDiskUsage()), count, cacheIndex.getUsedBytes());
+		return count;
+	}
+
+	/**
+	 * 填充前检查磁盘水位,超过高水位或缓存容量时提前唤醒淘汰,超过硬水位时等待淘汰
+	 *
+	 * @param timeout 等待超时时间
+	 * @throws IOException 超时仍超过硬水位
+	 */
+	public void awaitSpace(long timeout) throws IOException {
+		boolean overCapacity = maxBytes > 0 && cacheIndex.getUsedBytes() >= maxBytes;
+		if (fileStore == null && !overCapacity) {
+			return;
+		}
+		double usage = fileStore == null ? 0 : getDiskUsage();
+		if (usage < highWatermark && !overCapacity) {
+			return;
+		}
+		long deadline = System.currentTimeMillis() + timeout;
+		synchronized (lock) {
+			wakeup = true;
+			lock.notifyAll();
+			while (usage >= hardWatermark && fileStore != null) {
+				long wait = deadline - System.currentTimeMillis();
+				if (wait <= 0) {
+					throw new IOException("cache disk " + dir + " usage " + String.format("%.2f", usage) + " over hard watermark");
+				}
+				try {
+					lock.wait(wait);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("wait cache disk space interrupted");
+				}
+				usage = getDiskUsage();
+			}
+		}
+	}
+
+	private double getDiskUsage() throws IOException {
+		long total = fileStore.getTotalSpace();
+		return total <= 0 ? 0 : 1 - (double) fileStore.getUsableSpace() / total;
+	}
+
+	/**
+	 * 并行删除并等待完成,磁盘水位淘汰需根据删除后的空间判断
+	 */
+	private void deleteAll(List<CacheEntry> evicted) throws InterruptedException {
+		List<Future<?>> futures = new ArrayList<>(evicted.size());
+		for (CacheEntry entry : evicted) {
+			futures.add(taskPool.submit(() -> delete(new File(dir, entry.getKey()))));
+		}
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				LOG.warn("delete cache file error {}", e.getCause().getMessage());
+			}
+		}
+	}
+
+	/**
+	 * 删除长时间未更新的稀疏缓存文件,块记录及下载临时文件
+	 */
+	public int sweepStale() throws IOException {
+		lastSweep = System.currentTimeMillis();
+		if (!dir.exists()) {
+			return 0;
+		}
+		long expire = cacheTime != null && cacheTime > 0 ? cacheTime : STALE_EXPIRE_DEFAULT;
+		long before = lastSweep - expire;
+		int[] count = {0};
+		Files.walkFileTree(dir.toPath(), new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+				String name = path.getFileName().toString();
+				boolean partial = name.endsWith(FILL_FILE_SUFFIX) || name.contains(SparseFile.DATA_SUFFIX)
+						|| name.contains(SparseFile.BLOCKS_SUFFIX);
+				if (partial && attrs.lastModifiedTime().toMillis() < before && path.toFile().delete()) {
+					count[0]++;
+				}
+				return run ? FileVisitResult.CONTINUE : FileVisitResult.TERMINATE;
+			}
+		});
+		if (count[0] > 0) {
+			LOG.info("sweep {} stale partial files in cache dir [{}]", count[0], dir);
+		}
+		return count[0];
+	}
+
+	/**
+	 * 启动时将缓存目录中已有的缓存文件按修改时间加入索引,删除中断残留的临时文件及无清单的文件
+	 */
+	private void loadExisting() throws IOException {
+		if (!dir.exists()) {
+			return;
+		}
+		List<CacheEntry> existing = new ArrayList<>();
+		Path root = dir.toPath();
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+				File file = path.toFile();
+				String name = file.getName();
+				if (name.endsWith(FILL_FILE_SUFFIX)) {
+					file.delete();
+					return FileVisitResult.CONTINUE;
+				}
+				if (name.contains(CACHE_FILE_MARK)) {
+					return FileVisitResult.CONTINUE;
+				}
+				String key = root.relativize(path).toString().replace(File.separatorChar, '/');
+				CacheEntry entry = CacheManifest.read(key, file);
+				if (entry != null && entry.getSize() == attrs.size()) {
+					entry.setLastAccess(attrs.lastModifiedTime().toMillis());
+					existing.add(entry);
+				} else if (checkDelete.delete(file)) {
+					delete(file);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		existing.sort(Comparator.comparingLong(CacheEntry::getLastAccess));
+		for (CacheEntry entry : existing) {
+			if (cacheIndex.get(entry.getKey()) == null) {
+				CacheEntry loaded = new CacheEntry(entry.getKey(), entry.getSize(), entry.getLastModified(), entry.getCrc32());
+				loaded.setLastAccess(entry.getLastAccess());
+				cacheIndex.put(loaded);
+			}
+		}
+		LOG.info("load {} cached files, {} bytes", existing.size(), cacheIndex.getUsedBytes());
+	}
+
+	/**
+	 * 删除缓存文件及清单,gzip副本
+	 */
+	public static void delete(File file) {
+		file.delete();
+		CacheManifest.delete(file);
+		GzipCompressor.sidecarOf(file).delete();
+		LOG.debug("删除文件{}", file);
+	}
 	
 	public void start(){
 		if(thread==null) {
+			try {
+				journalLoaded = journal.load();
+			} catch (Exception e) {
+				LOG.warn("load cache index journal error {}", e.getMessage());
+			}
 			thread=new Thread(new Runnable() {
 				@Override
 				public void run() {
 					doClean();
 				}
-			});
+			}, "littlefile-clean");
+			thread.setDaemon(true);
 			thread.start();
 		}
 	}
 	public void stop(){
 		run=false;
+		if (thread != null) {
+			thread.interrupt();
+		}
+	}
+
+	public void setPeriod(Long period) {
+		this.period = period;
+	}
+
+	/**
+	 * 设置磁盘水位
+	 *
+	 * @param highPercent 高水位(磁盘使用率百分比),0 不检查
+	 * @param lowPercent  低水位
+	 * @param hardPercent 硬水位,超过时填充等待淘汰
+	 */
+	public void setDiskWatermark(int highPercent, int lowPercent, int hardPercent) {
+		setDiskWatermark(highPercent, lowPercent, hardPercent, null);
+	}
+
+	/**
+	 * 设置磁盘水位
+	 *
+	 * @param fileStore 缓存目录所在磁盘,为null时按缓存目录获取
+	 */
+	public void setDiskWatermark(int highPercent, int lowPercent, int hardPercent, FileStore fileStore) {
+		if (highPercent <= 0) {
+			this.fileStore = null;
+			return;
+		}
+		if (lowPercent <= 0 || lowPercent > highPercent || hardPercent < highPercent) {
+			throw new IllegalArgumentException("disk watermark must satisfy low <= high <= hard");
+		}
+		this.highWatermark = highPercent / 100.0;
+		this.lowWatermark = lowPercent / 100.0;
+		this.hardWatermark = hardPercent / 100.0;
+		if (fileStore != null) {
+			this.fileStore = fileStore;
+			return;
+		}
+		try {
+			if (!dir.exists()) {
+				dir.mkdirs();
+			}
+			this.fileStore = Files.getFileStore(dir.toPath());
+		} catch (IOException e) {
+			LOG.warn("get file store of [{}] error {}, disk watermark disabled", dir, e.getMessage());
+		}
 	}
 	
 }
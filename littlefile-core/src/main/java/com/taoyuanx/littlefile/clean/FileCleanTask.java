@@ -31,7 +31,7 @@ public class FileCleanTask implements Runnable{
 	/**
 	 * @author 都市桃源
 	 * 2018年11月13日 下午1:50:08
-	 * 默认实现,删除损坏文件和历史文件
+	 * 默认实现,删除空文件和超过缓存时间的文件
 	*/
 	public static class BadFileAndPeriodDelte extends CheckDelete{
 		private Long cacheTime;
@@ -43,13 +43,13 @@ public class FileCleanTask implements Runnable{
 		@Override
 		public boolean delete(File file) {
 			try {
-				if(file.getTotalSpace()<1000){
+				if(file.length()==0){
 					return true;
 				}
-				if(System.currentTimeMillis()-file.lastModified()>cacheTime){
+				if(cacheTime>0&&System.currentTimeMillis()-file.lastModified()>cacheTime){
 					return true;
 				}
-				return true;
+				return false;
 			} catch (Exception e) {
 				return false;
 			}
@@ -1,14 +1,20 @@
 package com.taoyuanx.littlefile.config;
 
 import com.taoyuanx.littlefile.alioss.AliyunOssFileService;
+import com.taoyuanx.littlefile.cache.CacheIndex;
+import com.taoyuanx.littlefile.cache.FileFillRegistry;
+import com.taoyuanx.littlefile.cache.Prefetcher;
 import com.taoyuanx.littlefile.clean.FileClean;
 import com.taoyuanx.littlefile.clean.FileCleanTask.BadFileAndPeriodDelte;
 import com.taoyuanx.littlefile.clean.FileCleanTask.CheckDelete;
 import com.taoyuanx.littlefile.fdfs.FdfsFileService;
+import com.taoyuanx.littlefile.ftp.FtpClientPool;
+import com.taoyuanx.littlefile.sftp.SftpChannelPool;
 import com.taoyuanx.littlefile.ftp.LittleFileFtp;
 import com.taoyuanx.littlefile.sftp.LittleFileSftp;
 import com.taoyuanx.littlefile.support.FileDownStrategy;
 import com.taoyuanx.littlefile.support.FileServerEum;
+import com.taoyuanx.littlefile.support.FillTask;
 import com.taoyuanx.littlefile.support.impl.*;
 import com.taoyuanx.littlefile.util.Utils;
 import com.taoyuanx.littlefile.web.security.AbstractSimpleTokenManager;
@@ -21,7 +27,9 @@ import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 
 /**
@@ -44,6 +52,10 @@ public class LittleFileConfig {
         public static final String LITTLEFILE_SFTP_WORKDIR = "littlefile.sftp.workdir";
         public static final String LITTLEFILE_SFTP_PRIVATE_KEY = "littlefile.sftp.private_key";
         public static final String LITTLEFILE_SFTP_PRIVATE_KEY_PASSWORD = "littlefile.sftp.private_key_password";
+        public static final String LITTLEFILE_SFTP_POOL_MAX_SESSIONS = "littlefile.sftp.pool_max_sessions";
+        public static final String LITTLEFILE_SFTP_POOL_CHANNELS_PER_SESSION = "littlefile.sftp.pool_channels_per_session";
+        public static final String LITTLEFILE_SFTP_POOL_MAX_IDLE_TIME = "littlefile.sftp.pool_max_idle_time";
+        public static final String LITTLEFILE_SFTP_POOL_MAX_LIFETIME = "littlefile.sftp.pool_max_lifetime";
     }
 
     public static class FtpConfig {
@@ -56,10 +68,16 @@ public class LittleFileConfig {
         public static final String LITTLEFILE_FTP_KEY_MANAGER_PASSWORD = "littlefile.ftp.key_manager_password";
         public static final String LITTLEFILE_FTP_TRUST_MANAGER_PATH = "littlefile.ftp.trust_manager_path";
         public static final String LITTLEFILE_FTP_TRUST_MANAGER_PASSWORD = "littlefile.ftp.trust_manager_password";
+        //连接池最大连接数,空闲超时时间,最长存活时间
+        public static final String LITTLEFILE_FTP_POOL_MAX_TOTAL = "littlefile.ftp.pool_max_total";
+        public static final String LITTLEFILE_FTP_POOL_MAX_IDLE_TIME = "littlefile.ftp.pool_max_idle_time";
+        public static final String LITTLEFILE_FTP_POOL_MAX_LIFETIME = "littlefile.ftp.pool_max_lifetime";
     }
 
     public static class LocalConfig {
         public static final String LITTLEFILE_LOCAL_DIRS = "littlefile.local.dirs";
+        //直接输出源文件,不复制到缓存目录
+        public static final String LITTLEFILE_LOCAL_DIRECT = "littlefile.local.direct";
     }
 
     public static class OssConfig {
@@ -77,13 +95,65 @@ public class LittleFileConfig {
     }
 
     public static final String LITTLEFILE_SERVER_TYPE = "littlefile.server_type";
+    //多后端路由,逗号分隔的后端名称,按顺序匹配路径,未匹配的路径使用 littlefile.server_type 配置的后端
+    public static final String LITTLEFILE_ROUTES = "littlefile.routes";
+    //后端配置 littlefile.route.<名称>.server_type/prefix/pattern,其余配置同单后端配置去掉"littlefile.",如 littlefile.route.<名称>.sftp.host,未配置的沿用全局配置
+    public static final String LITTLEFILE_ROUTE = "littlefile.route.";
+    public static final String ROUTE_PREFIX = "prefix";
+    public static final String ROUTE_PATTERN = "pattern";
     public static final String LITTLEFILE_FILE_GZIP = "littlefile.file.gzip";
     public static final String LITTLEFILE_FILE_CACHE_TIME = "littlefile.file_cache_time";
     public static final Long LITTLEFILE_FILE_CACHE_TIME_DEFAULT = TimeUnit.MINUTES.toMillis(30);
 
     public static final String LITTLEFILE_FILE_CLEAN_THREAD_NUM = "littlefile.file_clean_thread_num";
+    //缓存容量(MB),超出时淘汰最久未访问的文件,0 不限制
+    public static final String LITTLEFILE_FILE_CACHE_MAX_MB = "littlefile.file_cache_max_mb";
     public static final String LITTLEFILE_FILE_CACHE_DIR = "littlefile.file_cache_dir";
+    //缓存磁盘水位(使用率百分比): 超过高水位淘汰至低水位,超过硬水位时填充等待淘汰,高水位0 不检查
+    public static final String LITTLEFILE_FILE_DISK_HIGH_WATERMARK = "littlefile.file_disk_high_watermark";
+    public static final String LITTLEFILE_FILE_DISK_LOW_WATERMARK = "littlefile.file_disk_low_watermark";
+    public static final String LITTLEFILE_FILE_DISK_HARD_WATERMARK = "littlefile.file_disk_hard_watermark";
     public static final Integer LITTLEFILE_FILE_CLEAN_THREAD_NUM_DEFAULT = 3;
+    //并发请求同一未缓存文件时,等待首个请求下载完成的超时时间
+    public static final String LITTLEFILE_FILE_FILL_TIMEOUT = "littlefile.file_fill_timeout";
+    //边下载边响应,缓存未命中时无需等待文件下载完成
+    public static final String LITTLEFILE_FILE_STREAM_THROUGH = "littlefile.file.stream_through";
+    public static final String LITTLEFILE_FILE_FILL_THREAD_NUM = "littlefile.file_fill_thread_num";
+    public static final Integer LITTLEFILE_FILE_FILL_THREAD_NUM_DEFAULT = 16;
+    //异步处理(Servlet 3.1),少量线程即可支撑大量慢速下载
+    public static final String LITTLEFILE_FILE_ASYNC = "littlefile.file.async";
+    //稀疏缓存块大小(KB),断点下载只下载请求区间内缺失的块,0 不开启
+    public static final String LITTLEFILE_FILE_SPARSE_BLOCK_KB = "littlefile.file.sparse_block_kb";
+    //内存缓存容量(MB),0 不开启,及可放入内存的单个文件最大大小(KB)
+    public static final String LITTLEFILE_FILE_MEMORY_CACHE_MB = "littlefile.file.memory_cache_mb";
+    public static final String LITTLEFILE_FILE_MEMORY_OBJECT_KB = "littlefile.file.memory_object_kb";
+    public static final Integer LITTLEFILE_FILE_MEMORY_OBJECT_KB_DEFAULT = 64;
+    //磁盘缓存准入次数,访问次数达到该值的文件才写入缓存,其余直接从后端输出,小于2 不开启
+    public static final String LITTLEFILE_FILE_ADMISSION_THRESHOLD = "littlefile.file.admission_threshold";
+    //不存在文件缓存时间,期间不再请求后端直接响应404,0 不开启,及最多缓存个数
+    public static final String LITTLEFILE_FILE_NEGATIVE_CACHE_TIME = "littlefile.file.negative_cache_time";
+    public static final String LITTLEFILE_FILE_NEGATIVE_CACHE_SIZE = "littlefile.file.negative_cache_size";
+    public static final Integer LITTLEFILE_FILE_NEGATIVE_CACHE_SIZE_DEFAULT = 10000;
+    //并行分段下载(fdfs,oss)的最小文件大小(MB),0 不开启,段大小(KB)及单个文件并发段数
+    public static final String LITTLEFILE_FILE_PARALLEL_FILL_MIN_MB = "littlefile.file.parallel_fill_min_mb";
+    public static final String LITTLEFILE_FILE_PARALLEL_FILL_PART_KB = "littlefile.file.parallel_fill_part_kb";
+    public static final String LITTLEFILE_FILE_PARALLEL_FILL_CONCURRENCY = "littlefile.file.parallel_fill_concurrency";
+    //对冲下载最小延迟,填充超过该时间及近期耗时p95仍未完成时再发起一次下载,0 不开启,及对冲请求占比(百分比)
+    public static final String LITTLEFILE_FILE_HEDGE_DELAY = "littlefile.file.hedge_delay";
+    public static final String LITTLEFILE_FILE_HEDGE_BUDGET_PERCENT = "littlefile.file.hedge_budget_percent";
+    //后端异步下载线程数,0 不开启,及等待队列大小,队列满时响应503
+    public static final String LITTLEFILE_FILE_IO_THREAD_NUM = "littlefile.file.io_thread_num";
+    public static final String LITTLEFILE_FILE_IO_QUEUE_SIZE = "littlefile.file.io_queue_size";
+    public static final Integer LITTLEFILE_FILE_IO_QUEUE_SIZE_DEFAULT = 256;
+    //后端并发上限的最大值(按下载耗时自适应),0 不开启,及超过上限时最长排队时间,排队超时响应503
+    public static final String LITTLEFILE_FILE_BULKHEAD_MAX_LIMIT = "littlefile.file.bulkhead_max_limit";
+    public static final String LITTLEFILE_FILE_BULKHEAD_WAIT = "littlefile.file.bulkhead_wait";
+    //预取线程数,生成签名url时是否后台预取
+    public static final String LITTLEFILE_FILE_PREFETCH_THREAD_NUM = "littlefile.file.prefetch_thread_num";
+    public static final String LITTLEFILE_FILE_PREFETCH_ON_SIGN = "littlefile.file.prefetch_on_sign";
+    //启动预热文件数,0 不开启,及预热列表文件,默认保存在缓存目录
+    public static final String LITTLEFILE_FILE_WARMUP_COUNT = "littlefile.file.warmup_count";
+    public static final String LITTLEFILE_FILE_WARMUP_FILE = "littlefile.file.warmup_file";
 
 
     //安全控制
@@ -91,6 +161,8 @@ public class LittleFileConfig {
     public static final String LITTLEFILE_TOKEN_PASSWORD = "littlefile.token.password";
     //token过期时间
     public static final String LITTLEFILE_TOKEN_EXPIRE_MIN = "littlefile.token.expireMin";
+    //已校验token缓存个数,0 不缓存
+    public static final String LITTLEFILE_TOKEN_CACHE_SIZE = "littlefile.token.cache_size";
     //文件访问url模板
     public static final String LITTLEFILE_FILEHANDLE_URL_FORMAT = "littlefile.fileHandle.url_format";
 
@@ -101,8 +173,10 @@ public class LittleFileConfig {
             String property = null;
             Properties pro = new Properties();
             pro.load(Utils.loadFile(littleConfig));
-            property = pro.getProperty(LITTLEFILE_SERVER_TYPE, "FDFS");
-            FileServerEum serverEum = FileServerEum.valueOf(property);
+            String routes = pro.getProperty(LITTLEFILE_ROUTES);
+            //配置多后端路由时可不配置默认后端
+            property = pro.getProperty(LITTLEFILE_SERVER_TYPE, Utils.isNotEmpty(routes) ? null : "FDFS");
+            FileServerEum serverEum = Utils.isNotEmpty(property) ? FileServerEum.valueOf(property) : null;
             CONFIGHOLDER.put(LITTLEFILE_SERVER_TYPE, serverEum);
             property = pro.getProperty(LITTLEFILE_FILE_CACHE_TIME);
             Long cacheTime = Utils.calcTimes(property);
@@ -117,7 +191,43 @@ public class LittleFileConfig {
                 num = Integer.parseInt(property);
             }
             CONFIGHOLDER.put(LITTLEFILE_FILE_CLEAN_THREAD_NUM, num);
+            property = pro.getProperty(LITTLEFILE_FILE_CACHE_MAX_MB);
+            CONFIGHOLDER.put(LITTLEFILE_FILE_CACHE_MAX_MB, Utils.isNotEmpty(property) ? Long.parseLong(property) : 0L);
             CONFIGHOLDER.put(LITTLEFILE_FILE_CACHE_DIR, pro.getProperty(LITTLEFILE_FILE_CACHE_DIR));
+            property = pro.getProperty(LITTLEFILE_FILE_DISK_HIGH_WATERMARK);
+            int highWatermark = Utils.isNotEmpty(property) ? Integer.parseInt(property) : 0;
+            CONFIGHOLDER.put(LITTLEFILE_FILE_DISK_HIGH_WATERMARK, highWatermark);
+            property = pro.getProperty(LITTLEFILE_FILE_DISK_LOW_WATERMARK);
+            CONFIGHOLDER.put(LITTLEFILE_FILE_DISK_LOW_WATERMARK, Utils.isNotEmpty(property) ? Integer.parseInt(property) : Math.max(1, highWatermark - 10));
+            property = pro.getProperty(LITTLEFILE_FILE_DISK_HARD_WATERMARK);
+            CONFIGHOLDER.put(LITTLEFILE_FILE_DISK_HARD_WATERMARK, Utils.isNotEmpty(property) ? Integer.parseInt(property) : (highWatermark + 100) / 2);
+            Long fillTimeout = Utils.calcTimes(pro.getProperty(LITTLEFILE_FILE_FILL_TIMEOUT));
+            if (null == fillTimeout) {
+                fillTimeout = FileFillRegistry.FILL_TIMEOUT_DEFAULT;
+            }
+            CONFIGHOLDER.put(LITTLEFILE_FILE_FILL_TIMEOUT, fillTimeout);
+            CONFIGHOLDER.put(LITTLEFILE_FILE_STREAM_THROUGH, Boolean.parseBoolean(pro.getProperty(LITTLEFILE_FILE_STREAM_THROUGH)));
+            property = pro.getProperty(LITTLEFILE_FILE_FILL_THREAD_NUM);
+            CONFIGHOLDER.put(LITTLEFILE_FILE_FILL_THREAD_NUM, Utils.isNotEmpty(property) ? Integer.parseInt(property) : LITTLEFILE_FILE_FILL_THREAD_NUM_DEFAULT);
+            CONFIGHOLDER.put(LITTLEFILE_FILE_ASYNC, Boolean.parseBoolean(pro.getProperty(LITTLEFILE_FILE_ASYNC)));
+            property = pro.getProperty(LITTLEFILE_FILE_SPARSE_BLOCK_KB);
+            CONFIGHOLDER.put(LITTLEFILE_FILE_SPARSE_BLOCK_KB, Utils.isNotEmpty(property) ? Integer.parseInt(property) : 0);
+            property = pro.getProperty(LITTLEFILE_FILE_MEMORY_CACHE_MB);
+            CONFIGHOLDER.put(LITTLEFILE_FILE_MEMORY_CACHE_MB, Utils.isNotEmpty(property) ? Integer.parseInt(property) : 0);
+            property = pro.getProperty(LITTLEFILE_FILE_MEMORY_OBJECT_KB);
+            CONFIGHOLDER.put(LITTLEFILE_FILE_MEMORY_OBJECT_KB, Utils.isNotEmpty(property) ? Integer.parseInt(property) : LITTLEFILE_FILE_MEMORY_OBJECT_KB_DEFAULT);
+            property = pro.getProperty(LITTLEFILE_FILE_ADMISSION_THRESHOLD);
+            CONFIGHOLDER.put(LITTLEFILE_FILE_ADMISSION_THRESHOLD, Utils.isNotEmpty(property) ? Integer.parseInt(property) : 0);
+            Long negativeCacheTime = Utils.calcTimes(pro.getProperty(LITTLEFILE_FILE_NEGATIVE_CACHE_TIME));
+            CONFIGHOLDER.put(LITTLEFILE_FILE_NEGATIVE_CACHE_TIME, negativeCacheTime != null ? negativeCacheTime : 0L);
+            property = pro.getProperty(LITTLEFILE_FILE_NEGATIVE_CACHE_SIZE);
+            CONFIGHOLDER.put(LITTLEFILE_FILE_NEGATIVE_CACHE_SIZE, Utils.isNotEmpty(property) ? Integer.parseInt(property) : LITTLEFILE_FILE_NEGATIVE_CACHE_SIZE_DEFAULT);
+            property = pro.getProperty(LITTLEFILE_FILE_PREFETCH_THREAD_NUM);
+            CONFIGHOLDER.put(LITTLEFILE_FILE_PREFETCH_THREAD_NUM, Utils.isNotEmpty(property) ? Integer.parseInt(property) : Prefetcher.THREAD_NUM_DEFAULT);
+            CONFIGHOLDER.put(LITTLEFILE_FILE_PREFETCH_ON_SIGN, Boolean.parseBoolean(pro.getProperty(LITTLEFILE_FILE_PREFETCH_ON_SIGN)));
+            property = pro.getProperty(LITTLEFILE_FILE_WARMUP_COUNT);
+            CONFIGHOLDER.put(LITTLEFILE_FILE_WARMUP_COUNT, Utils.isNotEmpty(property) ? Integer.parseInt(property) : 0);
+            CONFIGHOLDER.put(LITTLEFILE_FILE_WARMUP_FILE, pro.getProperty(LITTLEFILE_FILE_WARMUP_FILE));
             String gzip = pro.getProperty(LITTLEFILE_FILE_GZIP);
             if (Utils.isEmpty(gzip) || !Boolean.parseBoolean(gzip)) {
                 CONFIGHOLDER.put(LITTLEFILE_FILE_GZIP, false);
@@ -136,6 +246,8 @@ public class LittleFileConfig {
                     //默认30分钟
                     CONFIGHOLDER.put(LITTLEFILE_TOKEN_EXPIRE_MIN, 30L);
                 }
+                String tokenCacheSize = pro.getProperty(LITTLEFILE_TOKEN_CACHE_SIZE);
+                CONFIGHOLDER.put(LITTLEFILE_TOKEN_CACHE_SIZE, Utils.isNotEmpty(tokenCacheSize) ? Integer.parseInt(tokenCacheSize) : HmacTokenManager.CACHE_SIZE_DEFAULT);
 
             }
             String fileUrlFormat = pro.getProperty(LITTLEFILE_FILEHANDLE_URL_FORMAT);
@@ -143,55 +255,132 @@ public class LittleFileConfig {
                 throw new RuntimeException("config [" + LITTLEFILE_FILEHANDLE_URL_FORMAT + "] can not be null");
             }
             CONFIGHOLDER.put(LITTLEFILE_FILEHANDLE_URL_FORMAT, fileUrlFormat);
-            switch (serverEum) {
-                case FDFS: {
-                    CONFIGHOLDER.put(FdfsConfig.LITTLEFILE_FDFS_FDFS_CONF, pro.get(FdfsConfig.LITTLEFILE_FDFS_FDFS_CONF));
-                }
-                break;
-                case FTP: {
-                    CONFIGHOLDER.put(FtpConfig.LITTLEFILE_FTP_HOST, pro.getProperty(FtpConfig.LITTLEFILE_FTP_HOST));
-                    CONFIGHOLDER.put(FtpConfig.LITTLEFILE_FTP_PORT, Integer.parseInt(pro.getProperty(FtpConfig.LITTLEFILE_FTP_PORT)));
-                    CONFIGHOLDER.put(FtpConfig.LITTLEFILE_FTP_USERNAME, pro.getProperty(FtpConfig.LITTLEFILE_FTP_USERNAME));
-                    CONFIGHOLDER.put(FtpConfig.LITTLEFILE_FTP_PASSWORD, pro.getProperty(FtpConfig.LITTLEFILE_FTP_PASSWORD));
-                    CONFIGHOLDER.put(FtpConfig.LITTLEFILE_FTP_WORKDIR, pro.getProperty(FtpConfig.LITTLEFILE_FTP_WORKDIR));
-                    CONFIGHOLDER.put(FtpConfig.LITTLEFILE_FTP_KEY_MANAGER_PATH, pro.getProperty(FtpConfig.LITTLEFILE_FTP_KEY_MANAGER_PATH));
-                    CONFIGHOLDER.put(FtpConfig.LITTLEFILE_FTP_KEY_MANAGER_PASSWORD, pro.getProperty(FtpConfig.LITTLEFILE_FTP_KEY_MANAGER_PASSWORD));
-                    CONFIGHOLDER.put(FtpConfig.LITTLEFILE_FTP_TRUST_MANAGER_PATH, pro.getProperty(FtpConfig.LITTLEFILE_FTP_TRUST_MANAGER_PATH));
-                    CONFIGHOLDER.put(FtpConfig.LITTLEFILE_FTP_TRUST_MANAGER_PASSWORD, pro.getProperty(FtpConfig.LITTLEFILE_FTP_TRUST_MANAGER_PASSWORD));
+            loadBackend(serverEum, pro, CONFIGHOLDER);
+            if (Utils.isNotEmpty(routes)) {
+                String[] names = routes.split(",");
+                for (String name : names) {
+                    CONFIGHOLDER.put(LITTLEFILE_ROUTE + name, loadRoute(name, pro));
                 }
-                break;
-                case SFTP: {
-                    CONFIGHOLDER.put(SftpConfig.LITTLEFILE_SFTP_HOST, pro.getProperty(SftpConfig.LITTLEFILE_SFTP_HOST));
-                    CONFIGHOLDER.put(SftpConfig.LITTLEFILE_SFTP_PORT, Integer.parseInt(pro.getProperty(SftpConfig.LITTLEFILE_SFTP_PORT)));
-                    CONFIGHOLDER.put(SftpConfig.LITTLEFILE_SFTP_USERNAME, pro.getProperty(SftpConfig.LITTLEFILE_SFTP_USERNAME));
-                    CONFIGHOLDER.put(SftpConfig.LITTLEFILE_SFTP_PASSWORD, pro.getProperty(SftpConfig.LITTLEFILE_SFTP_PASSWORD));
-                    CONFIGHOLDER.put(SftpConfig.LITTLEFILE_SFTP_WORKDIR, pro.getProperty(SftpConfig.LITTLEFILE_SFTP_WORKDIR));
-                    CONFIGHOLDER.put(SftpConfig.LITTLEFILE_SFTP_PRIVATE_KEY, pro.getProperty(SftpConfig.LITTLEFILE_SFTP_PRIVATE_KEY));
-                    CONFIGHOLDER.put(SftpConfig.LITTLEFILE_SFTP_PRIVATE_KEY_PASSWORD, pro.getProperty(SftpConfig.LITTLEFILE_SFTP_PRIVATE_KEY_PASSWORD));
-                }
-                break;
-
-                case OSS: {
-                    CONFIGHOLDER.put(OssConfig.BUCKET_NAME, pro.getProperty(OssConfig.BUCKET_NAME));
-                    CONFIGHOLDER.put(OssConfig.ACCESSKEY_ID, pro.getProperty(OssConfig.ACCESSKEY_ID));
-                    CONFIGHOLDER.put(OssConfig.ACCESSKEY_SECRET, pro.getProperty(OssConfig.ACCESSKEY_SECRET));
-                    CONFIGHOLDER.put(OssConfig.ENDPOINT, pro.getProperty(OssConfig.ENDPOINT));
-                }
-                break;
-                case LOCAL: {
-                    String localDirs = pro.getProperty(LocalConfig.LITTLEFILE_LOCAL_DIRS);
-                    if (Utils.isEmpty(localDirs)) {
-                        throw new RuntimeException("local mode " + LocalConfig.LITTLEFILE_LOCAL_DIRS + " can't empty");
-                    }
-                    CONFIGHOLDER.put(LocalConfig.LITTLEFILE_LOCAL_DIRS, localDirs.split(","));
-                }
-                break;
+                CONFIGHOLDER.put(LITTLEFILE_ROUTES, names);
             }
         } catch (Exception e) {
             LOG.error("初始化littlefile {}配置失败", littleConfig, e);
         }
     }
 
+    /**
+     * 读取后端配置: 连接配置,下载线程池及并行分段,对冲,隔离舱等下载策略配置
+     */
+    private static void loadBackend(FileServerEum serverEum, Properties pro, Map<String, Object> config) {
+        String property = pro.getProperty(LITTLEFILE_FILE_IO_THREAD_NUM);
+        config.put(LITTLEFILE_FILE_IO_THREAD_NUM, Utils.isNotEmpty(property) ? Integer.parseInt(property) : 0);
+        property = pro.getProperty(LITTLEFILE_FILE_IO_QUEUE_SIZE);
+        config.put(LITTLEFILE_FILE_IO_QUEUE_SIZE, Utils.isNotEmpty(property) ? Integer.parseInt(property) : LITTLEFILE_FILE_IO_QUEUE_SIZE_DEFAULT);
+        property = pro.getProperty(LITTLEFILE_FILE_PARALLEL_FILL_MIN_MB);
+        config.put(LITTLEFILE_FILE_PARALLEL_FILL_MIN_MB, Utils.isNotEmpty(property) ? Long.parseLong(property) : 0L);
+        property = pro.getProperty(LITTLEFILE_FILE_PARALLEL_FILL_PART_KB);
+        config.put(LITTLEFILE_FILE_PARALLEL_FILL_PART_KB, Utils.isNotEmpty(property) ? Integer.parseInt(property) : ParallelFillStrategy.PART_KB_DEFAULT);
+        property = pro.getProperty(LITTLEFILE_FILE_PARALLEL_FILL_CONCURRENCY);
+        config.put(LITTLEFILE_FILE_PARALLEL_FILL_CONCURRENCY, Utils.isNotEmpty(property) ? Integer.parseInt(property) : ParallelFillStrategy.CONCURRENCY_DEFAULT);
+        Long hedgeDelay = Utils.calcTimes(pro.getProperty(LITTLEFILE_FILE_HEDGE_DELAY));
+        config.put(LITTLEFILE_FILE_HEDGE_DELAY, hedgeDelay != null ? hedgeDelay : 0L);
+        property = pro.getProperty(LITTLEFILE_FILE_HEDGE_BUDGET_PERCENT);
+        config.put(LITTLEFILE_FILE_HEDGE_BUDGET_PERCENT, Utils.isNotEmpty(property) ? Integer.parseInt(property) : HedgedStrategy.BUDGET_PERCENT_DEFAULT);
+        property = pro.getProperty(LITTLEFILE_FILE_BULKHEAD_MAX_LIMIT);
+        config.put(LITTLEFILE_FILE_BULKHEAD_MAX_LIMIT, Utils.isNotEmpty(property) ? Integer.parseInt(property) : 0);
+        Long bulkheadWait = Utils.calcTimes(pro.getProperty(LITTLEFILE_FILE_BULKHEAD_WAIT));
+        config.put(LITTLEFILE_FILE_BULKHEAD_WAIT, bulkheadWait != null ? bulkheadWait : BulkheadStrategy.WAIT_DEFAULT);
+        if (serverEum == null) {
+            return;
+        }
+        switch (serverEum) {
+            case FDFS: {
+                config.put(FdfsConfig.LITTLEFILE_FDFS_FDFS_CONF, pro.get(FdfsConfig.LITTLEFILE_FDFS_FDFS_CONF));
+            }
+            break;
+            case FTP: {
+                config.put(FtpConfig.LITTLEFILE_FTP_HOST, pro.getProperty(FtpConfig.LITTLEFILE_FTP_HOST));
+                config.put(FtpConfig.LITTLEFILE_FTP_PORT, Integer.parseInt(pro.getProperty(FtpConfig.LITTLEFILE_FTP_PORT)));
+                config.put(FtpConfig.LITTLEFILE_FTP_USERNAME, pro.getProperty(FtpConfig.LITTLEFILE_FTP_USERNAME));
+                config.put(FtpConfig.LITTLEFILE_FTP_PASSWORD, pro.getProperty(FtpConfig.LITTLEFILE_FTP_PASSWORD));
+                config.put(FtpConfig.LITTLEFILE_FTP_WORKDIR, pro.getProperty(FtpConfig.LITTLEFILE_FTP_WORKDIR));
+                config.put(FtpConfig.LITTLEFILE_FTP_KEY_MANAGER_PATH, pro.getProperty(FtpConfig.LITTLEFILE_FTP_KEY_MANAGER_PATH));
+                config.put(FtpConfig.LITTLEFILE_FTP_KEY_MANAGER_PASSWORD, pro.getProperty(FtpConfig.LITTLEFILE_FTP_KEY_MANAGER_PASSWORD));
+                config.put(FtpConfig.LITTLEFILE_FTP_TRUST_MANAGER_PATH, pro.getProperty(FtpConfig.LITTLEFILE_FTP_TRUST_MANAGER_PATH));
+                config.put(FtpConfig.LITTLEFILE_FTP_TRUST_MANAGER_PASSWORD, pro.getProperty(FtpConfig.LITTLEFILE_FTP_TRUST_MANAGER_PASSWORD));
+                property = pro.getProperty(FtpConfig.LITTLEFILE_FTP_POOL_MAX_TOTAL);
+                config.put(FtpConfig.LITTLEFILE_FTP_POOL_MAX_TOTAL, Utils.isNotEmpty(property) ? Integer.parseInt(property) : FtpClientPool.MAX_TOTAL_DEFAULT);
+                Long maxIdleTime = Utils.calcTimes(pro.getProperty(FtpConfig.LITTLEFILE_FTP_POOL_MAX_IDLE_TIME));
+                config.put(FtpConfig.LITTLEFILE_FTP_POOL_MAX_IDLE_TIME, maxIdleTime != null ? maxIdleTime : FtpClientPool.MAX_IDLE_TIME_DEFAULT);
+                Long maxLifetime = Utils.calcTimes(pro.getProperty(FtpConfig.LITTLEFILE_FTP_POOL_MAX_LIFETIME));
+                config.put(FtpConfig.LITTLEFILE_FTP_POOL_MAX_LIFETIME, maxLifetime != null ? maxLifetime : FtpClientPool.MAX_LIFETIME_DEFAULT);
+            }
+            break;
+            case SFTP: {
+                config.put(SftpConfig.LITTLEFILE_SFTP_HOST, pro.getProperty(SftpConfig.LITTLEFILE_SFTP_HOST));
+                config.put(SftpConfig.LITTLEFILE_SFTP_PORT, Integer.parseInt(pro.getProperty(SftpConfig.LITTLEFILE_SFTP_PORT)));
+                config.put(SftpConfig.LITTLEFILE_SFTP_USERNAME, pro.getProperty(SftpConfig.LITTLEFILE_SFTP_USERNAME));
+                config.put(SftpConfig.LITTLEFILE_SFTP_PASSWORD, pro.getProperty(SftpConfig.LITTLEFILE_SFTP_PASSWORD));
+                config.put(SftpConfig.LITTLEFILE_SFTP_WORKDIR, pro.getProperty(SftpConfig.LITTLEFILE_SFTP_WORKDIR));
+                config.put(SftpConfig.LITTLEFILE_SFTP_PRIVATE_KEY, pro.getProperty(SftpConfig.LITTLEFILE_SFTP_PRIVATE_KEY));
+                config.put(SftpConfig.LITTLEFILE_SFTP_PRIVATE_KEY_PASSWORD, pro.getProperty(SftpConfig.LITTLEFILE_SFTP_PRIVATE_KEY_PASSWORD));
+                property = pro.getProperty(SftpConfig.LITTLEFILE_SFTP_POOL_MAX_SESSIONS);
+                config.put(SftpConfig.LITTLEFILE_SFTP_POOL_MAX_SESSIONS, Utils.isNotEmpty(property) ? Integer.parseInt(property) : SftpChannelPool.MAX_SESSIONS_DEFAULT);
+                property = pro.getProperty(SftpConfig.LITTLEFILE_SFTP_POOL_CHANNELS_PER_SESSION);
+                config.put(SftpConfig.LITTLEFILE_SFTP_POOL_CHANNELS_PER_SESSION, Utils.isNotEmpty(property) ? Integer.parseInt(property) : SftpChannelPool.CHANNELS_PER_SESSION_DEFAULT);
+                Long maxIdleTime = Utils.calcTimes(pro.getProperty(SftpConfig.LITTLEFILE_SFTP_POOL_MAX_IDLE_TIME));
+                config.put(SftpConfig.LITTLEFILE_SFTP_POOL_MAX_IDLE_TIME, maxIdleTime != null ? maxIdleTime : SftpChannelPool.MAX_IDLE_TIME_DEFAULT);
+                Long maxLifetime = Utils.calcTimes(pro.getProperty(SftpConfig.LITTLEFILE_SFTP_POOL_MAX_LIFETIME));
+                config.put(SftpConfig.LITTLEFILE_SFTP_POOL_MAX_LIFETIME, maxLifetime != null ? maxLifetime : SftpChannelPool.MAX_LIFETIME_DEFAULT);
+            }
+            break;
+
+            case OSS: {
+                config.put(OssConfig.BUCKET_NAME, pro.getProperty(OssConfig.BUCKET_NAME));
+                config.put(OssConfig.ACCESSKEY_ID, pro.getProperty(OssConfig.ACCESSKEY_ID));
+                config.put(OssConfig.ACCESSKEY_SECRET, pro.getProperty(OssConfig.ACCESSKEY_SECRET));
+                config.put(OssConfig.ENDPOINT, pro.getProperty(OssConfig.ENDPOINT));
+            }
+            break;
+            case LOCAL: {
+                String localDirs = pro.getProperty(LocalConfig.LITTLEFILE_LOCAL_DIRS);
+                if (Utils.isEmpty(localDirs)) {
+                    throw new RuntimeException("local mode " + LocalConfig.LITTLEFILE_LOCAL_DIRS + " can't empty");
+                }
+                config.put(LocalConfig.LITTLEFILE_LOCAL_DIRS, localDirs.split(","));
+                config.put(LocalConfig.LITTLEFILE_LOCAL_DIRECT, Boolean.parseBoolean(pro.getProperty(LocalConfig.LITTLEFILE_LOCAL_DIRECT)));
+            }
+            break;
+        }
+    }
+
+    /**
+     * 读取路由后端配置, littlefile.route.<名称>. 开头的配置覆盖同名全局配置
+     */
+    private static Map<String, Object> loadRoute(String name, Properties pro) {
+        String routeKey = LITTLEFILE_ROUTE + name + ".";
+        Properties routePro = new Properties();
+        routePro.putAll(pro);
+        for (String key : pro.stringPropertyNames()) {
+            if (key.startsWith(routeKey)) {
+                routePro.setProperty("littlefile." + key.substring(routeKey.length()), pro.getProperty(key));
+            }
+        }
+        String serverType = pro.getProperty(routeKey + "server_type");
+        String prefix = pro.getProperty(routeKey + ROUTE_PREFIX);
+        String pattern = pro.getProperty(routeKey + ROUTE_PATTERN);
+        if (Utils.isEmpty(serverType) || Utils.isEmpty(prefix) && Utils.isEmpty(pattern)) {
+            throw new RuntimeException("route [" + name + "] server_type and prefix or pattern can't empty");
+        }
+        Map<String, Object> config = new HashMap<>();
+        FileServerEum serverEum = FileServerEum.valueOf(serverType);
+        config.put(LITTLEFILE_SERVER_TYPE, serverEum);
+        config.put(ROUTE_PREFIX, Utils.isNotEmpty(prefix) ? prefix.split(",") : null);
+        config.put(ROUTE_PATTERN, Utils.isNotEmpty(pattern) ? Pattern.compile(pattern) : null);
+        loadBackend(serverEum, routePro, config);
+        return config;
+    }
+
     public <T> T getConfig(String configKey) {
         return (T) CONFIGHOLDER.get(configKey);
     }
@@ -199,79 +388,164 @@ public class LittleFileConfig {
 
     static FileClean fileClean = null;
 
-    public FileClean getFileClean(String cacheDir) {
+    /**
+     * @param cacheDir   缓存目录
+     * @param cacheIndex 缓存索引 @see com.taoyuanx.littlefile.web.FileHandler#getCacheIndex()
+     */
+    public FileClean getFileClean(String cacheDir, CacheIndex cacheIndex) {
         if (null == fileClean) {
             Long cacheTime = getConfig(LITTLEFILE_FILE_CACHE_TIME);
-            if (cacheTime == 0) {
+            Long maxMb = getConfig(LITTLEFILE_FILE_CACHE_MAX_MB);
+            Integer highWatermark = getConfig(LITTLEFILE_FILE_DISK_HIGH_WATERMARK);
+            if (cacheTime == 0 && maxMb == 0 && highWatermark == 0) {
                 return null;
             }
             CheckDelete checkDelete = new BadFileAndPeriodDelte(cacheTime);
             Integer num = getConfig(LITTLEFILE_FILE_CLEAN_THREAD_NUM);
-            fileClean = new FileClean(num, new File(cacheDir), checkDelete, cacheTime);
+            fileClean = new FileClean(num, new File(cacheDir), cacheIndex, checkDelete, cacheTime, maxMb * 1024 * 1024);
+            fileClean.setDiskWatermark(highWatermark, getConfig(LITTLEFILE_FILE_DISK_LOW_WATERMARK), getConfig(LITTLEFILE_FILE_DISK_HARD_WATERMARK));
         }
         return fileClean;
     }
 
     public FileDownStrategy getFileDownStrategy(String cacheDir) {
         FileServerEum serverEum = getConfig(LITTLEFILE_SERVER_TYPE);
+        FileDownStrategy strategy = serverEum != null ? createStrategy(serverEum, CONFIGHOLDER) : null;
+        String[] routes = getConfig(LITTLEFILE_ROUTES);
+        if (routes == null) {
+            return strategy;
+        }
+        //各后端独立的连接池,下载线程池及并发上限,共用缓存目录及淘汰容量,默认后端使用全局下载线程池
+        RoutingStrategy routing = new RoutingStrategy(strategy);
+        for (String name : routes) {
+            Map<String, Object> config = getConfig(LITTLEFILE_ROUTE + name);
+            routing.addRoute(name, (String[]) config.get(ROUTE_PREFIX), (Pattern) config.get(ROUTE_PATTERN),
+                    createStrategy((FileServerEum) config.get(LITTLEFILE_SERVER_TYPE), config), ioExecutor(name, config));
+        }
+        return routing;
+    }
+
+    /**
+     * 开启异步下载时后端各自的下载线程池,线程数及队列大小可按后端配置
+     */
+    private ExecutorService ioExecutor(String name, Map<String, Object> config) {
+        Integer globalThreadNum = getConfig(LITTLEFILE_FILE_IO_THREAD_NUM);
+        Integer ioThreadNum = get(config, LITTLEFILE_FILE_IO_THREAD_NUM);
+        if (globalThreadNum <= 0 || ioThreadNum <= 0) {
+            return null;
+        }
+        return FillTask.newExecutor("littlefile-io-" + name, ioThreadNum, get(config, LITTLEFILE_FILE_IO_QUEUE_SIZE));
+    }
+
+    private static FileDownStrategy createStrategy(FileServerEum serverEum, Map<String, Object> config) {
         FileDownStrategy strategy = null;
         switch (serverEum) {
             case FDFS: {
-                String configPath = getConfig(FdfsConfig.LITTLEFILE_FDFS_FDFS_CONF);
-                strategy = new FdfsStrategy(new FdfsFileService(configPath));
+                String configPath = get(config, FdfsConfig.LITTLEFILE_FDFS_FDFS_CONF);
+                strategy = hedge(parallelFill(new FdfsStrategy(new FdfsFileService(configPath)), config), config);
             }
             break;
             case FTP: {
-                String host = getConfig(FtpConfig.LITTLEFILE_FTP_HOST);
-                Integer port = getConfig(FtpConfig.LITTLEFILE_FTP_PORT);
-                String username = getConfig(FtpConfig.LITTLEFILE_FTP_USERNAME);
-                String password = getConfig(FtpConfig.LITTLEFILE_FTP_PASSWORD);
-                String workDir = getConfig(FtpConfig.LITTLEFILE_FTP_WORKDIR);
-                String keyManagerPath = getConfig(FtpConfig.LITTLEFILE_FTP_KEY_MANAGER_PATH);
-                String keyManagerPassword = getConfig(FtpConfig.LITTLEFILE_FTP_KEY_MANAGER_PASSWORD);
-                String trustManagerPath = getConfig(FtpConfig.LITTLEFILE_FTP_TRUST_MANAGER_PATH);
-                String trustManagerPassword = getConfig(FtpConfig.LITTLEFILE_FTP_TRUST_MANAGER_PASSWORD);
+                String host = get(config, FtpConfig.LITTLEFILE_FTP_HOST);
+                Integer port = get(config, FtpConfig.LITTLEFILE_FTP_PORT);
+                String username = get(config, FtpConfig.LITTLEFILE_FTP_USERNAME);
+                String password = get(config, FtpConfig.LITTLEFILE_FTP_PASSWORD);
+                String workDir = get(config, FtpConfig.LITTLEFILE_FTP_WORKDIR);
+                String keyManagerPath = get(config, FtpConfig.LITTLEFILE_FTP_KEY_MANAGER_PATH);
+                String keyManagerPassword = get(config, FtpConfig.LITTLEFILE_FTP_KEY_MANAGER_PASSWORD);
+                String trustManagerPath = get(config, FtpConfig.LITTLEFILE_FTP_TRUST_MANAGER_PATH);
+                String trustManagerPassword = get(config, FtpConfig.LITTLEFILE_FTP_TRUST_MANAGER_PASSWORD);
                 LittleFileFtp littleFileFtp = new LittleFileFtp(host, port, username, password, workDir, keyManagerPath, keyManagerPassword, trustManagerPath, trustManagerPassword);
+                littleFileFtp.setPool(get(config, FtpConfig.LITTLEFILE_FTP_POOL_MAX_TOTAL), get(config, FtpConfig.LITTLEFILE_FTP_POOL_MAX_IDLE_TIME),
+                        get(config, FtpConfig.LITTLEFILE_FTP_POOL_MAX_LIFETIME));
                 strategy = new FtpStrategy(littleFileFtp);
             }
             break;
             case SFTP: {
-                String host = getConfig(SftpConfig.LITTLEFILE_SFTP_HOST);
-                Integer port = getConfig(SftpConfig.LITTLEFILE_SFTP_PORT);
-                String username = getConfig(SftpConfig.LITTLEFILE_SFTP_USERNAME);
-                String password = getConfig(SftpConfig.LITTLEFILE_SFTP_PASSWORD);
-                String workDir = getConfig(SftpConfig.LITTLEFILE_SFTP_WORKDIR);
-                String privateKey = getConfig(SftpConfig.LITTLEFILE_SFTP_PRIVATE_KEY);
-                String privateKeyPassword = getConfig(SftpConfig.LITTLEFILE_SFTP_PASSWORD);
+                String host = get(config, SftpConfig.LITTLEFILE_SFTP_HOST);
+                Integer port = get(config, SftpConfig.LITTLEFILE_SFTP_PORT);
+                String username = get(config, SftpConfig.LITTLEFILE_SFTP_USERNAME);
+                String password = get(config, SftpConfig.LITTLEFILE_SFTP_PASSWORD);
+                String workDir = get(config, SftpConfig.LITTLEFILE_SFTP_WORKDIR);
+                String privateKey = get(config, SftpConfig.LITTLEFILE_SFTP_PRIVATE_KEY);
+                String privateKeyPassword = get(config, SftpConfig.LITTLEFILE_SFTP_PRIVATE_KEY_PASSWORD);
                 LittleFileSftp littleFileSftp = new LittleFileSftp(host, port, username, password, workDir, privateKey, privateKeyPassword);
+                littleFileSftp.setPool(get(config, SftpConfig.LITTLEFILE_SFTP_POOL_MAX_SESSIONS), get(config, SftpConfig.LITTLEFILE_SFTP_POOL_CHANNELS_PER_SESSION),
+                        get(config, SftpConfig.LITTLEFILE_SFTP_POOL_MAX_IDLE_TIME), get(config, SftpConfig.LITTLEFILE_SFTP_POOL_MAX_LIFETIME));
                 strategy = new SftpStrategy(littleFileSftp);
             }
             break;
 
             case OSS: {
                 String msg = "oss配置丢失,请检查配置";
-                String accessKeyID = getConfig(FtpConfig.LITTLEFILE_FTP_HOST);
-                String accessKeySecret = getConfig(FtpConfig.LITTLEFILE_FTP_PORT);
-                String bucketName = getConfig(FtpConfig.LITTLEFILE_FTP_USERNAME);
-                String endpoint = getConfig(FtpConfig.LITTLEFILE_FTP_PASSWORD);
+                String accessKeyID = get(config, OssConfig.ACCESSKEY_ID);
+                String accessKeySecret = get(config, OssConfig.ACCESSKEY_SECRET);
+                String bucketName = get(config, OssConfig.BUCKET_NAME);
+                String endpoint = get(config, OssConfig.ENDPOINT);
                 Utils.notNull(accessKeyID, msg);
                 Utils.notNull(accessKeySecret, msg);
                 Utils.notNull(bucketName, msg);
                 Utils.notNull(endpoint, msg);
                 AliyunOssFileService aliyunOssFileService = new AliyunOssFileService(endpoint, accessKeyID, accessKeySecret, bucketName);
-                strategy = new AliyunOssStrategy(aliyunOssFileService);
+                strategy = hedge(parallelFill(new AliyunOssStrategy(aliyunOssFileService), config), config);
             }
             break;
             case LOCAL: {
-                String localDirs[] = getConfig(LocalConfig.LITTLEFILE_LOCAL_DIRS);
-                strategy = new LocalStrategy(localDirs);
+                String localDirs[] = get(config, LocalConfig.LITTLEFILE_LOCAL_DIRS);
+                LocalStrategy localStrategy = new LocalStrategy(localDirs);
+                localStrategy.setDirect(get(config, LocalConfig.LITTLEFILE_LOCAL_DIRECT));
+                strategy = localStrategy;
             }
             break;
 
         }
+        if (serverEum != FileServerEum.LOCAL) {
+            strategy = bulkhead(strategy, config);
+        }
         return strategy;
     }
 
+    /**
+     * 开启后端隔离舱时包装下载策略,本地模式不访问远程后端,不需要
+     */
+    private static FileDownStrategy bulkhead(FileDownStrategy strategy, Map<String, Object> config) {
+        Integer maxLimit = get(config, LITTLEFILE_FILE_BULKHEAD_MAX_LIMIT);
+        if (maxLimit <= 0) {
+            return strategy;
+        }
+        return new BulkheadStrategy(strategy, maxLimit, get(config, LITTLEFILE_FILE_BULKHEAD_WAIT));
+    }
+
+    /**
+     * 开启并行分段下载时包装下载策略
+     */
+    private static FileDownStrategy parallelFill(FileDownStrategy strategy, Map<String, Object> config) {
+        Long minMb = get(config, LITTLEFILE_FILE_PARALLEL_FILL_MIN_MB);
+        if (minMb <= 0) {
+            return strategy;
+        }
+        Integer partKb = get(config, LITTLEFILE_FILE_PARALLEL_FILL_PART_KB);
+        Integer concurrency = get(config, LITTLEFILE_FILE_PARALLEL_FILL_CONCURRENCY);
+        return new ParallelFillStrategy(strategy, minMb * 1024 * 1024, partKb * 1024, concurrency);
+    }
+
+    /**
+     * 开启对冲下载时包装下载策略,fdfs同组多个storage,oss多个节点,对冲请求由后端分配到其他副本
+     */
+    private static FileDownStrategy hedge(FileDownStrategy strategy, Map<String, Object> config) {
+        Long delay = get(config, LITTLEFILE_FILE_HEDGE_DELAY);
+        if (delay <= 0) {
+            return strategy;
+        }
+        Integer budgetPercent = get(config, LITTLEFILE_FILE_HEDGE_BUDGET_PERCENT);
+        Integer fillThreadNum = (Integer) CONFIGHOLDER.get(LITTLEFILE_FILE_FILL_THREAD_NUM);
+        return new HedgedStrategy(strategy, strategy, delay, budgetPercent, fillThreadNum);
+    }
+
+    private static <T> T get(Map<String, Object> config, String configKey) {
+        return (T) config.get(configKey);
+    }
+
     AbstractSimpleTokenManager tokenManager = null;
 
     public AbstractSimpleTokenManager getTokenManager() {
@@ -283,7 +557,8 @@ public class LittleFileConfig {
             return null;
         }
         String password = getConfig(LITTLEFILE_TOKEN_PASSWORD);
-        tokenManager = new HmacTokenManager(mac, password);
+        Integer cacheSize = getConfig(LITTLEFILE_TOKEN_CACHE_SIZE);
+        tokenManager = new HmacTokenManager(mac, password, cacheSize);
         return tokenManager;
     }
 
@@ -1,11 +1,13 @@
 package com.taoyuanx.littlefile.fdfs;
 
+import com.taoyuanx.littlefile.support.BackendFileNotFoundException;
 import org.csource.common.NameValuePair;
 import org.csource.fastdfs.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
@@ -24,6 +26,10 @@ import java.util.Properties;
  */
 public class FdfsFileService {
     private static final Logger LOG = LoggerFactory.getLogger(FdfsFileService.class);
+    /**
+     * storage 返回的文件不存在错误码(ENOENT)
+     */
+    public static final int ERR_NO_ENTRY = 2;
 
     public FdfsFileService() {
         try {
@@ -231,7 +237,13 @@ public class FdfsFileService {
     }
 
     public void download(String fileId, OutputStream out) throws Exception {
-        getClient().download_file1(fileId, new DownloadStream(out));
+        int code = getClient().download_file1(fileId, new DownloadStream(out));
+        if (code == ERR_NO_ENTRY) {
+            throw new BackendFileNotFoundException("file " + fileId + " not found");
+        }
+        if (code != 0) {
+            throw new IOException("download file " + fileId + " error, code " + code);
+        }
     }
 
 
@@ -247,6 +259,22 @@ public class FdfsFileService {
         return getClient().download_file1(fileId);
     }
 
+    /**
+     * 范围下载
+     *
+     * @param fileId 文件id
+     * @param offset 起始位置
+     * @param length 下载字节数
+     */
+    public byte[] download(String fileId, long offset, long length) throws Exception {
+        StorageClient1 client = getClient();
+        byte[] data = client.download_file1(fileId, offset, length);
+        if (data == null && client.getErrorCode() == ERR_NO_ENTRY) {
+            throw new BackendFileNotFoundException("file " + fileId + " not found");
+        }
+        return data;
+    }
+
     /**
      * 获取文件大小
      *
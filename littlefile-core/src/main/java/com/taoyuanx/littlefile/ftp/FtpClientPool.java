@@ -0,0 +1,192 @@
+package com.taoyuanx.littlefile.ftp;
+
+import java.util.Iterator;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @author dushitaoyuan
+ * @desc ftp 连接池, 复用已登录的连接, 避免每次操作重新连接,登录,设置传输类型及工作目录
+ * 借出时空闲超过校验间隔的连接发送NOOP校验, 空闲超时及超过最长存活时间的连接关闭
+ * littlefile-combine-core 中有相同的副本(store.ftp.FtpClientPool), 修改时需同步
+ * @date 2026/10/18
+ */
+public class FtpClientPool {
+	private static final Logger LOG = LoggerFactory.getLogger(FtpClientPool.class);
+	public static final int MAX_TOTAL_DEFAULT = 8;
+	public static final long MAX_IDLE_TIME_DEFAULT = TimeUnit.MINUTES.toMillis(1);
+	public static final long MAX_LIFETIME_DEFAULT = TimeUnit.MINUTES.toMillis(30);
+	/**
+	 * 空闲超过该时间的连接借出前校验
+	 */
+	private static final long VALIDATE_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+	private static final long BORROW_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+	/**
+	 * factory 连接创建
+	 * idle 空闲连接,后进先出
+	 * permits maxTotal 连接总数限制
+	 * maxIdleTime 空闲超时时间
+	 * maxLifetime 最长存活时间
+	 */
+	private final FtpClientFactory factory;
+	private final LinkedBlockingDeque<PooledClient> idle = new LinkedBlockingDeque<>();
+	private final Semaphore permits;
+	private final int maxTotal;
+	private final long maxIdleTime;
+	private final long maxLifetime;
+	private volatile boolean closed = false;
+
+	public FtpClientPool(FtpClientFactory factory, int maxTotal, long maxIdleTime, long maxLifetime) {
+		this.factory = factory;
+		this.permits = new Semaphore(maxTotal);
+		this.maxTotal = maxTotal;
+		this.maxIdleTime = maxIdleTime;
+		this.maxLifetime = maxLifetime;
+	}
+
+	/**
+	 * 借出连接,用完后需调用 {@link #release(PooledClient, boolean)}
+	 */
+	public PooledClient borrow() throws Exception {
+		if (closed) {
+			throw new IllegalStateException("ftp pool closed");
+		}
+		if (!permits.tryAcquire(BORROW_TIMEOUT, TimeUnit.MILLISECONDS)) {
+			throw new TimeoutException("borrow ftp client timeout");
+		}
+		try {
+			PooledClient pooled;
+			while ((pooled = idle.pollFirst()) != null) {
+				if (isValid(pooled)) {
+					return pooled;
+				}
+				destroy(pooled);
+			}
+			return new PooledClient(factory.create());
+		} catch (Exception e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * 归还连接
+	 *
+	 * @param broken 操作出现异常,连接状态未知时关闭
+	 */
+	public void release(PooledClient pooled, boolean broken) {
+		try {
+			long now = System.currentTimeMillis();
+			if (broken || closed || now - pooled.createdAt > maxLifetime) {
+				destroy(pooled);
+			} else {
+				pooled.lastUsed = now;
+				idle.offerFirst(pooled);
+			}
+			evictIdle(now);
+		} finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * 关闭空闲超时的连接,最久未用的在队尾
+	 */
+	private void evictIdle(long now) {
+		Iterator<PooledClient> iterator = idle.descendingIterator();
+		while (iterator.hasNext()) {
+			PooledClient pooled = iterator.next();
+			if (now - pooled.lastUsed <= maxIdleTime) {
+				break;
+			}
+			if (idle.removeLastOccurrence(pooled)) {
+				destroy(pooled);
+			}
+		}
+	}
+
+	private boolean isValid(PooledClient pooled) {
+		long now = System.currentTimeMillis();
+		if (now - pooled.createdAt > maxLifetime || now - pooled.lastUsed > maxIdleTime) {
+			return false;
+		}
+		if (now - pooled.lastUsed <= VALIDATE_INTERVAL) {
+			return pooled.client.isConnected();
+		}
+		try {
+			return pooled.client.sendNoOp();
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	private void destroy(PooledClient pooled) {
+		FTPClient client = pooled.client;
+		try {
+			if (client.isConnected()) {
+				client.logout();
+			}
+		} catch (Exception e) {
+		}
+		try {
+			client.disconnect();
+		} catch (Exception e) {
+			LOG.debug("disconnect ftp client error {}", e.getMessage());
+		}
+	}
+
+	public int getIdleCount() {
+		return idle.size();
+	}
+
+	/**
+	 * 借出中的连接数
+	 */
+	public int getActiveCount() {
+		return maxTotal - permits.availablePermits();
+	}
+
+	/**
+	 * 关闭连接池,借出的连接归还时关闭
+	 */
+	public void close() {
+		closed = true;
+		PooledClient pooled;
+		while ((pooled = idle.pollFirst()) != null) {
+			destroy(pooled);
+		}
+	}
+
+	/**
+	 * 池中的连接
+	 */
+	public static class PooledClient {
+		private final FTPClient client;
+		private final long createdAt;
+		private volatile long lastUsed;
+
+		PooledClient(FTPClient client) {
+			this.client = client;
+			this.createdAt = System.currentTimeMillis();
+			this.lastUsed = createdAt;
+		}
+
+		public FTPClient getClient() {
+			return client;
+		}
+	}
+
+	/**
+	 * 创建已登录的连接
+	 */
+	public interface FtpClientFactory {
+		FTPClient create() throws Exception;
+	}
+}
@@ -1,7 +1,9 @@
 package com.taoyuanx.littlefile.ftp;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
@@ -15,6 +17,8 @@ import org.apache.commons.net.ftp.FTPSClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.taoyuanx.littlefile.ftp.FtpClientPool.PooledClient;
+import com.taoyuanx.littlefile.support.BackendFileNotFoundException;
 import com.taoyuanx.littlefile.util.Utils;
 
 public class LittleFileFtp {
@@ -26,7 +30,10 @@ public class LittleFileFtp {
 	private boolean isWorkDirNotEmpty = false, isSSL = false;
 	private int default_timeout=3000;
 	
-	ThreadLocal<FTPClient> clientLocal = new ThreadLocal<FTPClient>();
+	/**
+	 * pool 连接池,各操作借出已登录的连接,完成后归还
+	 */
+	private volatile FtpClientPool pool;
 	public LittleFileFtp(String host , int port,String username,String password,  String workDir, String keyManagerPath, 		String keyManagerPassword,
 			String trustManagerPath, String trustManagerPassword) {
 		super();
@@ -46,52 +53,81 @@ public class LittleFileFtp {
 		}
 	
 		this.port = port;
+		this.pool = new FtpClientPool(this::createFtpClient, FtpClientPool.MAX_TOTAL_DEFAULT,
+				FtpClientPool.MAX_IDLE_TIME_DEFAULT, FtpClientPool.MAX_LIFETIME_DEFAULT);
 	}
 
-	public FTPClient getFtpClient() throws Exception {
+	/**
+	 * 设置连接池
+	 *
+	 * @param maxTotal    最大连接数
+	 * @param maxIdleTime 空闲超时时间(毫秒)
+	 * @param maxLifetime 最长存活时间(毫秒)
+	 */
+	public void setPool(int maxTotal, long maxIdleTime, long maxLifetime) {
+		FtpClientPool old = this.pool;
+		this.pool = new FtpClientPool(this::createFtpClient, maxTotal, maxIdleTime, maxLifetime);
+		old.close();
+	}
+
+	private FTPClient createFtpClient() throws Exception {
 		try {
-			FTPClient local = clientLocal.get();
-			if(local==null) {
-				FTPClient ftpClient = null;
-				if(isSSL) {
-					FTPSClient ftpsClient=new FTPSClient(true);
-					ftpsClient.setKeyManager(keyManager);
-					ftpsClient.setTrustManager(trustManager);
-					//ftpsClient.execPBSZ(0);
-					//ftpsClient.execPROT("P");
-					ftpClient=ftpsClient;
-				}else {
-					ftpClient=new FTPClient();
-				}
-				ftpClient.setDefaultTimeout(default_timeout);
-				ftpClient.connect(host, port);
-				ftpClient.login(username, password);
-				int reply = ftpClient.getReplyCode();
-				if (!FTPReply.isPositiveCompletion(reply)) {
-					LOG.info("{} ftp server 拒绝连接", host);
-				}
-				ftpClient.setFileType(FTP.BINARY_FILE_TYPE);
-				if (isWorkDirNotEmpty) {
-					ftpClient.changeWorkingDirectory(workDir);
-				}
-				ftpClient.setControlEncoding("UTF-8");
-				clientLocal.set(ftpClient);
-				return ftpClient;
+			FTPClient ftpClient = null;
+			if(isSSL) {
+				FTPSClient ftpsClient=new FTPSClient(true);
+				ftpsClient.setKeyManager(keyManager);
+				ftpsClient.setTrustManager(trustManager);
+				//ftpsClient.execPBSZ(0);
+				//ftpsClient.execPROT("P");
+				ftpClient=ftpsClient;
 			}else {
-				return local;
+				ftpClient=new FTPClient();
+			}
+			ftpClient.setDefaultTimeout(default_timeout);
+			ftpClient.connect(host, port);
+			if (!ftpClient.login(username, password)) {
+				int reply = ftpClient.getReplyCode();
+				ftpClient.disconnect();
+				throw new IOException(host + " ftp server 拒绝连接, reply " + reply);
 			}
-			
+			ftpClient.setFileType(FTP.BINARY_FILE_TYPE);
+			if (isWorkDirNotEmpty) {
+				ftpClient.changeWorkingDirectory(workDir);
+			}
+			ftpClient.setControlEncoding("UTF-8");
+			return ftpClient;
 		} catch (Exception e) {
-			LOG.error("{} ftp server connect failed,异常", e);
+			LOG.error("{} ftp server connect failed,异常", host, e);
 			throw e;
 		}
 	}
 
+	/**
+	 * 借出连接执行操作,操作异常时关闭连接
+	 */
+	public <T> T execute(FtpCallback<T> callback) throws Exception {
+		FtpClientPool current = pool;
+		PooledClient pooled = current.borrow();
+		boolean broken = true;
+		try {
+			T result = callback.doInFtp(pooled.getClient());
+			broken = false;
+			return result;
+		} catch (BackendFileNotFoundException e) {
+			//文件不存在,连接正常
+			broken = false;
+			throw e;
+		} finally {
+			current.release(pooled, broken);
+		}
+	}
+
 	public void upload(InputStream input, String dest) throws Exception {
 		try {
-			FTPClient client = getFtpClient();
-			mkdirs(dest);
-			client.storeFile(dest, input);
+			execute(client -> {
+				mkdirs(client, dest);
+				return client.storeFile(dest, input);
+			});
 		} catch (Exception e) {
 			LOG.error("upload  file  failed,异常", e);
 			throw e;
@@ -99,10 +135,11 @@ public class LittleFileFtp {
 	}
 
 	public void upload(String src, String dest) throws Exception {
-		try {
-			FTPClient client = getFtpClient();
-			mkdirs(dest);
-			client.storeFile(dest, new FileInputStream(src));
+		try (InputStream input = new FileInputStream(src)) {
+			execute(client -> {
+				mkdirs(client, dest);
+				return client.storeFile(dest, input);
+			});
 		} catch (Exception e) {
 			LOG.error("upload  file {}  failed,异常", src, e);
 			throw e;
@@ -111,8 +148,17 @@ public class LittleFileFtp {
 
 	public void download(String src, String dest) throws Exception {
 		try {
-			FTPClient client = getFtpClient();
-			client.retrieveFile(src, new FileOutputStream(dest));
+			execute(client -> {
+				boolean found;
+				try (OutputStream out = new FileOutputStream(dest)) {
+					found = client.retrieveFile(src, out);
+				}
+				if (!found) {
+					new File(dest).delete();
+					throw notFound(src, client);
+				}
+				return null;
+			});
 		} catch (Exception e) {
 			LOG.error("download  file {}  failed,异常", dest, e);
 			throw e;
@@ -121,8 +167,12 @@ public class LittleFileFtp {
 
 	public void download(String src, OutputStream out) throws Exception {
 		try {
-			FTPClient client = getFtpClient();
-			client.retrieveFile(src, out);
+			execute(client -> {
+				if (!client.retrieveFile(src, out)) {
+					throw notFound(src, client);
+				}
+				return null;
+			});
 		} catch (Exception e) {
 			LOG.error("download  file {}  failed,异常", src, e);
 			throw e;
@@ -131,32 +181,52 @@ public class LittleFileFtp {
 
 	public void mkdirs(String path) throws Exception {
 		try {
-			FTPClient client = getFtpClient();
-			int index = path.lastIndexOf("/");
-			if (index > 0) {
-				client.makeDirectory(path.substring(0, index));
-			} else if (path.endsWith("/")) {
-				client.makeDirectory(path);
-			}
+			execute(client -> {
+				mkdirs(client, path);
+				return null;
+			});
 		} catch (Exception e) {
 			LOG.error("mkdirs {}  failed,异常", path, e);
 			throw e;
 		}
 	}
 
-	
+	private static void mkdirs(FTPClient client, String path) throws IOException {
+		int index = path.lastIndexOf("/");
+		if (index > 0) {
+			client.makeDirectory(path.substring(0, index));
+		} else if (path.endsWith("/")) {
+			client.makeDirectory(path);
+		}
+	}
 
-	public void close() {
-		FTPClient ftpClient = clientLocal.get();
-		try {
-			
-			if(ftpClient!=null) {
-				ftpClient.disconnect();
-			}
-			clientLocal.remove();
-		} catch (Exception e) {
-			LOG.error("close error", e);
+	/**
+	 * 下载失败,550 文件不存在时返回 BackendFileNotFoundException
+	 */
+	private static Exception notFound(String src, FTPClient client) {
+		int reply = client.getReplyCode();
+		if (reply == FTPReply.FILE_UNAVAILABLE) {
+			return new BackendFileNotFoundException("ftp file " + src + " not found");
 		}
+		return new IOException("download file " + src + " failed, reply " + reply);
+	}
+
+	public FtpClientPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * 关闭连接池
+	 */
+	public void close() {
+		pool.close();
+	}
+
+	/**
+	 * 使用连接的操作
+	 */
+	public interface FtpCallback<T> {
+		T doInFtp(FTPClient client) throws Exception;
 	}
 
 
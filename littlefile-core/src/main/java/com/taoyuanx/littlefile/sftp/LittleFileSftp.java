@@ -8,11 +8,13 @@ import java.util.List;
 import java.util.Properties;
 import java.util.Vector;
 
-import com.jcraft.jsch.Channel;
 import com.jcraft.jsch.ChannelSftp;
 import com.jcraft.jsch.ChannelSftp.LsEntry;
 import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpException;
+import com.taoyuanx.littlefile.sftp.SftpChannelPool.PooledChannel;
 import com.taoyuanx.littlefile.util.Utils;
 
 @SuppressWarnings("all")
@@ -21,8 +23,15 @@ public class LittleFileSftp {
 	private String host, username, password, workDir,privateKey,privateKeyPassword;
 	private int port;
 	private boolean usePassword=true,isWorkDirNotEmpty=false;
-	ThreadLocal<ChannelSftp> clientLocal = new ThreadLocal<ChannelSftp>();
 	private JSch jsch;
+	/**
+	 * 会话保活探测间隔(毫秒)
+	 */
+	private static final int SERVER_ALIVE_INTERVAL = 30000;
+	/**
+	 * pool 连接池,长连接会话上复用sftp通道,各操作借出通道,完成后归还
+	 */
+	private volatile SftpChannelPool pool;
 	/**
 	 * 私钥认证
 	 * @param host
@@ -46,33 +55,85 @@ public class LittleFileSftp {
 			usePassword=false;
 		}
 		jsch = new JSch(); // 创建JSch对象
+		if(!usePassword) {
+			try {
+				jsch.addIdentity(privateKey, privateKeyPassword);
+			} catch (JSchException e) {
+				throw new RuntimeException("load privateKey failed", e);
+			}
+		}
+		this.pool = new SftpChannelPool(this::createSession, workDir, SftpChannelPool.MAX_SESSIONS_DEFAULT,
+				SftpChannelPool.CHANNELS_PER_SESSION_DEFAULT, SftpChannelPool.MAX_IDLE_TIME_DEFAULT,
+				SftpChannelPool.MAX_LIFETIME_DEFAULT);
+	}
+
+
+	/**
+	 * 设置连接池
+	 *
+	 * @param maxSessions        最大会话数
+	 * @param channelsPerSession 每个会话最多通道数
+	 * @param maxIdleTime        通道空闲超时时间(毫秒)
+	 * @param maxLifetime        会话最长存活时间(毫秒)
+	 */
+	public void setPool(int maxSessions, int channelsPerSession, long maxIdleTime, long maxLifetime) {
+		SftpChannelPool old = this.pool;
+		this.pool = new SftpChannelPool(this::createSession, workDir, maxSessions, channelsPerSession, maxIdleTime,
+				maxLifetime);
+		old.close();
 	}
 
+	/**
+	 * 借出通道执行操作,通道异常时关闭
+	 */
+	public <T> T execute(SftpCallback<T> callback) throws Exception {
+		SftpChannelPool current = pool;
+		PooledChannel pooled = current.borrow();
+		boolean broken = true;
+		try {
+			T result = callback.doInSftp(pooled.getChannel());
+			broken = false;
+			return result;
+		} catch (SftpException e) {
+			//服务端返回的错误(文件不存在,无权限等),通道正常
+			broken = e.id == ChannelSftp.SSH_FX_NO_CONNECTION || e.id == ChannelSftp.SSH_FX_CONNECTION_LOST;
+			throw e;
+		} finally {
+			current.release(pooled, broken);
+		}
+	}
 
 	public void upload(InputStream input, String dest) throws Exception {
-		ChannelSftp channel = getSftpChannel();
-		String file = mkdirs(dest, channel);
-		channel.put(input, file);
+		execute(channel -> {
+			String file = mkdirs(dest, channel);
+			channel.put(input, file);
+			return null;
+		});
 	}
 
 	public void upload(String src, String dest) throws Exception {
-		ChannelSftp channel = getSftpChannel();
-		String file = mkdirs(dest, channel);
-		channel.put(src, file);
+		execute(channel -> {
+			String file = mkdirs(dest, channel);
+			channel.put(src, file);
+			return null;
+		});
 	}
 
 	public void download(String src, String dest) throws Exception {
-		ChannelSftp channel = getSftpChannel();
-		channel.get(src, dest);
+		execute(channel -> {
+			channel.get(src, dest);
+			return null;
+		});
 	}
 
 	public void download(String src, OutputStream out) throws Exception {
-		ChannelSftp channel = getSftpChannel();
-		channel.get(src, out);
+		execute(channel -> {
+			channel.get(src, out);
+			return null;
+		});
 	}
 	public List<String> list(String dir) throws Exception{
-		ChannelSftp channel = getSftpChannel();
-		Vector<LsEntry> ls = channel.ls(dir);
+		Vector<LsEntry> ls = execute(channel -> channel.ls(dir));
 		Iterator<LsEntry> it = ls.iterator();
 		List<String> child=new ArrayList<String>(); 
 		while(it.hasNext()){
@@ -85,7 +146,7 @@ public class LittleFileSftp {
 	}
 	
 	/**
-	 * 递归创建目录
+	 * 递归创建目录,通道归还时恢复工作目录
 	 * 
 	 * @param filePath
 	 * @param channel
@@ -111,53 +172,51 @@ public class LittleFileSftp {
 	}
 
 	/**
-	 * 关闭channel
+	 * 关闭连接池
+	 */
+	public void close() {
+		pool.close();
+	}
+
+	/**
+	 * 关闭连接池
 	 * 
-	 * @param channel
-	 * @throws Exception
+	 * @deprecated 通道已池化, 使用 {@link #close()}
 	 */
+	@Deprecated
 	public void closeChannel() throws Exception {
-		ChannelSftp channel = clientLocal.get();
-		
-		if (channel != null) {
-			channel.disconnect();
-			if (channel.getSession() != null) {
-				channel.getSession().disconnect();
-			}
-		}
+		close();
+	}
+
+	public SftpChannelPool getPool() {
+		return pool;
 	}
 	
 	/**
-	 * 打开stfp 通道
+	 * 创建ssh会话, 开启保活探测, 断开的会话由连接池重连
 	 * 
-	 * @return sftp通道
+	 * @return ssh会话
 	 * @throws Exception
 	 */
-	private ChannelSftp getSftpChannel() throws Exception {
-		ChannelSftp local = clientLocal.get();
-		if(local==null) {
-			Session session = jsch.getSession(username, host, port);
-			if(usePassword) {
-				session.setPassword(password);
-			}else {
-				jsch.addIdentity(privateKey, privateKeyPassword);
-			}
-			Properties config = new Properties();
-			config.put("StrictHostKeyChecking", "no");
-			session.setTimeout(3000);
-			session.setConfig(config);
-			session.connect();
-			ChannelSftp channel = (ChannelSftp)session.openChannel("sftp");
-			channel.connect();
-			if(isWorkDirNotEmpty) {
-				channel.cd(workDir);
-			}
-			clientLocal.set(channel);
-			return  channel;
-		}else {
-			return local;
+	private Session createSession() throws Exception {
+		Session session = jsch.getSession(username, host, port);
+		if(usePassword) {
+			session.setPassword(password);
 		}
-		
+		Properties config = new Properties();
+		config.put("StrictHostKeyChecking", "no");
+		session.setTimeout(3000);
+		session.setConfig(config);
+		session.setServerAliveInterval(SERVER_ALIVE_INTERVAL);
+		session.connect();
+		return session;
+	}
+
+	/**
+	 * 使用通道的操作
+	 */
+	public interface SftpCallback<T> {
+		T doInSftp(ChannelSftp channel) throws Exception;
 	}
 
 
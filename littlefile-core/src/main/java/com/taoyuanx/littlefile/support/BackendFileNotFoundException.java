@@ -0,0 +1,17 @@
+package com.taoyuanx.littlefile.support;
+
+import java.io.FileNotFoundException;
+
+/**
+ * @author dushitaoyuan
+ * @desc 后端确认文件不存在, 仅此异常响应404并记入不存在缓存
+ * 本地缓存目录读写失败等其他 FileNotFoundException 按下载异常处理
+ * @date 2026/10/18
+ */
+public class BackendFileNotFoundException extends FileNotFoundException {
+	private static final long serialVersionUID = 8268711851700957231L;
+
+	public BackendFileNotFoundException(String message) {
+		super(message);
+	}
+}
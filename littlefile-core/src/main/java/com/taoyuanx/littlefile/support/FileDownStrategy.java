@@ -1,6 +1,93 @@
 package com.taoyuanx.littlefile.support;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import com.taoyuanx.littlefile.cache.CacheEntry;
+
 public  interface FileDownStrategy {
 	 void down(String src,String dest) throws Exception;
+
+	/**
+	 * 下载文件,并返回后端提供的文件大小及crc32,用于校验下载是否完整
+	 * 
+	 * @return 后端无法提供时返回null,未知的crc32为-1
+	 */
+	default CacheEntry downWithMeta(String src, String dest) throws Exception {
+		down(src, dest);
+		return null;
+	}
+
+	/**
+	 * 异步下载文件,在后端下载线程池中执行,不占用请求线程
+	 * 取消时中断下载线程,阻塞传输不响应中断的后端应覆盖,经 {@link FillTask#abortable} 写入
+	 * 
+	 * @param executor 后端下载线程池,队列满时返回以 RejectedExecutionException 失败的结果
+	 * @return 文件大小及crc32,同 {@link #downWithMeta}
+	 */
+	default CompletableFuture<CacheEntry> downAsync(String src, String dest, ExecutorService executor) {
+		return FillTask.submit(executor, task -> downWithMeta(src, dest));
+	}
+
+	/**
+	 * 获取文件大小及crc32,不下载文件
+	 * 
+	 * @return 后端无法提供时返回null
+	 */
+	default CacheEntry meta(String src) throws Exception {
+		return null;
+	}
+
+	/**
+	 * 下载文件直接输出,不写入缓存目录,用于不准入缓存的文件
+	 * 默认经临时文件中转,后端支持流式下载时应覆盖
+	 */
+	default void downStream(String src, OutputStream out) throws Exception {
+		File temp = File.createTempFile("littlefile", ".down");
+		try {
+			down(src, temp.getAbsolutePath());
+			Files.copy(temp.toPath(), out);
+		} finally {
+			temp.delete();
+		}
+	}
+
+	/**
+	 * 源文件在本机时返回源文件,直接输出,不写入缓存目录
+	 * 
+	 * @return 非本地文件返回null
+	 */
+	default File localFile(String src) throws Exception {
+		return null;
+	}
+
+	/**
+	 * 是否支持范围下载
+	 */
+	default boolean isRangeSupported() {
+		return false;
+	}
+
+	/**
+	 * 指定文件是否支持范围下载,多后端路由时按文件所在后端判断
+	 */
+	default boolean isRangeSupported(String src) {
+		return isRangeSupported();
+	}
+
+	/**
+	 * 范围下载,调用前需先通过 {@link #isRangeSupported(String)} 判断是否支持
+	 * 
+	 * @param offset 起始位置
+	 * @param length 下载字节数
+	 * @throws IOException 不支持范围下载
+	 */
+	default byte[] downRange(String src, long offset, int length) throws Exception {
+		throw new IOException("range download not supported");
+	}
 	
 }
@@ -0,0 +1,151 @@
+package com.taoyuanx.littlefile.support;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.taoyuanx.littlefile.cache.CacheEntry;
+
+/**
+ * @author dushitaoyuan
+ * @desc 异步缓存填充, 在后端下载线程池中执行, 取消时中断下载线程, 经 {@link #abortable(OutputStream)} 写入的传输在下次写入时中止
+ * @date 2026/10/18
+ */
+public class FillTask extends CompletableFuture<CacheEntry> {
+	private volatile Future<?> future;
+
+	/**
+	 * 提交下载,线程池队列已满时返回以 RejectedExecutionException 失败的填充
+	 */
+	public static FillTask submit(ExecutorService executor, FillCall call) {
+		FillTask task = new FillTask();
+		try {
+			task.future = executor.submit(() -> {
+				if (task.isDone()) {
+					return;
+				}
+				try {
+					task.complete(call.call(task));
+				} catch (Throwable e) {
+					task.completeExceptionally(e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			task.completeExceptionally(e);
+		}
+		return task;
+	}
+
+	/**
+	 * 第一步完成后按其结果发起下一步填充,如先获取文件大小再决定下载方式,不占用线程等待
+	 * 取消时同时取消进行中的步骤
+	 */
+	public static <T> FillTask compose(CompletableFuture<T> first, Function<T, CompletableFuture<CacheEntry>> next) {
+		FillTask task = new FillTask();
+		task.future = first;
+		first.whenComplete((result, e) -> {
+			if (e != null) {
+				task.completeExceptionally(unwrap(e));
+				return;
+			}
+			if (task.isDone()) {
+				return;
+			}
+			CompletableFuture<CacheEntry> step;
+			try {
+				step = next.apply(result);
+			} catch (Throwable t) {
+				task.completeExceptionally(t);
+				return;
+			}
+			task.future = step;
+			if (task.isCancelled()) {
+				step.cancel(true);
+			}
+			step.whenComplete((meta, error) -> {
+				if (error != null) {
+					task.completeExceptionally(unwrap(error));
+				} else {
+					task.complete(meta);
+				}
+			});
+		});
+		return task;
+	}
+
+	private static Throwable unwrap(Throwable e) {
+		return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		boolean cancelled = super.cancel(mayInterruptIfRunning);
+		Future<?> current = future;
+		if (cancelled && current != null) {
+			current.cancel(true);
+		}
+		return cancelled;
+	}
+
+	/**
+	 * 包装输出流,填充取消后写入抛出 InterruptedIOException,中止不响应线程中断的阻塞传输
+	 */
+	public OutputStream abortable(OutputStream out) {
+		return new FilterOutputStream(out) {
+			@Override
+			public void write(int b) throws IOException {
+				checkCancelled();
+				out.write(b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				checkCancelled();
+				out.write(b, off, len);
+			}
+		};
+	}
+
+	private void checkCancelled() throws InterruptedIOException {
+		if (isCancelled()) {
+			throw new InterruptedIOException("fill cancelled");
+		}
+	}
+
+	/**
+	 * 后端下载线程池,队列满时拒绝,不阻塞请求线程
+	 *
+	 * @param name      线程名前缀
+	 * @param threads   下载线程数
+	 * @param queueSize 等待队列大小
+	 */
+	public static ExecutorService newExecutor(String name, int threads, int queueSize) {
+		AtomicInteger threadCount = new AtomicInteger();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(queueSize), r -> {
+					Thread thread = new Thread(r, name + "-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.AbortPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * 填充逻辑
+	 */
+	public interface FillCall {
+		CacheEntry call(FillTask task) throws Exception;
+	}
+}
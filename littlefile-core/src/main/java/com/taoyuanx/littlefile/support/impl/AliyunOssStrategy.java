@@ -1,8 +1,19 @@
 package com.taoyuanx.littlefile.support.impl;
 
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import com.aliyun.oss.OSSErrorCode;
+import com.aliyun.oss.OSSException;
+import com.aliyun.oss.model.ObjectMetadata;
 import com.taoyuanx.littlefile.alioss.AliyunOssFileService;
-import com.taoyuanx.littlefile.fdfs.FdfsFileService;
+import com.taoyuanx.littlefile.cache.CacheEntry;
+import com.taoyuanx.littlefile.support.BackendFileNotFoundException;
 import com.taoyuanx.littlefile.support.FileDownStrategy;
+import com.taoyuanx.littlefile.support.FillTask;
 
 public class AliyunOssStrategy implements FileDownStrategy {
 	private AliyunOssFileService ossFileService;
@@ -13,7 +24,86 @@ public class AliyunOssStrategy implements FileDownStrategy {
 
 	@Override
 	public void down(String src, String dest) throws Exception {
-		ossFileService.download(src, dest);
+		downWithMeta(src, dest);
+	}
+
+	@Override
+	public CacheEntry downWithMeta(String src, String dest) throws Exception {
+		// oss 仅提供crc64,只校验大小,修改时间用于条件请求
+		ObjectMetadata metadata;
+		try {
+			metadata = ossFileService.download(src, dest);
+		} catch (OSSException e) {
+			throw notFound(src, e);
+		}
+		return meta(src, metadata);
+	}
+
+	@Override
+	public CompletableFuture<CacheEntry> downAsync(String src, String dest, ExecutorService executor) {
+		//取消后下次写入时中止传输,连接断开
+		return FillTask.submit(executor, task -> {
+			ObjectMetadata metadata;
+			try (OutputStream out = task.abortable(new FileOutputStream(dest))) {
+				metadata = ossFileService.download(src, out, 64 * 1024);
+			} catch (OSSException e) {
+				throw notFound(src, e);
+			}
+			return meta(src, metadata);
+		});
+	}
+
+	@Override
+	public void downStream(String src, OutputStream out) throws Exception {
+		try {
+			ossFileService.download(src, out, 64 * 1024);
+		} catch (OSSException e) {
+			throw notFound(src, e);
+		}
+	}
+
+	@Override
+	public CacheEntry meta(String src) throws Exception {
+		try {
+			return meta(src, ossFileService.getMeta(src));
+		} catch (OSSException e) {
+			throw notFound(src, e);
+		}
+	}
+
+	/**
+	 * 大小及修改时间,修改时间用于生成ETag及Last-Modified
+	 */
+	private static CacheEntry meta(String src, ObjectMetadata metadata) {
+		if (metadata == null) {
+			return null;
+		}
+		Date lastModified = metadata.getLastModified();
+		return new CacheEntry(src, metadata.getContentLength(), lastModified != null ? lastModified.getTime() : -1, -1);
+	}
+
+	/**
+	 * 文件不存在转换为 BackendFileNotFoundException
+	 */
+	private static Exception notFound(String src, OSSException e) {
+		if (OSSErrorCode.NO_SUCH_KEY.equals(e.getErrorCode())) {
+			return new BackendFileNotFoundException("oss file " + src + " not found");
+		}
+		return e;
+	}
+
+	@Override
+	public boolean isRangeSupported() {
+		return true;
+	}
+
+	@Override
+	public byte[] downRange(String src, long offset, int length) throws Exception {
+		try {
+			return ossFileService.downloadRange(src, offset, length);
+		} catch (OSSException e) {
+			throw notFound(src, e);
+		}
 	}
 
 }
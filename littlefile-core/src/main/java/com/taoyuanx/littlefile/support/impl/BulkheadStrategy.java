@@ -0,0 +1,342 @@
+package com.taoyuanx.littlefile.support.impl;
+
+import java.io.File;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.taoyuanx.littlefile.cache.CacheEntry;
+import com.taoyuanx.littlefile.support.BackendFileNotFoundException;
+import com.taoyuanx.littlefile.support.FileDownStrategy;
+
+/**
+ * @author dushitaoyuan
+ * @desc 后端隔离舱, 限制同时访问后端的下载数, 后端变慢时缓存未命中的请求不再占满容器线程, 缓存命中不受影响
+ * 并发上限按下载耗时自适应(AIMD): 上限用到一半以上时, 每MB耗时未超过基线(中位数)的2倍时缓慢增加, 超过或后端异常时按比例减少
+ * 超过上限的下载短暂排队, 排队超时或排队数超过上限时拒绝(RejectedExecutionException, 响应503)
+ * @date 2026/10/18
+ */
+public class BulkheadStrategy implements FileDownStrategy {
+	private static final Logger LOG = LoggerFactory.getLogger(BulkheadStrategy.class);
+	public static final long WAIT_DEFAULT = 100;
+	private static final int INITIAL_LIMIT = 10;
+	private static final int MIN_LIMIT = 1;
+	/**
+	 * 耗时超过基线的倍数视为后端变慢
+	 */
+	private static final double TOLERANCE = 2.0;
+	private static final double BACKOFF = 0.9;
+	/**
+	 * 基线取上一窗口(采样个数)内每MB耗时的中位数,后端整体变慢后基线随之调整
+	 * 采样数不足 MIN_SAMPLES 时没有基线,只按异常减少上限
+	 */
+	private static final int WINDOW = 100;
+	private static final int MIN_SAMPLES = 10;
+	private static final long MIN_BASELINE = 10;
+	/**
+	 * 同一批慢下载只减少一次上限
+	 */
+	private static final long DECREASE_INTERVAL = 1000;
+	private static final long UNIT = 1024 * 1024;
+	/**
+	 * 当前线程的下载不排队,用于预取等后台下载
+	 */
+	private static final ThreadLocal<Boolean> NO_WAIT = new ThreadLocal<>();
+
+	/**
+	 * delegate 后端下载策略
+	 * maxLimit 并发上限的最大值
+	 * maxWait 超过上限时最长排队时间(毫秒)
+	 * limit 当前并发上限
+	 * inFlight 正在访问后端的下载数
+	 * waiting 排队中的下载数
+	 */
+	private final FileDownStrategy delegate;
+	private final int maxLimit;
+	private final long maxWait;
+	private double limit;
+	private int inFlight;
+	private int waiting;
+	private long baseline = Long.MAX_VALUE;
+	private final long[] window = new long[WINDOW];
+	private int windowCount;
+	private long lastDecrease;
+	private final AtomicLong rejectedCount = new AtomicLong();
+	private final AtomicLong decreaseCount = new AtomicLong();
+
+	/**
+	 * @param delegate 后端下载策略
+	 * @param maxLimit 并发上限的最大值
+	 * @param maxWait  超过上限时最长排队时间(毫秒),0不排队
+	 */
+	public BulkheadStrategy(FileDownStrategy delegate, int maxLimit, long maxWait) {
+		this.delegate = delegate;
+		this.maxLimit = Math.max(MIN_LIMIT, maxLimit);
+		this.maxWait = maxWait;
+		this.limit = Math.min(INITIAL_LIMIT, this.maxLimit);
+	}
+
+	/**
+	 * 在当前线程执行, 期间经隔离舱的下载没有空闲名额时直接拒绝, 不占用实时请求的排队名额
+	 */
+	public static <T> T noWait(Callable<T> call) throws Exception {
+		Boolean outer = NO_WAIT.get();
+		NO_WAIT.set(Boolean.TRUE);
+		try {
+			return call.call();
+		} finally {
+			if (outer == null) {
+				NO_WAIT.remove();
+			}
+		}
+	}
+
+	@Override
+	public void down(String src, String dest) throws Exception {
+		downWithMeta(src, dest);
+	}
+
+	@Override
+	public CacheEntry downWithMeta(String src, String dest) throws Exception {
+		acquire(maxWait);
+		long start = System.currentTimeMillis();
+		try {
+			CacheEntry meta = delegate.downWithMeta(src, dest);
+			onSuccess(start, new File(dest).length());
+			return meta;
+		} catch (Exception e) {
+			onError(e);
+			throw e;
+		} finally {
+			release();
+		}
+	}
+
+	/**
+	 * 异步下载不排队,没有空闲名额时直接拒绝,由下载完成时释放名额
+	 */
+	@Override
+	public CompletableFuture<CacheEntry> downAsync(String src, String dest, ExecutorService executor) {
+		try {
+			acquire(0);
+		} catch (Exception e) {
+			CompletableFuture<CacheEntry> task = new CompletableFuture<>();
+			task.completeExceptionally(e);
+			return task;
+		}
+		long start = System.currentTimeMillis();
+		CompletableFuture<CacheEntry> task;
+		try {
+			task = delegate.downAsync(src, dest, executor);
+		} catch (RuntimeException e) {
+			release();
+			throw e;
+		}
+		task.whenComplete((meta, e) -> {
+			try {
+				if (e == null) {
+					onSuccess(start, new File(dest).length());
+				} else if (!task.isCancelled()) {
+					onError(e);
+				}
+			} finally {
+				release();
+			}
+		});
+		return task;
+	}
+
+	@Override
+	public void downStream(String src, OutputStream out) throws Exception {
+		acquire(maxWait);
+		long start = System.currentTimeMillis();
+		try {
+			CountingOutputStream counting = new CountingOutputStream(out);
+			delegate.downStream(src, counting);
+			onSuccess(start, counting.getByteCount());
+		} catch (Exception e) {
+			onError(e);
+			throw e;
+		} finally {
+			release();
+		}
+	}
+
+	@Override
+	public byte[] downRange(String src, long offset, int length) throws Exception {
+		acquire(maxWait);
+		long start = System.currentTimeMillis();
+		try {
+			byte[] data = delegate.downRange(src, offset, length);
+			onSuccess(start, data.length);
+			return data;
+		} catch (Exception e) {
+			onError(e);
+			throw e;
+		} finally {
+			release();
+		}
+	}
+
+	@Override
+	public CacheEntry meta(String src) throws Exception {
+		acquire(maxWait);
+		try {
+			return delegate.meta(src);
+		} catch (Exception e) {
+			onError(e);
+			throw e;
+		} finally {
+			release();
+		}
+	}
+
+	@Override
+	public File localFile(String src) throws Exception {
+		return delegate.localFile(src);
+	}
+
+	@Override
+	public boolean isRangeSupported() {
+		return delegate.isRangeSupported();
+	}
+
+	private synchronized void acquire(long wait) throws InterruptedException {
+		if (NO_WAIT.get() != null) {
+			wait = 0;
+		}
+		if (inFlight < getLimit()) {
+			inFlight++;
+			return;
+		}
+		if (wait <= 0 || waiting >= getLimit()) {
+			throw reject();
+		}
+		waiting++;
+		try {
+			long deadline = System.currentTimeMillis() + wait;
+			long remain = wait;
+			while (inFlight >= getLimit()) {
+				if (remain <= 0) {
+					throw reject();
+				}
+				wait(remain);
+				remain = deadline - System.currentTimeMillis();
+			}
+			inFlight++;
+		} finally {
+			waiting--;
+		}
+	}
+
+	private RejectedExecutionException reject() {
+		rejectedCount.incrementAndGet();
+		return new RejectedExecutionException("backend busy, limit " + getLimit() + " in flight " + inFlight);
+	}
+
+	private synchronized void release() {
+		inFlight--;
+		notifyAll();
+	}
+
+	/**
+	 * 按每MB耗时(不足1MB按1MB)调整并发上限,只在上限被用到一半以上时调整,
+	 * 空闲时单次耗时抖动与并发无关,不减少上限
+	 */
+	private synchronized void onSuccess(long start, long bytes) {
+		long sample = (System.currentTimeMillis() - start) * UNIT / Math.max(bytes, UNIT);
+		window[windowCount++] = sample;
+		if (windowCount >= WINDOW || baseline == Long.MAX_VALUE && windowCount >= MIN_SAMPLES) {
+			long[] sorted = Arrays.copyOf(window, windowCount);
+			Arrays.sort(sorted);
+			baseline = Math.max(MIN_BASELINE, sorted[windowCount / 2]);
+			if (windowCount >= WINDOW) {
+				windowCount = 0;
+			}
+		}
+		if (inFlight < limit / 2) {
+			return;
+		}
+		if (baseline != Long.MAX_VALUE && sample > baseline * TOLERANCE) {
+			decrease();
+		} else {
+			limit = Math.min(maxLimit, limit + 1 / limit);
+		}
+	}
+
+	/**
+	 * 后端异常视为过载,文件不存在,取消及拒绝除外
+	 */
+	private void onError(Throwable e) {
+		for (int depth = 0; e != null && depth < 4; e = e.getCause(), depth++) {
+			if (e instanceof BackendFileNotFoundException || e instanceof RejectedExecutionException || e instanceof CancellationException
+					|| e instanceof InterruptedIOException || e instanceof InterruptedException) {
+				return;
+			}
+		}
+		synchronized (this) {
+			decrease();
+		}
+	}
+
+	private void decrease() {
+		long now = System.currentTimeMillis();
+		if (now - lastDecrease < DECREASE_INTERVAL) {
+			return;
+		}
+		lastDecrease = now;
+		limit = Math.max(MIN_LIMIT, limit * BACKOFF);
+		decreaseCount.incrementAndGet();
+		LOG.debug("backend slow, limit decrease to {}", getLimit());
+	}
+
+	/**
+	 * 当前并发上限
+	 */
+	public synchronized int getLimit() {
+		return Math.max(MIN_LIMIT, (int) limit);
+	}
+
+	/**
+	 * 正在访问后端的下载数
+	 */
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * 排队中的下载数
+	 */
+	public synchronized int getWaiting() {
+		return waiting;
+	}
+
+	/**
+	 * 被拒绝的下载次数
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	/**
+	 * 并发上限减少的次数
+	 */
+	public long getDecreaseCount() {
+		return decreaseCount.get();
+	}
+
+	public int getMaxLimit() {
+		return maxLimit;
+	}
+
+}
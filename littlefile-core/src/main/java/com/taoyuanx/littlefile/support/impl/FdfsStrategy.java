@@ -1,7 +1,17 @@
 package com.taoyuanx.littlefile.support.impl;
 
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import com.taoyuanx.littlefile.cache.CacheEntry;
 import com.taoyuanx.littlefile.fdfs.FdfsFileService;
+import com.taoyuanx.littlefile.fdfs.FileAttr;
+import com.taoyuanx.littlefile.support.BackendFileNotFoundException;
 import com.taoyuanx.littlefile.support.FileDownStrategy;
+import com.taoyuanx.littlefile.support.FillTask;
 
 public class FdfsStrategy implements FileDownStrategy {
 	private FdfsFileService fdfsFileService;
@@ -12,7 +22,60 @@ public class FdfsStrategy implements FileDownStrategy {
 
 	@Override
 	public void down(String src, String dest) throws Exception {
-		fdfsFileService.download(src, dest);
+		int code = fdfsFileService.download(src, dest);
+		if (code == FdfsFileService.ERR_NO_ENTRY) {
+			throw new BackendFileNotFoundException("file " + src + " not found");
+		}
+		if (code != 0) {
+			throw new IOException("download file " + src + " error, code " + code);
+		}
+	}
+
+	@Override
+	public CacheEntry downWithMeta(String src, String dest) throws Exception {
+		// 普通文件的大小及crc32由文件id解析,无需请求storage
+		FileAttr fileAttr = fdfsFileService.getFileInfo(src);
+		down(src, dest);
+		if (fileAttr == null) {
+			return null;
+		}
+		return new CacheEntry(src, fileAttr.getFile_size(), -1, fileAttr.getCrc32() & 0xFFFFFFFFL);
+	}
+
+	@Override
+	public void downStream(String src, OutputStream out) throws Exception {
+		fdfsFileService.download(src, out);
+	}
+
+	@Override
+	public CompletableFuture<CacheEntry> downAsync(String src, String dest, ExecutorService executor) {
+		//取消后下次写入时中止传输
+		return FillTask.submit(executor, task -> {
+			CacheEntry meta = meta(src);
+			try (OutputStream out = task.abortable(new FileOutputStream(dest))) {
+				fdfsFileService.download(src, out);
+			}
+			return meta;
+		});
+	}
+
+	@Override
+	public CacheEntry meta(String src) throws Exception {
+		FileAttr fileAttr = fdfsFileService.getFileInfo(src);
+		if (fileAttr == null) {
+			return null;
+		}
+		return new CacheEntry(src, fileAttr.getFile_size(), -1, fileAttr.getCrc32() & 0xFFFFFFFFL);
+	}
+
+	@Override
+	public boolean isRangeSupported() {
+		return true;
+	}
+
+	@Override
+	public byte[] downRange(String src, long offset, int length) throws Exception {
+		return fdfsFileService.download(src, offset, length);
 	}
 
 }
@@ -1,7 +1,14 @@
 package com.taoyuanx.littlefile.support.impl;
 
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import com.taoyuanx.littlefile.cache.CacheEntry;
 import com.taoyuanx.littlefile.ftp.LittleFileFtp;
 import com.taoyuanx.littlefile.support.FileDownStrategy;
+import com.taoyuanx.littlefile.support.FillTask;
 
 public class FtpStrategy implements FileDownStrategy {
 	private LittleFileFtp littleFileFtp;
@@ -13,7 +20,22 @@ public class FtpStrategy implements FileDownStrategy {
 	@Override
 	public void down(String src, String dest) throws Exception {
 		littleFileFtp.download(src, dest);
-		littleFileFtp.close();
+	}
+
+	@Override
+	public void downStream(String src, OutputStream out) throws Exception {
+		littleFileFtp.download(src, out);
+	}
+
+	@Override
+	public CompletableFuture<CacheEntry> downAsync(String src, String dest, ExecutorService executor) {
+		//取消后下次写入时中止传输,连接按异常关闭
+		return FillTask.submit(executor, task -> {
+			try (OutputStream out = task.abortable(new FileOutputStream(dest))) {
+				littleFileFtp.download(src, out);
+			}
+			return null;
+		});
 	}
 
 }
@@ -0,0 +1,358 @@
+package com.taoyuanx.littlefile.support.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.taoyuanx.littlefile.cache.CacheEntry;
+import com.taoyuanx.littlefile.support.BackendFileNotFoundException;
+import com.taoyuanx.littlefile.support.FileDownStrategy;
+
+/**
+ * @author dushitaoyuan
+ * @desc 对冲下载, 缓存填充超过延迟仍未完成时, 向备用后端再发起一次下载, 使用先完成的结果并取消另一个
+ * 对冲延迟按文件大小计算: 近期每MB下载耗时的p95乘以文件大小(不足1MB按1MB), 大文件不会因耗时长而总被对冲
+ * 各次下载使用下载策略的异步下载, 未获胜的下载经可中止的传输停止, 不继续占用后端连接
+ * 备用后端可为同一下载策略: fdfs tracker 轮询同组storage, oss 请求会落到其他节点, 慢节点不再决定长尾延迟
+ * 对冲请求数受预算限制(占总请求数的百分比), 后端整体变慢时不会成倍放大请求
+ * @date 2026/10/18
+ */
+public class HedgedStrategy implements FileDownStrategy {
+	private static final Logger LOG = LoggerFactory.getLogger(HedgedStrategy.class);
+	public static final int BUDGET_PERCENT_DEFAULT = 10;
+	/**
+	 * 耗时采样个数及计算p95所需的最少采样数
+	 */
+	private static final int SAMPLE_SIZE = 128;
+	private static final int MIN_SAMPLES = 20;
+	private static final long MB = 1024 * 1024;
+	/**
+	 * 最多累积的对冲次数
+	 */
+	private static final double MAX_TOKENS = 10;
+
+	/**
+	 * primary 主下载策略
+	 * secondary 对冲下载策略
+	 * minDelay 最小对冲延迟(毫秒),采样不足时使用
+	 * budgetRatio 每次下载积累的对冲次数
+	 * hedgeExecutor 同步下载时的下载线程池,不排队,线程均忙时拒绝(响应503),请求线程不会在不可见的队列中等待
+	 * hedgeTimer 检查是否需要对冲,不访问后端
+	 * samples 近期每MB下载耗时(毫秒)环形缓冲
+	 */
+	private final FileDownStrategy primary;
+	private final FileDownStrategy secondary;
+	private final long minDelay;
+	private final double budgetRatio;
+	private final ExecutorService hedgeExecutor;
+	private final ScheduledExecutorService hedgeTimer;
+	private final long[] samples = new long[SAMPLE_SIZE];
+	private int sampleCount;
+	private double tokens = MAX_TOKENS;
+	private final AtomicLong hedgedCount = new AtomicLong();
+	private final AtomicLong hedgeWinCount = new AtomicLong();
+
+	/**
+	 * @param primary       主下载策略
+	 * @param secondary     对冲下载策略,可与主下载策略相同
+	 * @param minDelay      最小对冲延迟(毫秒)
+	 * @param budgetPercent 对冲请求占总请求数的最大百分比
+	 * @param maxThreads    同步下载线程数,即同时进行的同步下载(含对冲下载)上限
+	 */
+	public HedgedStrategy(FileDownStrategy primary, FileDownStrategy secondary, long minDelay, int budgetPercent, int maxThreads) {
+		this.primary = primary;
+		this.secondary = secondary;
+		this.minDelay = minDelay;
+		this.budgetRatio = budgetPercent / 100.0;
+		AtomicInteger threadCount = new AtomicInteger();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60L, TimeUnit.SECONDS,
+				new SynchronousQueue<>(), r -> {
+					Thread thread = new Thread(r, "littlefile-hedge-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.AbortPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		this.hedgeExecutor = executor;
+		this.hedgeTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "littlefile-hedge-timer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Override
+	public void down(String src, String dest) throws Exception {
+		downWithMeta(src, dest);
+	}
+
+	@Override
+	public CacheEntry downWithMeta(String src, String dest) throws Exception {
+		CompletableFuture<CacheEntry> task = downAsync(src, dest, hedgeExecutor);
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			task.cancel(true);
+			throw e;
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+		}
+	}
+
+	@Override
+	public CompletableFuture<CacheEntry> downAsync(String src, String dest, ExecutorService executor) {
+		deposit();
+		Hedge hedge = new Hedge(src, dest, executor);
+		hedge.launch(primary);
+		schedule(hedge, hedgeDelay(-1));
+		return hedge;
+	}
+
+	private void schedule(Hedge hedge, long delay) {
+		if (!hedge.isDone()) {
+			hedgeTimer.schedule(() -> check(hedge), delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * 超过按文件大小计算的对冲延迟仍未完成时发起对冲,未超过时到期再检查
+	 * 按1MB计算已超时且文件大小未知时,先在下载线程池中获取文件大小,获取后再检查,计时线程不等待后端
+	 */
+	private void check(Hedge hedge) {
+		if (hedge.isDone()) {
+			return;
+		}
+		long size = hedge.size;
+		long remain = hedge.start + hedgeDelay(size) - System.currentTimeMillis();
+		if (remain > 0) {
+			schedule(hedge, remain);
+			return;
+		}
+		if (size < 0 && isSampled()) {
+			hedge.fetchSize();
+			return;
+		}
+		if (tryAcquire()) {
+			hedgedCount.incrementAndGet();
+			LOG.debug("file {} fill slow, hedge", hedge.src);
+			hedge.launch(secondary);
+		}
+	}
+
+	/**
+	 * 对冲延迟: 近期每MB下载耗时的p95乘以文件大小,不小于最小对冲延迟
+	 *
+	 * @param size 文件大小,未知时按1MB计算
+	 */
+	private long hedgeDelay(long size) {
+		long[] copy;
+		synchronized (this) {
+			if (sampleCount < MIN_SAMPLES) {
+				return minDelay;
+			}
+			copy = Arrays.copyOf(samples, Math.min(sampleCount, SAMPLE_SIZE));
+		}
+		Arrays.sort(copy);
+		long perMb = copy[(int) (copy.length * 0.95) - 1];
+		return Math.max(minDelay, perMb * Math.max(MB, size) / MB);
+	}
+
+	/**
+	 * 记录每MB下载耗时,不足1MB按1MB计算
+	 */
+	private synchronized void record(long elapsed, long size) {
+		samples[sampleCount++ % SAMPLE_SIZE] = elapsed * MB / Math.max(MB, size);
+		if (sampleCount == Integer.MAX_VALUE) {
+			sampleCount = SAMPLE_SIZE;
+		}
+	}
+
+	/**
+	 * 采样是否足够按文件大小计算对冲延迟
+	 */
+	private synchronized boolean isSampled() {
+		return sampleCount >= MIN_SAMPLES;
+	}
+
+	private synchronized void deposit() {
+		tokens = Math.min(MAX_TOKENS, tokens + budgetRatio);
+	}
+
+	private synchronized boolean tryAcquire() {
+		if (tokens >= 1) {
+			tokens -= 1;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 发起的对冲下载次数
+	 */
+	public long getHedgedCount() {
+		return hedgedCount.get();
+	}
+
+	/**
+	 * 对冲下载先完成的次数
+	 */
+	public long getHedgeWinCount() {
+		return hedgeWinCount.get();
+	}
+
+	@Override
+	public CacheEntry meta(String src) throws Exception {
+		return primary.meta(src);
+	}
+
+	@Override
+	public void downStream(String src, OutputStream out) throws Exception {
+		primary.downStream(src, out);
+	}
+
+	@Override
+	public File localFile(String src) throws Exception {
+		return primary.localFile(src);
+	}
+
+	@Override
+	public boolean isRangeSupported() {
+		return primary.isRangeSupported();
+	}
+
+	@Override
+	public byte[] downRange(String src, long offset, int length) throws Exception {
+		return primary.downRange(src, offset, length);
+	}
+
+	/**
+	 * 一次填充的各次下载,下载到各自的临时文件,先成功的获胜并取消其他下载,未获胜的删除临时文件
+	 * 全部失败或文件不存在时失败
+	 */
+	private class Hedge extends CompletableFuture<CacheEntry> {
+		private final String src;
+		private final String dest;
+		private final ExecutorService executor;
+		private final long start = System.currentTimeMillis();
+		private final List<CompletableFuture<CacheEntry>> attempts = new ArrayList<>(2);
+		private int failed;
+		/**
+		 * 文件大小,-1 未知,获取失败时为0(按1MB计算)
+		 */
+		private volatile long size = -1;
+
+		Hedge(String src, String dest, ExecutorService executor) {
+			this.src = src;
+			this.dest = dest;
+			this.executor = executor;
+		}
+
+		synchronized void launch(FileDownStrategy strategy) {
+			if (isDone()) {
+				return;
+			}
+			int index = attempts.size();
+			//以.fill结尾,异常退出时由缓存清理删除
+			File file = new File(dest + "." + index + ".fill");
+			long begin = System.currentTimeMillis();
+			CompletableFuture<CacheEntry> attempt;
+			try {
+				attempt = strategy.downAsync(src, file.getAbsolutePath(), executor);
+			} catch (RuntimeException e) {
+				attempt = new CompletableFuture<>();
+				attempt.completeExceptionally(e);
+			}
+			attempts.add(attempt);
+			attempt.whenComplete((meta, e) -> finish(index, file, meta, e, begin));
+		}
+
+		private synchronized void finish(int index, File file, CacheEntry meta, Throwable e, long begin) {
+			if (isDone()) {
+				file.delete();
+				return;
+			}
+			if (e == null && !file.exists()) {
+				e = new BackendFileNotFoundException("file " + src + " not found");
+			}
+			if (e == null) {
+				try {
+					Files.move(file.toPath(), new File(dest).toPath(), StandardCopyOption.REPLACE_EXISTING);
+					record(System.currentTimeMillis() - begin, meta != null && meta.getSize() > 0 ? meta.getSize() : new File(dest).length());
+					if (index > 0) {
+						hedgeWinCount.incrementAndGet();
+					}
+					complete(meta);
+					cancelAttempts();
+					return;
+				} catch (IOException ex) {
+					e = ex;
+				}
+			}
+			file.delete();
+			if (e instanceof CompletionException && e.getCause() != null) {
+				e = e.getCause();
+			}
+			if (e instanceof BackendFileNotFoundException || ++failed == attempts.size()) {
+				completeExceptionally(e);
+				cancelAttempts();
+			}
+		}
+
+		private synchronized void cancelAttempts() {
+			for (CompletableFuture<CacheEntry> attempt : attempts) {
+				attempt.cancel(true);
+			}
+		}
+
+		/**
+		 * 在下载线程池中获取文件大小,仅在需要按大小计算对冲延迟时获取一次,完成后重新检查是否对冲
+		 */
+		void fetchSize() {
+			try {
+				executor.execute(() -> {
+					long value = 0;
+					try {
+						CacheEntry meta = primary.meta(src);
+						value = meta != null ? meta.getSize() : 0;
+					} catch (Exception e) {
+						LOG.debug("get file {} size error {}", src, e.getMessage());
+					}
+					size = value;
+					schedule(this, 0);
+				});
+			} catch (RejectedExecutionException e) {
+				size = 0;
+				schedule(this, 0);
+			}
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			if (cancelled) {
+				cancelAttempts();
+			}
+			return cancelled;
+		}
+	}
+
+}
@@ -1,14 +1,28 @@
 package com.taoyuanx.littlefile.support.impl;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.io.FileUtils;
 
+import com.taoyuanx.littlefile.cache.CacheEntry;
+import com.taoyuanx.littlefile.support.BackendFileNotFoundException;
 import com.taoyuanx.littlefile.support.FileDownStrategy;
 
 public class LocalStrategy implements FileDownStrategy{
 	private String[] localDirs;
 	private boolean isEmpty=false;
+	/**
+	 * dirIndex 文件所在目录 -> 所属本地目录,避免每次依次探测各本地目录
+	 * direct 直接输出源文件,不写入缓存目录
+	 */
+	private final ConcurrentHashMap<String, String> dirIndex = new ConcurrentHashMap<>();
+	private static final int DIR_INDEX_MAX_SIZE = 100000;
+	private boolean direct = false;
 	public LocalStrategy(String[] localDirs) {
 		if(localDirs==null||localDirs.length==0) {
 			isEmpty=true;
@@ -18,19 +32,105 @@ public class LocalStrategy implements FileDownStrategy{
 	}
 	@Override
 	public void down(String src, String dest) throws Exception {
+		downWithMeta(src, dest);
+	}
+
+	@Override
+	public CacheEntry downWithMeta(String src, String dest) throws Exception {
 		if(isEmpty) {
-			return;
+			return null;
+		}
+		File srcFile = find(src);
+		if (srcFile == null) {
+			throw new BackendFileNotFoundException("local file " + src + " not find");
+		}
+		long size = srcFile.length(), lastModified = srcFile.lastModified();
+		File destFile = new File(dest);
+		try {
+			//同一文件系统时硬链接,不复制数据
+			Files.createLink(destFile.toPath(), srcFile.toPath());
+		} catch (IOException | UnsupportedOperationException e) {
+			FileUtils.copyFile(srcFile, destFile);
+		}
+		return new CacheEntry(src, size, lastModified, -1);
+	}
+
+	/**
+	 * 开启直接输出源文件
+	 */
+	public void setDirect(boolean direct) {
+		this.direct = direct;
+	}
+
+	@Override
+	public File localFile(String src) throws Exception {
+		return direct ? find(src) : null;
+	}
+
+	@Override
+	public void downStream(String src, OutputStream out) throws Exception {
+		File srcFile = find(src);
+		if (srcFile == null) {
+			throw new BackendFileNotFoundException("local file " + src + " not find");
+		}
+		FileUtils.copyFile(srcFile, out);
+	}
+
+	@Override
+	public CacheEntry meta(String src) throws Exception {
+		File srcFile = find(src);
+		return srcFile == null ? null : new CacheEntry(src, srcFile.length(), srcFile.lastModified(), -1);
+	}
+
+	@Override
+	public boolean isRangeSupported() {
+		return true;
+	}
+
+	@Override
+	public byte[] downRange(String src, long offset, int length) throws Exception {
+		File srcFile = find(src);
+		if (srcFile == null) {
+			throw new BackendFileNotFoundException("local file " + src + " not find");
+		}
+		byte[] data = new byte[length];
+		try (RandomAccessFile raf = new RandomAccessFile(srcFile, "r")) {
+			raf.seek(offset);
+			raf.readFully(data);
+		}
+		return data;
+	}
+
+	/**
+	 * 查找源文件,先查找同目录文件上次所在的本地目录
+	 */
+	private File find(String src) {
+		if (isEmpty) {
+			return null;
+		}
+		int index = src.lastIndexOf('/');
+		String parent = index > 0 ? src.substring(0, index) : "";
+		String indexed = dirIndex.get(parent);
+		if (indexed != null) {
+			File srcFile = new File(indexed, src);
+			if (srcFile.isFile()) {
+				return srcFile;
+			}
 		}
-		File destFile=new File(dest);
-		File srcFile=null;
-		for(String dir:localDirs) {
-			srcFile=new File(dir,src);
-			if(srcFile.exists()) {
-				FileUtils.copyFile(srcFile, destFile);
-				return;
+		for (String dir : localDirs) {
+			if (dir.equals(indexed)) {
+				continue;
+			}
+			File srcFile = new File(dir, src);
+			if (srcFile.isFile()) {
+				if (dirIndex.size() >= DIR_INDEX_MAX_SIZE) {
+					dirIndex.clear();
+				}
+				dirIndex.put(parent, dir);
+				return srcFile;
 			}
 		}
-		throw new Exception("local file not find");
+		return null;
 	}
 
 
@@ -0,0 +1,208 @@
+package com.taoyuanx.littlefile.support.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.taoyuanx.littlefile.cache.CacheEntry;
+import com.taoyuanx.littlefile.support.BackendFileNotFoundException;
+import com.taoyuanx.littlefile.support.FileDownStrategy;
+import com.taoyuanx.littlefile.support.FillTask;
+
+/**
+ * @author dushitaoyuan
+ * @desc 并行分段下载, 大于阈值的文件按段并发范围下载, 按位置写入预分配的临时文件, 全部完成后移动为目标文件
+ * 目标文件可能正被边下载边读取, 乱序写入的未下载部分不能暴露给读取方
+ * 单个连接的吞吐受限于带宽时延积, 多连接并发可充分利用带宽, 失败的段单独重试
+ * 需下载策略支持范围下载且能提供文件大小, 否则使用原下载方式
+ * @date 2026/10/18
+ */
+public class ParallelFillStrategy implements FileDownStrategy {
+	private static final Logger LOG = LoggerFactory.getLogger(ParallelFillStrategy.class);
+	public static final int PART_KB_DEFAULT = 4096;
+	public static final int CONCURRENCY_DEFAULT = 4;
+	/**
+	 * 单段失败重试次数
+	 */
+	private static final int RETRY_TIMES = 3;
+	/**
+	 * 分段下载的临时文件后缀,以.fill结尾,异常退出时由缓存清理删除
+	 */
+	private static final String PARTS_SUFFIX = ".parts.fill";
+
+	/**
+	 * delegate 实际下载策略
+	 * threshold 并行下载的最小文件大小(字节)
+	 * partSize 段大小(字节)
+	 * concurrency 单个文件并发下载段数
+	 * partExecutor 段下载线程池,请求线程同时参与下载
+	 */
+	private final FileDownStrategy delegate;
+	private final long threshold;
+	private final int partSize;
+	private final int concurrency;
+	private final ExecutorService partExecutor;
+
+	public ParallelFillStrategy(FileDownStrategy delegate, long threshold, int partSize, int concurrency) {
+		this.delegate = delegate;
+		this.threshold = Math.max(threshold, partSize);
+		this.partSize = partSize;
+		this.concurrency = concurrency;
+		AtomicInteger threadCount = new AtomicInteger();
+		this.partExecutor = new ThreadPoolExecutor(concurrency * 4, concurrency * 4, 60L, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), r -> {
+					Thread thread = new Thread(r, "littlefile-part-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		((ThreadPoolExecutor) partExecutor).allowCoreThreadTimeOut(true);
+	}
+
+	@Override
+	public void down(String src, String dest) throws Exception {
+		downWithMeta(src, dest);
+	}
+
+	@Override
+	public CacheEntry downWithMeta(String src, String dest) throws Exception {
+		CacheEntry meta = delegate.meta(src);
+		if (meta == null || meta.getSize() < threshold) {
+			return delegate.downWithMeta(src, dest);
+		}
+		return downParts(src, dest, meta, () -> false);
+	}
+
+	/**
+	 * 获取文件大小后再决定是否分段,小文件使用实际下载策略的异步下载(可中止传输)
+	 * 分段下载时下载线程同时下载分段,取消后不再下载新的分段
+	 */
+	@Override
+	public CompletableFuture<CacheEntry> downAsync(String src, String dest, ExecutorService executor) {
+		return FillTask.compose(FillTask.submit(executor, task -> delegate.meta(src)), meta -> {
+			if (meta == null || meta.getSize() < threshold) {
+				return delegate.downAsync(src, dest, executor);
+			}
+			return FillTask.submit(executor, task -> downParts(src, dest, meta, task::isCancelled));
+		});
+	}
+
+	private CacheEntry downParts(String src, String dest, CacheEntry meta, BooleanSupplier cancelled) throws Exception {
+		long size = meta.getSize();
+		int parts = (int) ((size + partSize - 1) / partSize);
+		AtomicInteger nextPart = new AtomicInteger();
+		AtomicReference<Exception> error = new AtomicReference<>();
+		File partsFile = new File(dest + PARTS_SUFFIX);
+		try {
+			try (RandomAccessFile file = new RandomAccessFile(partsFile, "rw")) {
+				file.setLength(size);
+				FileChannel channel = file.getChannel();
+				Runnable worker = () -> {
+					int part;
+					while (error.get() == null && !cancelled.getAsBoolean() && (part = nextPart.getAndIncrement()) < parts) {
+						try {
+							downPart(src, channel, part, size);
+						} catch (Exception e) {
+							error.compareAndSet(null, e);
+						}
+					}
+				};
+				List<Future<?>> futures = new ArrayList<>();
+				for (int i = 1; i < Math.min(concurrency, parts); i++) {
+					futures.add(partExecutor.submit(worker));
+				}
+				//请求线程同时下载,段线程池繁忙时也能完成
+				worker.run();
+				for (Future<?> future : futures) {
+					future.get();
+				}
+			}
+			if (error.get() != null) {
+				throw error.get();
+			}
+			if (cancelled.getAsBoolean()) {
+				throw new InterruptedIOException("fill cancelled");
+			}
+			//全部段下载完成后一次性出现,读取方不会读到未下载的空洞
+			Files.move(partsFile.toPath(), new File(dest).toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			return meta;
+		} finally {
+			partsFile.delete();
+		}
+	}
+
+	/**
+	 * 下载一段并写入对应位置,失败时重试,文件不存在时不重试
+	 */
+	private void downPart(String src, FileChannel channel, int part, long size) throws Exception {
+		long offset = (long) part * partSize;
+		int length = (int) Math.min(partSize, size - offset);
+		for (int i = 1; ; i++) {
+			try {
+				byte[] data = delegate.downRange(src, offset, length);
+				if (data == null || data.length != length) {
+					throw new IOException("download file " + src + " range " + offset + " incomplete");
+				}
+				ByteBuffer buffer = ByteBuffer.wrap(data);
+				long position = offset;
+				while (buffer.hasRemaining()) {
+					position += channel.write(buffer, position);
+				}
+				return;
+			} catch (BackendFileNotFoundException e) {
+				throw e;
+			} catch (Exception e) {
+				if (i >= RETRY_TIMES) {
+					throw e;
+				}
+				LOG.warn("download file {} range {} failed, retry {}", src, offset, i, e);
+			}
+		}
+	}
+
+	@Override
+	public CacheEntry meta(String src) throws Exception {
+		return delegate.meta(src);
+	}
+
+	@Override
+	public void downStream(String src, OutputStream out) throws Exception {
+		delegate.downStream(src, out);
+	}
+
+	@Override
+	public File localFile(String src) throws Exception {
+		return delegate.localFile(src);
+	}
+
+	@Override
+	public boolean isRangeSupported() {
+		return delegate.isRangeSupported();
+	}
+
+	@Override
+	public byte[] downRange(String src, long offset, int length) throws Exception {
+		return delegate.downRange(src, offset, length);
+	}
+
+}
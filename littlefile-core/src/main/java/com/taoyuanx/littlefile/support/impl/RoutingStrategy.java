@@ -0,0 +1,200 @@
+package com.taoyuanx.littlefile.support.impl;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.regex.Pattern;
+
+import com.taoyuanx.littlefile.cache.CacheEntry;
+import com.taoyuanx.littlefile.support.BackendFileNotFoundException;
+import com.taoyuanx.littlefile.support.FileDownStrategy;
+
+/**
+ * @author dushitaoyuan
+ * @desc 多后端路由, 按路径前缀或正则选择后端, 如 group1/ 走fdfs, o_ 走oss, 一个网关实例共用一份缓存
+ * 按添加顺序匹配, 均未匹配时使用默认后端, 没有默认后端时视为文件不存在
+ * 后端可设置各自的下载线程池, 异步下载在所在后端的线程池中执行, 一个后端变慢不占满其他后端的下载线程
+ * @date 2026/10/18
+ */
+public class RoutingStrategy implements FileDownStrategy {
+	private final List<Route> routes = new ArrayList<>();
+	private final FileDownStrategy fallback;
+
+	/**
+	 * @param fallback 默认后端,可为null
+	 */
+	public RoutingStrategy(FileDownStrategy fallback) {
+		this.fallback = fallback;
+	}
+
+	/**
+	 * 添加后端
+	 *
+	 * @param name     后端名称
+	 * @param prefixes 路径前缀,可为null
+	 * @param pattern  路径正则,匹配路径任意部分,可为null
+	 * @param strategy 后端下载策略
+	 */
+	public RoutingStrategy addRoute(String name, String[] prefixes, Pattern pattern, FileDownStrategy strategy) {
+		return addRoute(name, prefixes, pattern, strategy, null);
+	}
+
+	/**
+	 * 添加后端
+	 *
+	 * @param executor 本后端的下载线程池,为null时异步下载使用调用方传入的线程池
+	 */
+	public RoutingStrategy addRoute(String name, String[] prefixes, Pattern pattern, FileDownStrategy strategy, ExecutorService executor) {
+		routes.add(new Route(name, prefixes, pattern, strategy, executor));
+		return this;
+	}
+
+	/**
+	 * 路径对应的后端
+	 */
+	public FileDownStrategy route(String src) throws FileNotFoundException {
+		Route route = find(src);
+		if (route != null) {
+			return route.strategy;
+		}
+		if (fallback == null) {
+			throw new BackendFileNotFoundException("file " + src + " not found, no backend matched");
+		}
+		return fallback;
+	}
+
+	private Route find(String src) {
+		for (Route route : routes) {
+			if (route.matches(src)) {
+				return route;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 指定名称的后端,用于查看各后端的并发上限等状态
+	 */
+	public FileDownStrategy getStrategy(String name) {
+		for (Route route : routes) {
+			if (route.name.equals(name)) {
+				return route.strategy;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 指定名称的后端的下载线程池,未设置时返回null
+	 */
+	public ExecutorService getExecutor(String name) {
+		for (Route route : routes) {
+			if (route.name.equals(name)) {
+				return route.executor;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void down(String src, String dest) throws Exception {
+		route(src).down(src, dest);
+	}
+
+	@Override
+	public CacheEntry downWithMeta(String src, String dest) throws Exception {
+		return route(src).downWithMeta(src, dest);
+	}
+
+	@Override
+	public CompletableFuture<CacheEntry> downAsync(String src, String dest, ExecutorService executor) {
+		Route route = find(src);
+		if (route != null) {
+			return route.strategy.downAsync(src, dest, route.executor != null ? route.executor : executor);
+		}
+		try {
+			return route(src).downAsync(src, dest, executor);
+		} catch (FileNotFoundException e) {
+			CompletableFuture<CacheEntry> task = new CompletableFuture<>();
+			task.completeExceptionally(e);
+			return task;
+		}
+	}
+
+	@Override
+	public CacheEntry meta(String src) throws Exception {
+		return route(src).meta(src);
+	}
+
+	@Override
+	public void downStream(String src, OutputStream out) throws Exception {
+		route(src).downStream(src, out);
+	}
+
+	@Override
+	public File localFile(String src) throws Exception {
+		return route(src).localFile(src);
+	}
+
+	/**
+	 * 任一后端支持范围下载即开启稀疏缓存,具体文件按 {@link #isRangeSupported(String)} 判断
+	 */
+	@Override
+	public boolean isRangeSupported() {
+		if (fallback != null && fallback.isRangeSupported()) {
+			return true;
+		}
+		for (Route route : routes) {
+			if (route.strategy.isRangeSupported()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean isRangeSupported(String src) {
+		try {
+			return route(src).isRangeSupported(src);
+		} catch (FileNotFoundException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public byte[] downRange(String src, long offset, int length) throws Exception {
+		return route(src).downRange(src, offset, length);
+	}
+
+	private static class Route {
+		private final String name;
+		private final String[] prefixes;
+		private final Pattern pattern;
+		private final FileDownStrategy strategy;
+		private final ExecutorService executor;
+
+		Route(String name, String[] prefixes, Pattern pattern, FileDownStrategy strategy, ExecutorService executor) {
+			this.name = name;
+			this.prefixes = prefixes;
+			this.pattern = pattern;
+			this.strategy = strategy;
+			this.executor = executor;
+		}
+
+		boolean matches(String src) {
+			if (prefixes != null) {
+				for (String prefix : prefixes) {
+					if (src.startsWith(prefix)) {
+						return true;
+					}
+				}
+			}
+			return pattern != null && pattern.matcher(src).find();
+		}
+	}
+
+}
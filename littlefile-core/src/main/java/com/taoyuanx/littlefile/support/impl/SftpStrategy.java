@@ -1,7 +1,17 @@
 package com.taoyuanx.littlefile.support.impl;
 
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpException;
+import com.taoyuanx.littlefile.cache.CacheEntry;
 import com.taoyuanx.littlefile.sftp.LittleFileSftp;
+import com.taoyuanx.littlefile.support.BackendFileNotFoundException;
 import com.taoyuanx.littlefile.support.FileDownStrategy;
+import com.taoyuanx.littlefile.support.FillTask;
 
 public class SftpStrategy implements FileDownStrategy {
 	private LittleFileSftp littleFileSftp;
@@ -12,7 +22,41 @@ public class SftpStrategy implements FileDownStrategy {
 
 	@Override
 	public void down(String src, String dest) throws Exception {
-		littleFileSftp.download(src, dest);
+		try {
+			littleFileSftp.download(src, dest);
+		} catch (SftpException e) {
+			throw notFound(src, e);
+		}
+	}
+
+	@Override
+	public void downStream(String src, OutputStream out) throws Exception {
+		try {
+			littleFileSftp.download(src, out);
+		} catch (SftpException e) {
+			throw notFound(src, e);
+		}
+	}
+
+	@Override
+	public CompletableFuture<CacheEntry> downAsync(String src, String dest, ExecutorService executor) {
+		//取消后下次写入时中止传输,通道按异常关闭
+		return FillTask.submit(executor, task -> {
+			try (OutputStream out = task.abortable(new FileOutputStream(dest))) {
+				downStream(src, out);
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * 文件不存在转换为 BackendFileNotFoundException
+	 */
+	private static Exception notFound(String src, SftpException e) {
+		if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+			return new BackendFileNotFoundException("sftp file " + src + " not found");
+		}
+		return e;
 	}
 
 }
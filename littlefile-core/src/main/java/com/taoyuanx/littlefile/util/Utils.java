@@ -31,11 +31,12 @@ public class Utils {
     public static final String CERT_TYPE_JKS = "JKS";
 
     /**
-     * 判断文件是否完整
+     * 判断文件是否完整(按大小估算,小于1KB的文件视为损坏),已由缓存清单替代 @see com.taoyuanx.littlefile.cache.CacheManifest
      *
      * @param localFile
      * @return
      */
+    @Deprecated
     public static boolean isFileNotBad(File localFile) {
         boolean isFileNotBad = localFile.exists() && localFile.length() > 1024;
         return isFileNotBad;
@@ -80,8 +81,10 @@ public class Utils {
     public static Long calcTimes(String times) {
         Long miniSeconds = null;
         if (isNotEmpty(times)) {
-            //s秒，min分钟,h小时,d天
-            if (times.endsWith("s")) {
+            //ms毫秒,s秒，min分钟,h小时,d天
+            if (times.endsWith("ms")) {
+                miniSeconds = Long.parseLong(times.replace("ms", ""));
+            } else if (times.endsWith("s")) {
                 miniSeconds = TimeUnit.SECONDS.toMillis(Integer.parseInt(times.replace("s", "")));
             }
             if (times.endsWith("min")) {
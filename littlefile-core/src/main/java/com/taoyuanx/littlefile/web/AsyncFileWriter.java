@@ -0,0 +1,116 @@
+package com.taoyuanx.littlefile.web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @author dushitaoyuan
+ * @desc 非阻塞文件及内存数据输出(Servlet 3.1 WriteListener), 仅在连接可写时写出, 慢速客户端不占用线程
+ * @date 2026/10/18
+ */
+public class AsyncFileWriter implements WriteListener {
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncFileWriter.class);
+    private final AsyncContext asyncContext;
+    private final ServletOutputStream out;
+    private final FileChannel channel;
+    private final ByteBuffer data;
+    private final byte[] buffer;
+    private final ByteBuffer byteBuffer;
+    private long position;
+    private long remaining;
+    private boolean closed = false;
+
+    private AsyncFileWriter(AsyncContext asyncContext, ServletOutputStream out, FileChannel channel, ByteBuffer data,
+                            long position, long count) {
+        this.asyncContext = asyncContext;
+        this.out = out;
+        this.channel = channel;
+        this.data = data;
+        this.position = position;
+        this.remaining = count;
+        this.buffer = FileTransfer.borrowBuffer();
+        this.byteBuffer = ByteBuffer.wrap(buffer);
+    }
+
+    /**
+     * 开始非阻塞输出文件区间,输出完成或出错后结束异步请求
+     *
+     * @param asyncContext 异步请求上下文
+     * @param file         文件
+     * @param position     起始位置
+     * @param count        输出字节数
+     */
+    public static void start(AsyncContext asyncContext, File file, long position, long count) throws IOException {
+        ServletOutputStream out = asyncContext.getResponse().getOutputStream();
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        out.setWriteListener(new AsyncFileWriter(asyncContext, out, channel, null, position, count));
+    }
+
+    /**
+     * 开始非阻塞输出内存数据,输出完成或出错后结束异步请求
+     *
+     * @param asyncContext 异步请求上下文
+     * @param data         数据,从当前位置输出到limit
+     */
+    public static void start(AsyncContext asyncContext, ByteBuffer data) throws IOException {
+        ServletOutputStream out = asyncContext.getResponse().getOutputStream();
+        out.setWriteListener(new AsyncFileWriter(asyncContext, out, null, data, 0, data.remaining()));
+    }
+
+    @Override
+    public void onWritePossible() throws IOException {
+        while (out.isReady()) {
+            if (remaining <= 0) {
+                close();
+                asyncContext.complete();
+                return;
+            }
+            byteBuffer.clear();
+            byteBuffer.limit((int) Math.min(buffer.length, remaining));
+            int len;
+            if (channel != null) {
+                len = channel.read(byteBuffer, position);
+                if (len < 0) {
+                    throw new EOFException("file truncated at " + position);
+                }
+            } else {
+                len = byteBuffer.remaining();
+                data.get(buffer, 0, len);
+            }
+            out.write(buffer, 0, len);
+            position += len;
+            remaining -= len;
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        LOG.debug("async write error", t);
+        close();
+        asyncContext.complete();
+    }
+
+    private void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+        }
+        FileTransfer.returnBuffer(buffer);
+    }
+}
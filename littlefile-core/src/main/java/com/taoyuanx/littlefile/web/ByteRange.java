@@ -0,0 +1,154 @@
+package com.taoyuanx.littlefile.web;
+
+import com.taoyuanx.littlefile.util.Utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @author dushitaoyuan
+ * @desc 断点下载 Range 区间(闭区间), 按 RFC 7233 解析
+ * @date 2026/10/18
+ */
+public class ByteRange {
+    /**
+     * Range header 格式:bytes=
+     * 1. 500-1000：指定开始和结束的范围，一般用于多线程下载。
+     * 2. 500- ：指定开始区间，一直传递到结束。这个就比较适用于断点续传、或者在线播放等等。
+     * 3. -500：无开始区间，只意思是需要最后 500 bytes 的内容实体。
+     * 4. 100-300,1000-3000：指定多个范围, pdf阅读器及多线程下载工具会使用
+     */
+    private static final String BYTES_UNIT = "bytes=";
+    private static final Pattern RANGE_SPEC = Pattern.compile("^(\\d*)-(\\d*)$");
+    /**
+     * 合并后最多允许的区间个数,防止大量小区间造成的放大攻击
+     */
+    public static final int MAX_RANGES = 64;
+    public static final String CONTENTRANGE_FMT = "bytes %s-%s/%s";
+    public static final String CONTENTRANGE_UNSATISFIED_FMT = "bytes */%s";
+
+    private final long start;
+    private final long end;
+
+    public ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * 解析 Range header
+     *
+     * @param range    Range header
+     * @param fileSize 文件大小
+     * @return null 格式非法(应忽略Range), 空集合 区间无法满足(416), 否则为排序合并后的区间
+     */
+    public static List<ByteRange> parse(String range, long fileSize) {
+        if (Utils.isEmpty(range) || !range.startsWith(BYTES_UNIT)) {
+            return null;
+        }
+        String[] specs = range.substring(BYTES_UNIT.length()).split(",");
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            Matcher matcher = RANGE_SPEC.matcher(spec.trim());
+            if (!matcher.matches()) {
+                return null;
+            }
+            String first = matcher.group(1), last = matcher.group(2);
+            long start, end;
+            try {
+                if (first.isEmpty()) {
+                    // -500 最后500字节
+                    if (last.isEmpty()) {
+                        return null;
+                    }
+                    long suffix = Long.parseLong(last);
+                    if (suffix == 0 || fileSize == 0) {
+                        continue;
+                    }
+                    start = Math.max(0, fileSize - suffix);
+                    end = fileSize - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                    if (end < start) {
+                        return null;
+                    }
+                    if (start >= fileSize) {
+                        continue;
+                    }
+                    end = Math.min(end, fileSize - 1);
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            ranges.add(new ByteRange(start, end));
+        }
+        return merge(ranges);
+    }
+
+    /**
+     * 合并重叠及相邻区间
+     */
+    public static List<ByteRange> merge(List<ByteRange> ranges) {
+        if (ranges.size() <= 1) {
+            return ranges;
+        }
+        List<ByteRange> sorted = new ArrayList<>(ranges);
+        Collections.sort(sorted, Comparator.comparingLong(ByteRange::getStart));
+        List<ByteRange> merged = new ArrayList<>(sorted.size());
+        ByteRange current = sorted.get(0);
+        for (int i = 1; i < sorted.size(); i++) {
+            ByteRange next = sorted.get(i);
+            if (next.start <= current.end + 1) {
+                current = new ByteRange(current.start, Math.max(current.end, next.end));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public long getLength() {
+        return end - start + 1;
+    }
+
+    public String toContentRange(long fileSize) {
+        return String.format(CONTENTRANGE_FMT, start, end, fileSize);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ByteRange)) {
+            return false;
+        }
+        ByteRange other = (ByteRange) o;
+        return start == other.start && end == other.end;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(start) * 31 + Long.hashCode(end);
+    }
+
+    @Override
+    public String toString() {
+        return start + "-" + end;
+    }
+}
@@ -0,0 +1,76 @@
+package com.taoyuanx.littlefile.web;
+
+import com.taoyuanx.littlefile.cache.CacheEntry;
+import com.taoyuanx.littlefile.util.Utils;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * @author dushitaoyuan
+ * @desc 条件请求处理 If-None-Match/If-Modified-Since/If-Range (RFC 7232, RFC 7233)
+ * @date 2026/10/18
+ */
+public class ConditionalUtil {
+
+    /**
+     * 客户端缓存是否仍然有效,有效时应响应304
+     * If-None-Match 存在时忽略 If-Modified-Since,后端未提供修改时间时不比较日期
+     */
+    public static boolean isNotModified(HttpServletRequest req, CacheEntry entry) {
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (Utils.isNotEmpty(ifNoneMatch)) {
+            return matchAny(ifNoneMatch, entry);
+        }
+        long ifModifiedSince = getDateHeader(req, "If-Modified-Since");
+        if (ifModifiedSince < 0 || entry.getLastModified() < 0) {
+            return false;
+        }
+        //http 日期精度为秒
+        return entry.getLastModified() / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * If-Range 校验,不通过时应忽略Range输出完整文件,无校验信息时不通过
+     */
+    public static boolean isRangeValid(HttpServletRequest req, CacheEntry entry) {
+        String ifRange = req.getHeader("If-Range");
+        if (Utils.isEmpty(ifRange)) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            //If-Range 使用强比较
+            return ifRange.equals(entry.getETag());
+        }
+        long date = getDateHeader(req, "If-Range");
+        return date >= 0 && entry.getLastModified() >= 0 && entry.getLastModified() / 1000 == date / 1000;
+    }
+
+    /**
+     * If-None-Match 弱比较,gzip副本与原文件内容相同,均视为匹配
+     */
+    private static boolean matchAny(String ifNoneMatch, CacheEntry entry) {
+        if ("*".equals(ifNoneMatch.trim())) {
+            return true;
+        }
+        String etag = entry.getETag(), gzipEtag = entry.getGzipETag();
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (etag != null && (tag.equals(etag) || tag.equals(gzipEtag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long getDateHeader(HttpServletRequest req, String name) {
+        try {
+            return req.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+}
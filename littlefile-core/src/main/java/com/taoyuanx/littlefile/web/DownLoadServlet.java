@@ -21,9 +21,22 @@ public class DownLoadServlet extends HttpServlet {
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        //异步处理需要servlet配置 async-supported
+        if (fileHandler.isAsync() && req.isAsyncSupported()) {
+            fileHandler.handleFileAsync(resp, req);
+            return;
+        }
         fileHandler.handleFile(resp, req);
     }
 
+    /**
+     * HEAD 请求根据缓存元信息响应,不输出文件内容
+     */
+    @Override
+    protected void doHead(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        doGet(req, resp);
+    }
+
     @Override
     public void init(ServletConfig config) throws ServletException {
         LittleFileConfig littleFileConfig = new LittleFileConfig(config.getInitParameter(Constant.LITTLEFILE_CONF));
@@ -52,10 +65,28 @@ public class DownLoadServlet extends HttpServlet {
         } else {
             fileHandler = new FileHandler(absloulteCacheFileDIR, littleFileConfig.getFileDownStrategy(absloulteCacheFileDIR), gzip, url_format);
         }
-        fileClean = littleFileConfig.getFileClean(absloulteCacheFileDIR);
+        fileHandler.setFillTimeout(littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_FILL_TIMEOUT));
+        fileHandler.setStreamThrough(littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_STREAM_THROUGH),
+                littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_FILL_THREAD_NUM));
+        fileHandler.setAsync(littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_ASYNC),
+                littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_FILL_THREAD_NUM));
+        fileHandler.setSparseBlockSize(littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_SPARSE_BLOCK_KB));
+        fileHandler.setMemoryCache(littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_MEMORY_CACHE_MB),
+                littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_MEMORY_OBJECT_KB));
+        fileHandler.setAdmissionThreshold(littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_ADMISSION_THRESHOLD));
+        fileHandler.setNegativeCache(littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_NEGATIVE_CACHE_TIME),
+                littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_NEGATIVE_CACHE_SIZE));
+        fileHandler.setIoExecutor(littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_IO_THREAD_NUM),
+                littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_IO_QUEUE_SIZE));
+        fileHandler.setPrefetch(littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_PREFETCH_THREAD_NUM),
+                littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_PREFETCH_ON_SIGN));
+        fileClean = littleFileConfig.getFileClean(absloulteCacheFileDIR, fileHandler.getCacheIndex());
         if (fileClean != null) {
             fileClean.start();
+            fileHandler.setFileClean(fileClean);
         }
+        fileHandler.warmUp(littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_WARMUP_COUNT),
+                littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_WARMUP_FILE));
     }
 
     @Override
@@ -63,6 +94,9 @@ public class DownLoadServlet extends HttpServlet {
         if (fileClean != null) {
             fileClean.stop();
         }
+        if (fileHandler != null) {
+            fileHandler.destroy();
+        }
     }
 
 }
@@ -1,26 +1,54 @@
 package com.taoyuanx.littlefile.web;
 
+import com.taoyuanx.littlefile.cache.AdmissionFilter;
+import com.taoyuanx.littlefile.cache.CacheEntry;
+import com.taoyuanx.littlefile.clean.FileClean;
+import com.taoyuanx.littlefile.cache.CacheIndex;
+import com.taoyuanx.littlefile.cache.CacheManifest;
+import com.taoyuanx.littlefile.cache.FileFill;
+import com.taoyuanx.littlefile.cache.FileFillRegistry;
+import com.taoyuanx.littlefile.cache.GzipCompressor;
+import com.taoyuanx.littlefile.cache.MemoryCache;
+import com.taoyuanx.littlefile.cache.MemoryCache.MemoryEntry;
+import com.taoyuanx.littlefile.cache.NegativeCache;
+import com.taoyuanx.littlefile.cache.Prefetcher;
+import com.taoyuanx.littlefile.cache.SparseCache;
+import com.taoyuanx.littlefile.cache.SparseFile;
 import com.taoyuanx.littlefile.fdfs.FdfsUtil;
+import com.taoyuanx.littlefile.support.BackendFileNotFoundException;
 import com.taoyuanx.littlefile.support.FileDownStrategy;
+import com.taoyuanx.littlefile.support.FillTask;
+import com.taoyuanx.littlefile.support.impl.BulkheadStrategy;
 import com.taoyuanx.littlefile.util.Utils;
 import com.taoyuanx.littlefile.web.security.AbstractSimpleTokenManager;
 import com.taoyuanx.littlefile.web.security.TokenException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.*;
+import java.net.URLConnection;
 import java.net.URLEncoder;
-import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
-import java.util.regex.Pattern;
-import java.util.zip.GZIPOutputStream;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author dushitaoyuan
@@ -37,6 +65,20 @@ public class FileHandler {
      * tokenManager token生成器
      * tokenExpire token过期时间
      * urlFmt 授权url模板 如:http://localhost:8080/down?token=%s
+     * fileFillRegistry 缓存填充合并,同一文件并发未命中时只下载一次
+     * streamThrough 是否边下载边响应,开启后缓存未命中时无需等待文件下载完成
+     * async 是否异步处理(Servlet 3.1 AsyncContext + WriteListener)
+     * fillExecutor 边下载边响应及异步模式下的文件下载线程池
+     * gzipCompressor gzip预压缩,开启gzip时由后台生成压缩副本
+     * cacheIndex 缓存文件元信息,用于ETag及HEAD请求
+     * sparseCache 稀疏缓存,断点下载时按块下载,需下载策略支持范围下载
+     * memoryCache 内存缓存,缓存小而热的文件
+     * fileClean 缓存清理,填充前检查磁盘水位
+     * admissionFilter 磁盘缓存准入,未准入的文件直接从后端输出
+     * negativeCache 不存在文件缓存,一段时间内不再请求后端,直接响应404
+     * ioExecutor 后端下载线程池,设置后缓存填充异步下载,不占用请求线程及填充线程,队列满时响应503
+     * prefetcher 缓存预取,prefetchOnSign 生成签名url时后台预取
+     * warmUpCount hotFile 启动预热文件数及预热列表文件,停止时记录最近访问的文件
      */
     //文件处理类型: 0下载,1查看 2断点续传
     public static final String DOWN = "0",
@@ -50,7 +92,27 @@ public class FileHandler {
     private Long tokenExpire;
     private String urlFmt;
     private boolean tokenOpen = true;
-    private Integer buffSize = 1024 * 1024 * 4;
+    private FileFillRegistry fileFillRegistry = new FileFillRegistry();
+    private boolean streamThrough = false;
+    private boolean async = false;
+    private ExecutorService fillExecutor;
+    private static final String FILL_FILE_SUFFIX = ".fill";
+    private GzipCompressor gzipCompressor;
+    private CacheIndex cacheIndex = new CacheIndex();
+    private SparseCache sparseCache;
+    private MemoryCache memoryCache;
+    private FileClean fileClean;
+    private AdmissionFilter admissionFilter;
+    private NegativeCache negativeCache;
+    private ExecutorService ioExecutor;
+    private Prefetcher prefetcher;
+    private boolean prefetchOnSign = false;
+    private int warmUpCount = 0;
+    private File hotFile;
+    /**
+     * 准入过滤跟踪的文件个数
+     */
+    private static final int ADMISSION_TRACK_SIZE = 100000;
 
     public FileHandler(String cacheDir, FileDownStrategy fileDownStrategy,
                        boolean isGzip, AbstractSimpleTokenManager tokenManager, Long tokenExpire, String urlFmt) {
@@ -61,6 +123,7 @@ public class FileHandler {
         this.tokenManager = tokenManager;
         this.tokenExpire = tokenExpire;
         this.urlFmt = urlFmt + "?s=%s";
+        initGzip();
     }
 
     public FileHandler(String cacheDir, FileDownStrategy fileDownStrategy,
@@ -71,6 +134,13 @@ public class FileHandler {
         this.isGzip = isGzip;
         tokenOpen = false;
         this.urlFmt = urlFmt + "?f=%s&t=%s";
+        initGzip();
+    }
+
+    private void initGzip() {
+        if (isGzip) {
+            gzipCompressor = new GzipCompressor();
+        }
     }
 
     /**
@@ -80,66 +150,482 @@ public class FileHandler {
      * @param req
      */
     public void handleFile(HttpServletResponse resp, HttpServletRequest req) {
-        String type = null, filePath = null;
+        String filePath = null;
+        FileFill followed = null;
         try {
-            if (tokenOpen) {
-                String token = req.getParameter(Constant.REQUEST_PARAM_TOKEN_KEY);
-                if (Utils.isEmpty(token)) {
-                    throw new TokenException("operation not allowed");
-                }
-                Map<String, Object> signData = tokenManager.vafy(token);
-                type = (String) signData.get(Constant.REQUEST_PARAM_TYPE_KEY);
-                filePath = (String) signData.get(Constant.REQUEST_PARAM_FILE_KEY);
-            } else {
-                type = req.getParameter(Constant.REQUEST_PARAM_TYPE_KEY);
-                filePath = req.getParameter(Constant.REQUEST_PARAM_FILE_KEY);
+            String[] typeAndPath = resolveRequest(req);
+            String type = typeAndPath[0];
+            filePath = typeAndPath[1];
+            boolean head = "HEAD".equalsIgnoreCase(req.getMethod());
+            //内存缓存命中,不访问文件系统
+            MemoryEntry memoryEntry = memoryHit(req, type, filePath);
+            if (memoryEntry != null) {
+                serveMemory(req, resp, type, filePath, memoryEntry, head, null);
+                return;
             }
             File absoluteFile = new File(cacheDir, filePath);
             //文件不存在或损坏,下载
-            if (!Utils.isFileNotBad(absoluteFile)) {
-                //父级目录不存在,创建
-                File parentFile = absoluteFile.getParentFile();
-                if (!parentFile.exists()) {
-                    parentFile.mkdirs();
+            FileFill fill = null;
+            if (!isCached(filePath, absoluteFile)) {
+                checkMissing(filePath);
+                File sourceFile = sourceFile(req, filePath);
+                if (sourceFile != null) {
+                    serveSource(req, resp, type, filePath, sourceFile, head, null);
+                    return;
                 }
-                String dest = absoluteFile.getAbsolutePath();
-                LOG.debug("download file:[{}] local path:[{}]", filePath, dest);
-                fileDownStrategy.down(filePath, dest);
-            }
-            switch (type) {
-                case LOOK: {// 查看
-                    resp.setContentType(req.getServletContext().getMimeType(absoluteFile.getName()));
+                //断点下载只下载请求区间内缺失的块
+                SparseFile sparse = BYTE_RANGE_DOWN.equals(type) ? openSparse(filePath, absoluteFile) : null;
+                if (sparse != null) {
+                    serveSparse(req, resp, absoluteFile, sparse, head);
+                    return;
                 }
-                break;
-                case DOWN: {// 下载
-                    resp.setContentType(req.getServletContext().getMimeType(absoluteFile.getName()));
-                    resp.setHeader("Content-type", "application/octet-stream");
-                    resp.setHeader("Content-Disposition",
-                            "attachment;fileName=" + URLEncoder.encode(FdfsUtil.getFileName(filePath), "UTF-8"));
-                    resp.setContentType(req.getServletContext().getMimeType(absoluteFile.getName()));
+                if (isBypass(type, filePath, head)) {
+                    serveDirect(req, resp, type, filePath);
+                    return;
+                }
+                if (!streamThrough) {
+                    absoluteFile = fillCache(filePath, absoluteFile);
+                } else if (head || BYTE_RANGE_DOWN.equals(type)) {
+                    //HEAD及断点下载需要完整文件
+                    followed = fillCacheAsync(filePath, absoluteFile);
+                    absoluteFile = fileFillRegistry.await(followed);
+                } else {
+                    fill = followed = fillCacheAsync(filePath, absoluteFile);
+                }
+            }
+            serve(req, resp, type, filePath, absoluteFile, fill, head, null);
+        } catch (Exception e) {
+            handleError(resp, req, e, filePath);
+        } finally {
+            //客户端断开时最后一个跟随的请求离开,取消下载
+            if (followed != null) {
+                followed.unfollow();
+            }
+        }
+
+    }
 
+    /**
+     * 异步文件处理(Servlet 3.1),容器线程立即返回:
+     * 缓存未命中时在下载线程池中填充,完成后由 WriteListener 在连接可写时输出
+     *
+     * @param resp
+     * @param req
+     */
+    public void handleFileAsync(HttpServletResponse resp, HttpServletRequest req) {
+        AsyncContext asyncContext = req.startAsync();
+        //慢速客户端的传输时间不确定,由连接超时控制
+        asyncContext.setTimeout(0);
+        String filePath = null;
+        try {
+            String[] typeAndPath = resolveRequest(req);
+            String type = typeAndPath[0];
+            filePath = typeAndPath[1];
+            boolean head = "HEAD".equalsIgnoreCase(req.getMethod());
+            MemoryEntry memoryEntry = memoryHit(req, type, filePath);
+            if (memoryEntry != null) {
+                if (!serveMemory(req, resp, type, filePath, memoryEntry, head, asyncContext)) {
+                    asyncContext.complete();
                 }
-                break;
-                case BYTE_RANGE_DOWN: {
-                    handleByteRange(req, resp, absoluteFile, isGzip);
+                return;
+            }
+            File absoluteFile = new File(cacheDir, filePath);
+            if (isCached(filePath, absoluteFile)) {
+                serveAsync(asyncContext, type, filePath, absoluteFile, head);
+                return;
+            }
+            checkMissing(filePath);
+            File sourceFile = sourceFile(req, filePath);
+            if (sourceFile != null) {
+                if (!serveSource(req, resp, type, filePath, sourceFile, head, asyncContext)) {
+                    asyncContext.complete();
                 }
                 return;
             }
-            //gzip 压缩
-            if (isGzip) {
-                resp.setHeader("Content-Encoding", "gzip");
-                GZIPOutputStream gzip = new GZIPOutputStream(resp.getOutputStream());
-                handle(gzip, absoluteFile);
-                gzip.close();
-            } else {
-                ServletOutputStream out = resp.getOutputStream();
-                handle(out, absoluteFile);
-                out.flush();
+            String path = filePath;
+            if (BYTE_RANGE_DOWN.equals(type) && sparseCache != null) {
+                //稀疏缓存按块下载并输出,在下载线程池中执行
+                fillExecutor.execute(() -> serveSparseAsync(asyncContext, path, absoluteFile, head));
+                return;
+            }
+            if (isBypass(type, filePath, head)) {
+                fillExecutor.execute(() -> {
+                    try {
+                        serveDirect(req, resp, type, path);
+                    } catch (Exception e) {
+                        handleError(resp, req, e, path);
+                    } finally {
+                        asyncContext.complete();
+                    }
+                });
+                return;
             }
+            FileFill fill = fillCacheAsync(filePath, absoluteFile);
+            Runnable unfollow = unfollowOnce(fill);
+            asyncContext.addListener(new AsyncListener() {
+                @Override
+                public void onComplete(AsyncEvent event) {
+                }
+
+                @Override
+                public void onTimeout(AsyncEvent event) {
+                }
+
+                @Override
+                public void onError(AsyncEvent event) {
+                    //等待下载期间客户端断开
+                    unfollow.run();
+                }
+
+                @Override
+                public void onStartAsync(AsyncEvent event) {
+                }
+            });
+            fill.getFuture().whenComplete((file, ex) -> {
+                unfollow.run();
+                if (ex != null) {
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    handleError(resp, req, cause instanceof Exception ? (Exception) cause : new Exception(cause), path);
+                    asyncContext.complete();
+                    return;
+                }
+                serveAsync(asyncContext, type, path, file, head);
+            });
         } catch (Exception e) {
             handleError(resp, req, e, filePath);
+            asyncContext.complete();
         }
+    }
+
+    /**
+     * 停止跟随填充,多次调用只生效一次
+     */
+    private static Runnable unfollowOnce(FileFill fill) {
+        AtomicBoolean left = new AtomicBoolean(false);
+        return () -> {
+            if (left.compareAndSet(false, true)) {
+                fill.unfollow();
+            }
+        };
+    }
 
+    private void serveAsync(AsyncContext asyncContext, String type, String filePath, File absoluteFile, boolean head) {
+        HttpServletRequest req = (HttpServletRequest) asyncContext.getRequest();
+        HttpServletResponse resp = (HttpServletResponse) asyncContext.getResponse();
+        try {
+            if (!serve(req, resp, type, filePath, absoluteFile, null, head, asyncContext)) {
+                asyncContext.complete();
+            }
+        } catch (Exception e) {
+            handleError(resp, req, e, filePath);
+            asyncContext.complete();
+        }
+    }
+
+    private void serveSparseAsync(AsyncContext asyncContext, String filePath, File absoluteFile, boolean head) {
+        HttpServletRequest req = (HttpServletRequest) asyncContext.getRequest();
+        HttpServletResponse resp = (HttpServletResponse) asyncContext.getResponse();
+        try {
+            SparseFile sparse = openSparse(filePath, absoluteFile);
+            if (sparse != null) {
+                serveSparse(req, resp, absoluteFile, sparse, head);
+                asyncContext.complete();
+                return;
+            }
+            //后端无法提供文件大小,下载完整文件
+            serveAsync(asyncContext, BYTE_RANGE_DOWN, filePath, fillCache(filePath, absoluteFile), head);
+        } catch (Exception e) {
+            handleError(resp, req, e, filePath);
+            asyncContext.complete();
+        }
+    }
+
+    /**
+     * 源文件在本机时直接输出的源文件,需要输出gzip副本时仍写入缓存目录(硬链接)
+     */
+    private File sourceFile(HttpServletRequest req, String filePath) throws Exception {
+        File sourceFile = fileDownStrategy.localFile(filePath);
+        if (sourceFile == null || isGzip && GzipPolicy.acceptGzip(req)
+                && GzipPolicy.isCompressible(req.getServletContext().getMimeType(sourceFile.getName()), sourceFile)) {
+            return null;
+        }
+        return sourceFile;
+    }
+
+    /**
+     * 直接输出本机源文件,不写入缓存目录及缓存索引
+     *
+     * @return 是否已开始非阻塞输出
+     */
+    private boolean serveSource(HttpServletRequest req, HttpServletResponse resp, String type, String filePath,
+                                File sourceFile, boolean head, AsyncContext asyncContext) throws Exception {
+        CacheEntry entry = CacheEntry.of(filePath, sourceFile);
+        if (isNotModified(req, resp, entry)) {
+            return false;
+        }
+        if (BYTE_RANGE_DOWN.equals(type)) {
+            return handleByteRange(req, resp, sourceFile, entry, head, asyncContext, null);
+        }
+        setTypeHeaders(req, resp, type, filePath, sourceFile.getName());
+        resp.setContentLengthLong(entry.getSize());
+        if (head) {
+            return false;
+        }
+        return transfer(req, resp, sourceFile, 0, entry.getSize(), asyncContext);
+    }
+
+    /**
+     * 缓存未命中的完整文件请求是否绕过缓存: 访问次数未达到准入次数
+     * HEAD及断点下载需要文件大小,仍写入缓存
+     */
+    private boolean isBypass(String type, String filePath, boolean head) {
+        return admissionFilter != null && !head && !BYTE_RANGE_DOWN.equals(type) && !admissionFilter.admit(filePath);
+    }
+
+    /**
+     * 未准入缓存的文件直接从后端输出,不写入缓存目录
+     */
+    private void serveDirect(HttpServletRequest req, HttpServletResponse resp, String type, String filePath) throws Exception {
+        LOG.debug("file [{}] not admitted, stream from backend", filePath);
+        setTypeHeaders(req, resp, type, filePath, FdfsUtil.getFileName(filePath));
+        ServletOutputStream out = resp.getOutputStream();
+        try {
+            fileDownStrategy.downStream(filePath, out);
+        } catch (BackendFileNotFoundException e) {
+            markMissing(filePath);
+            throw e;
+        }
+        out.flush();
+    }
+
+    private SparseFile openSparse(String filePath, File absoluteFile) throws Exception {
+        if (sparseCache == null || !fileDownStrategy.isRangeSupported(filePath)) {
+            return null;
+        }
+        try {
+            return sparseCache.open(filePath, absoluteFile);
+        } catch (BackendFileNotFoundException e) {
+            markMissing(filePath);
+            throw e;
+        }
+    }
+
+    /**
+     * 文件近期已确认不存在,不请求后端
+     */
+    private void checkMissing(String filePath) throws BackendFileNotFoundException {
+        if (negativeCache != null && negativeCache.isMissing(filePath)) {
+            throw new BackendFileNotFoundException("file " + filePath + " not found");
+        }
+    }
+
+    private void markMissing(String filePath) {
+        if (negativeCache != null) {
+            negativeCache.put(filePath);
+        }
+    }
+
+    /**
+     * 稀疏缓存断点下载,按块边下载边输出
+     */
+    private void serveSparse(HttpServletRequest req, HttpServletResponse resp, File absoluteFile, SparseFile sparse,
+                             boolean head) throws Exception {
+        CacheEntry entry = sparse.getEntry();
+        if (isNotModified(req, resp, entry)) {
+            return;
+        }
+        handleByteRange(req, resp, absoluteFile, entry, head, null, sparse);
+    }
+
+    /**
+     * 设置ETag及Last-Modified,客户端缓存有效时响应304,后端未提供校验信息时不设置
+     */
+    private boolean isNotModified(HttpServletRequest req, HttpServletResponse resp, CacheEntry entry) {
+        if (entry.getETag() != null) {
+            resp.setHeader("ETag", entry.getETag());
+        }
+        if (entry.getLastModified() >= 0) {
+            resp.setDateHeader("Last-Modified", entry.getLastModified());
+        }
+        if (ConditionalUtil.isNotModified(req, entry)) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 解析请求参数
+     *
+     * @return [文件处理类型, 文件路径]
+     */
+    private String[] resolveRequest(HttpServletRequest req) throws Exception {
+        if (tokenOpen) {
+            String token = req.getParameter(Constant.REQUEST_PARAM_TOKEN_KEY);
+            if (Utils.isEmpty(token)) {
+                throw new TokenException("operation not allowed");
+            }
+            Map<String, Object> signData = tokenManager.vafy(token);
+            return new String[]{(String) signData.get(Constant.REQUEST_PARAM_TYPE_KEY),
+                    (String) signData.get(Constant.REQUEST_PARAM_FILE_KEY)};
+        }
+        return new String[]{req.getParameter(Constant.REQUEST_PARAM_TYPE_KEY),
+                req.getParameter(Constant.REQUEST_PARAM_FILE_KEY)};
+    }
+
+    /**
+     * 输出文件
+     *
+     * @param fill         正在进行的填充,边下载边响应时不为空
+     * @param asyncContext 异步请求上下文,不为空时非阻塞输出
+     * @return 是否已开始非阻塞输出(由 WriteListener 结束请求)
+     */
+    private boolean serve(HttpServletRequest req, HttpServletResponse resp, String type, String filePath,
+                          File absoluteFile, FileFill fill, boolean head, AsyncContext asyncContext) throws Exception {
+        CacheEntry entry = null;
+        if (fill == null) {
+            entry = cacheIndex.load(filePath, absoluteFile);
+            if (isNotModified(req, resp, entry)) {
+                return false;
+            }
+        }
+        if (BYTE_RANGE_DOWN.equals(type)) {
+            return handleByteRange(req, resp, absoluteFile, entry, head, asyncContext, null);
+        }
+        setTypeHeaders(req, resp, type, filePath, absoluteFile.getName());
+        if (fill != null) {
+            //边下载边响应,不压缩
+            ServletOutputStream out = resp.getOutputStream();
+            handle(out, absoluteFile, fill);
+            out.flush();
+            return false;
+        }
+        //HEAD 请求仅根据缓存元信息响应
+        if (head) {
+            resp.setContentLengthLong(entry.getSize());
+            return false;
+        }
+        File body = absoluteFile;
+        //gzip 压缩,仅输出后台预先压缩好的副本
+        if (isGzip && GzipPolicy.isCompressible(req.getServletContext().getMimeType(absoluteFile.getName()), absoluteFile)) {
+            resp.addHeader("Vary", "Accept-Encoding");
+            if (GzipPolicy.acceptGzip(req)) {
+                File sidecar = gzipCompressor.getSidecar(absoluteFile);
+                if (sidecar != null) {
+                    resp.setHeader("Content-Encoding", "gzip");
+                    if (entry.getGzipETag() != null) {
+                        resp.setHeader("ETag", entry.getGzipETag());
+                    }
+                    body = sidecar;
+                }
+            }
+        }
+        //小文件放入内存缓存,后续请求不再访问文件系统
+        if (memoryCache != null && body == absoluteFile && memoryCache.isAdmissible(entry)) {
+            memoryCache.put(entry, absoluteFile);
+        }
+        //完整文件且无需转换,容器支持sendfile时零拷贝输出
+        long fileSize = body.length();
+        resp.setContentLengthLong(fileSize);
+        return transfer(req, resp, body, 0, fileSize, asyncContext);
+    }
+
+    private void setTypeHeaders(HttpServletRequest req, HttpServletResponse resp, String type, String filePath,
+                                String name) throws UnsupportedEncodingException {
+        switch (type) {
+            case LOOK: {// 查看
+                resp.setContentType(req.getServletContext().getMimeType(name));
+            }
+            break;
+            case DOWN: {// 下载
+                resp.setContentType(req.getServletContext().getMimeType(name));
+                resp.setHeader("Content-type", "application/octet-stream");
+                resp.setHeader("Content-Disposition",
+                        "attachment;fileName=" + URLEncoder.encode(FdfsUtil.getFileName(filePath), "UTF-8"));
+                resp.setContentType(req.getServletContext().getMimeType(name));
+
+            }
+            break;
+        }
+    }
+
+    /**
+     * 内存缓存查询,断点下载及需要输出gzip副本时不使用内存缓存
+     */
+    private MemoryEntry memoryHit(HttpServletRequest req, String type, String filePath) {
+        if (memoryCache == null || BYTE_RANGE_DOWN.equals(type)) {
+            return null;
+        }
+        MemoryEntry memoryEntry = memoryCache.get(filePath);
+        if (memoryEntry == null || isGzip && GzipPolicy.acceptGzip(req) && isCompressible(req, memoryEntry.getEntry())) {
+            return null;
+        }
+        //记录磁盘缓存访问,避免热点文件被淘汰
+        cacheIndex.get(filePath);
+        return memoryEntry;
+    }
+
+    private boolean isCompressible(HttpServletRequest req, CacheEntry entry) {
+        String name = FdfsUtil.getFileName(entry.getKey());
+        return GzipPolicy.isCompressible(req.getServletContext().getMimeType(name), name, entry.getSize());
+    }
+
+    /**
+     * 输出内存缓存中的文件
+     *
+     * @return 是否已开始非阻塞输出
+     */
+    private boolean serveMemory(HttpServletRequest req, HttpServletResponse resp, String type, String filePath,
+                                MemoryEntry memoryEntry, boolean head, AsyncContext asyncContext) throws Exception {
+        CacheEntry entry = memoryEntry.getEntry();
+        if (isNotModified(req, resp, entry)) {
+            return false;
+        }
+        setTypeHeaders(req, resp, type, filePath, FdfsUtil.getFileName(filePath));
+        if (isGzip && isCompressible(req, entry)) {
+            resp.addHeader("Vary", "Accept-Encoding");
+        }
+        resp.setContentLengthLong(entry.getSize());
+        if (head) {
+            return false;
+        }
+        if (asyncContext != null) {
+            AsyncFileWriter.start(asyncContext, memoryEntry.getData());
+            return true;
+        }
+        ServletOutputStream out = resp.getOutputStream();
+        FileTransfer.write(memoryEntry.getData(), out);
+        out.flush();
+        return false;
+    }
+
+    /**
+     * 输出文件区间,异步请求时非阻塞输出,否则容器支持sendfile时零拷贝输出,不支持时缓冲区复制
+     *
+     * @return 是否已开始非阻塞输出
+     */
+    private boolean transfer(HttpServletRequest req, HttpServletResponse resp, File file, long position, long count,
+                             AsyncContext asyncContext) throws IOException {
+        if (asyncContext != null) {
+            AsyncFileWriter.start(asyncContext, file, position, count);
+            return true;
+        }
+        FileTransfer.transfer(req, resp, file, position, count);
+        return false;
+    }
+
+    /**
+     * 输出断点下载区间,稀疏缓存时逐块下载并阻塞输出
+     */
+    private boolean transferRange(HttpServletRequest req, HttpServletResponse resp, File file, SparseFile sparse,
+                                  long position, long count, AsyncContext asyncContext) throws Exception {
+        if (sparse == null) {
+            return transfer(req, resp, file, position, count, asyncContext);
+        }
+        ServletOutputStream out = resp.getOutputStream();
+        sparse.transferTo(position, count, Channels.newChannel(out));
+        out.flush();
+        return false;
     }
 
     /**
@@ -153,7 +639,9 @@ public class FileHandler {
         Map<String, Object> signMap = new HashMap<>();
         signMap.put(Constant.REQUEST_PARAM_FILE_KEY, fileUrl);
         signMap.put(Constant.REQUEST_PARAM_TYPE_KEY, handleType);
-        return String.format(urlFmt, tokenManager.create(signMap, tokenExpire, TimeUnit.MINUTES));
+        String url = String.format(urlFmt, tokenManager.create(signMap, tokenExpire, TimeUnit.MINUTES));
+        prefetchOnSign(fileUrl);
+        return url;
     }
 
     /**
@@ -167,7 +655,77 @@ public class FileHandler {
         Map<String, Object> signMap = new HashMap<>();
         signMap.put(Constant.REQUEST_PARAM_FILE_KEY, fileUrl);
         signMap.put(Constant.REQUEST_PARAM_TYPE_KEY, handleType);
-        return String.format(urlFmt, tokenManager.create(signMap, expire, timeUnit));
+        String url = String.format(urlFmt, tokenManager.create(signMap, expire, timeUnit));
+        prefetchOnSign(fileUrl);
+        return url;
+    }
+
+    /**
+     * 签名url通常几秒内就会被访问,提前在后台下载
+     */
+    private void prefetchOnSign(String filePath) {
+        if (prefetchOnSign) {
+            getPrefetcher().prefetch(Collections.singletonList(filePath));
+        }
+    }
+
+    /**
+     * 后台预取文件到缓存,已缓存的跳过
+     * 预取线程数有限且为最低优先级,实时请求填充较多时暂停
+     *
+     * @param paths 文件路径
+     * @return 预取进度
+     */
+    public Prefetcher.Progress prefetch(Collection<String> paths) {
+        return getPrefetcher().prefetch(paths);
+    }
+
+    /**
+     * 启动预热: 预取上次停止时最近访问的文件,本次停止时记录最近访问的文件
+     *
+     * @param count   预热文件数,0 不开启
+     * @param hotFile 预热列表文件,为空时保存在缓存目录,缓存目录不保留时(如重新部署)应配置到其他目录
+     * @return 预热进度,未开启或没有预热列表时返回null
+     */
+    public Prefetcher.Progress warmUp(int count, String hotFile) {
+        if (count <= 0) {
+            return null;
+        }
+        this.warmUpCount = count;
+        this.hotFile = Utils.isNotEmpty(hotFile) ? new File(hotFile) : new File(cacheDir, Prefetcher.HOT_FILE_NAME);
+        try {
+            List<String> paths = Prefetcher.loadHot(this.hotFile, count);
+            if (!paths.isEmpty()) {
+                LOG.info("warm up {} files from {}", paths.size(), this.hotFile);
+                return prefetch(paths);
+            }
+        } catch (IOException e) {
+            LOG.warn("read warm up file [{}] error {}", this.hotFile, e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * 预取单个文件,本机源文件及已缓存的文件跳过
+     *
+     * @return 是否从后端下载
+     */
+    private boolean prefetchFile(String filePath) throws Exception {
+        File absoluteFile = new File(cacheDir, filePath);
+        if (isCached(filePath, absoluteFile) || fileDownStrategy.localFile(filePath) != null) {
+            return false;
+        }
+        checkMissing(filePath);
+        //后端名额已满时直接放弃,不与实时请求争抢排队
+        BulkheadStrategy.noWait(() -> fillCache(filePath, absoluteFile));
+        return true;
+    }
+
+    private synchronized Prefetcher getPrefetcher() {
+        if (prefetcher == null) {
+            prefetcher = new Prefetcher(this::prefetchFile, fileFillRegistry::getInFlightCount, Prefetcher.THREAD_NUM_DEFAULT);
+        }
+        return prefetcher;
     }
 
     /**
@@ -182,21 +740,210 @@ public class FileHandler {
     }
 
 
-    private void handle(OutputStream out, File localFile) throws Exception {
-        FileChannel channel = new FileInputStream(localFile).getChannel();
-        ByteBuffer buffer = ByteBuffer.allocate(buffSize);
-        int len = 0;
-        while ((len = channel.read(buffer)) > 0) {
-            buffer.flip();
-            out.write(buffer.array(), 0, len);
-            buffer.clear();
+    /**
+     * 填充缓存,同一文件同时只有一个请求下载,其余请求等待下载结果
+     *
+     * @param filePath     文件路径
+     * @param absoluteFile 本地缓存文件
+     * @return 本地缓存文件
+     */
+    private File fillCache(String filePath, File absoluteFile) throws Exception {
+        File fillFile = newFillFile(absoluteFile);
+        return fileFillRegistry.fill(absoluteFile.getAbsolutePath(), fillFile, () -> {
+            //等待期间可能已被其他请求填充完毕
+            if (isCached(filePath, absoluteFile)) {
+                return absoluteFile;
+            }
+            LOG.debug("download file:[{}] local path:[{}]", filePath, absoluteFile);
+            return download(filePath, absoluteFile, fillFile);
+        });
+    }
+
+    /**
+     * 异步填充缓存,下载过程中请求可跟随临时文件读取已下载部分
+     *
+     * @param filePath     文件路径
+     * @param absoluteFile 本地缓存文件
+     * @return 正在进行的填充,已跟随,离开时需调用 {@link FileFill#unfollow()}
+     */
+    private FileFill fillCacheAsync(String filePath, File absoluteFile) {
+        File fillFile = newFillFile(absoluteFile);
+        if (ioExecutor != null) {
+            return fileFillRegistry.fillAsync(absoluteFile.getAbsolutePath(), fillFile,
+                    () -> downloadAsync(filePath, absoluteFile, fillFile));
+        }
+        return fileFillRegistry.fillAsync(absoluteFile.getAbsolutePath(), fillFile, () -> {
+            if (isCached(filePath, absoluteFile)) {
+                return absoluteFile;
+            }
+            LOG.debug("stream download file:[{}] local path:[{}]", filePath, fillFile);
+            return download(filePath, absoluteFile, fillFile);
+        }, fillExecutor);
+    }
+
+    private File newFillFile(File absoluteFile) {
+        //父级目录不存在,创建
+        File parentFile = absoluteFile.getParentFile();
+        if (!parentFile.exists()) {
+            parentFile.mkdirs();
+        }
+        return new File(parentFile, absoluteFile.getName() + "." + UUID.randomUUID() + FILL_FILE_SUFFIX);
+    }
+
+    /**
+     * 文件先下载到临时文件,校验大小后原子重命名为缓存文件,最后写入清单,
+     * 任一步骤中断都不会留下被当作完整文件的缓存
+     */
+    private File download(String filePath, File absoluteFile, File fillFile) throws Exception {
+        if (fileClean != null) {
+            fileClean.awaitSpace(fileFillRegistry.getFillTimeout());
+        }
+        try {
+            CacheEntry meta;
+            try {
+                meta = fileDownStrategy.downWithMeta(filePath, fillFile.getAbsolutePath());
+            } catch (BackendFileNotFoundException e) {
+                markMissing(filePath);
+                throw e;
+            }
+            return finishFill(filePath, absoluteFile, fillFile, meta);
+        } finally {
+            fillFile.delete();
+        }
+    }
+
+    /**
+     * 异步下载,在后端下载线程池中执行,下载完成后在下载线程中校验并重命名,请求线程不等待
+     * 仅超过磁盘硬水位时在当前线程等待淘汰
+     */
+    private CompletableFuture<File> downloadAsync(String filePath, File absoluteFile, File fillFile) {
+        CompletableFuture<File> result = new CompletableFuture<>();
+        if (isCached(filePath, absoluteFile)) {
+            result.complete(absoluteFile);
+            return result;
+        }
+        CompletableFuture<CacheEntry> down;
+        try {
+            if (fileClean != null) {
+                fileClean.awaitSpace(fileFillRegistry.getFillTimeout());
+            }
+            LOG.debug("async download file:[{}] local path:[{}]", filePath, fillFile);
+            down = fileDownStrategy.downAsync(filePath, fillFile.getAbsolutePath(), ioExecutor);
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        down.whenComplete((meta, ex) -> {
+            try {
+                if (ex != null) {
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    if (cause instanceof BackendFileNotFoundException) {
+                        markMissing(filePath);
+                    }
+                    result.completeExceptionally(cause);
+                    return;
+                }
+                result.complete(finishFill(filePath, absoluteFile, fillFile, meta));
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            } finally {
+                fillFile.delete();
+            }
+        });
+        //取消填充时中止下载
+        result.whenComplete((file, ex) -> {
+            if (result.isCancelled()) {
+                down.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 校验下载的临时文件大小,原子重命名为缓存文件并写入清单
+     */
+    private File finishFill(String filePath, File absoluteFile, File fillFile, CacheEntry meta) throws Exception {
+        if (!fillFile.exists()) {
+            markMissing(filePath);
+            throw new BackendFileNotFoundException("file " + filePath + " not found");
+        }
+        long size = fillFile.length();
+        if (meta != null && meta.getSize() >= 0 && meta.getSize() != size) {
+            throw new IOException("file " + filePath + " incomplete, expect " + meta.getSize() + " bytes, actual " + size);
+        }
+        try {
+            CacheManifest.moveAtomic(fillFile, absoluteFile);
+        } catch (IOException e) {
+            //临时文件被占用无法重命名时(如windows),复制
+            Files.copy(fillFile.toPath(), absoluteFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        CacheEntry entry = meta != null ? new CacheEntry(filePath, size, meta.getLastModified(), meta.getCrc32())
+                : new CacheEntry(filePath, size, -1, -1);
+        CacheManifest.write(absoluteFile, entry);
+        afterFill(entry, absoluteFile);
+        return absoluteFile;
+    }
+
+    /**
+     * 缓存文件是否完整: 清单记录的大小与文件大小一致
+     * 清单信息缓存在内存索引中,每次仅需一次文件元信息查询
+     */
+    private boolean isCached(String filePath, File absoluteFile) {
+        CacheEntry entry = cacheIndex.get(filePath);
+        if (entry == null) {
+            entry = CacheManifest.read(filePath, absoluteFile);
+            if (entry == null) {
+                return false;
+            }
+            cacheIndex.put(entry);
+        }
+        long length = absoluteFile.length();
+        return length == entry.getSize() && (length > 0 || absoluteFile.exists());
+    }
+
+    /**
+     * 缓存填充完成,更新缓存元信息,开启gzip时后台生成压缩副本
+     */
+    private void afterFill(CacheEntry entry, File absoluteFile) {
+        cacheIndex.put(entry);
+        if (memoryCache != null) {
+            memoryCache.remove(entry.getKey());
+        }
+        if (sparseCache != null) {
+            sparseCache.remove(entry.getKey(), absoluteFile);
         }
-        channel.close();
+        if (isGzip && GzipPolicy.isCompressible(URLConnection.guessContentTypeFromName(absoluteFile.getName()), absoluteFile)) {
+            gzipCompressor.compressAsync(absoluteFile);
+        }
+    }
 
+    private void handle(OutputStream out, File localFile, FileFill fill) throws Exception {
+        if (fill != null) {
+            byte[] buffer = FileTransfer.borrowBuffer();
+            try {
+                fill.transferTo(out, buffer, fileFillRegistry.getFillTimeout());
+            } finally {
+                FileTransfer.returnBuffer(buffer);
+            }
+            return;
+        }
+        FileTransfer.copy(localFile, 0, localFile.length(), out);
     }
 
     private void handleError(HttpServletResponse resp, HttpServletRequest req, Exception e, String filePath) {
         try {
+            if (isNotFound(e)) {
+                LOG.debug("文件[{}]不存在", filePath);
+                resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                resp.getWriter().println("file " + filePath + " not found");
+                return;
+            }
+            if (isRejected(e)) {
+                LOG.warn("文件[{}]下载繁忙", filePath);
+                resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                resp.getWriter().println("file " + filePath + " busy, retry later");
+                return;
+            }
             LOG.error("处理文件[{}]异常{}", filePath, e);
             if (e instanceof TokenException) {
                 resp.getWriter().println("operation not allowed,url Unauthorized or url expired");
@@ -208,87 +955,310 @@ public class FileHandler {
     }
 
 
+    /**
+     * 异常或其原因是否为文件不存在
+     */
+    private static boolean isNotFound(Throwable e) {
+        for (int depth = 0; e != null && depth < 4; e = e.getCause(), depth++) {
+            if (e instanceof BackendFileNotFoundException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 异常或其原因是否为下载线程池繁忙拒绝
+     */
+    private static boolean isRejected(Throwable e) {
+        for (int depth = 0; e != null && depth < 4; e = e.getCause(), depth++) {
+            if (e instanceof RejectedExecutionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public String getCacheDir() {
         return cacheDir;
     }
 
+    /**
+     * 设置缓存清理,填充前检查磁盘水位,磁盘将满时等待淘汰
+     */
+    public void setFileClean(FileClean fileClean) {
+        this.fileClean = fileClean;
+    }
+
+    /**
+     * 开启边下载边响应
+     *
+     * @param streamThrough  是否开启
+     * @param fillThreadNum 下载线程数
+     */
+    public void setStreamThrough(boolean streamThrough, int fillThreadNum) {
+        this.streamThrough = streamThrough;
+        if (streamThrough) {
+            initFillExecutor(fillThreadNum);
+        }
+    }
+
+    /**
+     * 开启异步处理,缓存填充在有界下载线程池中执行
+     *
+     * @param async         是否开启
+     * @param fillThreadNum 下载线程数
+     */
+    public void setAsync(boolean async, int fillThreadNum) {
+        this.async = async;
+        if (async) {
+            initFillExecutor(fillThreadNum);
+        }
+    }
+
+    /**
+     * 开启稀疏缓存,下载策略不支持范围下载时忽略
+     *
+     * @param blockKb 块大小(KB),0 不开启
+     */
+    public void setSparseBlockSize(int blockKb) {
+        if (blockKb > 0 && fileDownStrategy.isRangeSupported()) {
+            sparseCache = new SparseCache(blockKb * 1024, fileDownStrategy, fileFillRegistry, this::afterFill);
+        }
+    }
+
+    /**
+     * 开启内存缓存
+     *
+     * @param maxMb       内存容量(MB),0 不开启
+     * @param maxObjectKb 单个文件最大大小(KB)
+     */
+    public void setMemoryCache(int maxMb, int maxObjectKb) {
+        if (maxMb > 0 && maxObjectKb > 0) {
+            memoryCache = new MemoryCache(maxMb * 1024L * 1024L, maxObjectKb * 1024);
+        }
+    }
+
+    /**
+     * 开启磁盘缓存准入,访问次数达到准入次数的文件才写入缓存目录
+     *
+     * @param threshold 准入所需的最少访问次数,小于2 不开启
+     */
+    public void setAdmissionThreshold(int threshold) {
+        if (threshold >= 2) {
+            admissionFilter = new AdmissionFilter(ADMISSION_TRACK_SIZE, threshold);
+        }
+    }
+
+    /**
+     * 开启不存在文件缓存
+     *
+     * @param ttl     缓存时间(毫秒),0 不开启
+     * @param maxSize 最多缓存个数
+     */
+    public void setNegativeCache(long ttl, int maxSize) {
+        if (ttl > 0 && maxSize > 0) {
+            negativeCache = new NegativeCache(ttl, maxSize);
+        }
+    }
+
+    /**
+     * 开启异步下载,缓存填充在有界的后端下载线程池中执行,队列满时拒绝
+     *
+     * @param ioThreadNum 后端下载线程数,0 不开启
+     * @param queueSize   等待队列大小
+     */
+    public void setIoExecutor(int ioThreadNum, int queueSize) {
+        if (ioThreadNum > 0) {
+            ioExecutor = FillTask.newExecutor("littlefile-io", ioThreadNum, queueSize);
+        }
+    }
+
+    /**
+     * 设置缓存预取
+     *
+     * @param threadNum 预取线程数
+     * @param onSign    生成签名url时是否后台预取
+     */
+    public synchronized void setPrefetch(int threadNum, boolean onSign) {
+        if (threadNum > 0) {
+            if (prefetcher != null) {
+                prefetcher.shutdown();
+            }
+            prefetcher = new Prefetcher(this::prefetchFile, fileFillRegistry::getInFlightCount, threadNum);
+        }
+        this.prefetchOnSign = onSign;
+    }
+
+    public NegativeCache getNegativeCache() {
+        return negativeCache;
+    }
+
+    public MemoryCache getMemoryCache() {
+        return memoryCache;
+    }
+
+    public SparseCache getSparseCache() {
+        return sparseCache;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    private synchronized void initFillExecutor(int fillThreadNum) {
+        if (fillExecutor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            //队列满时拒绝,返回503,不在请求线程中下载
+            fillExecutor = new ThreadPoolExecutor(fillThreadNum, fillThreadNum, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(fillThreadNum * 16), r -> {
+                Thread thread = new Thread(r, "littlefile-fill-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+        }
+    }
+
+    public void destroy() {
+        saveHot();
+        if (prefetcher != null) {
+            prefetcher.shutdown();
+        }
+        if (fillExecutor != null) {
+            fillExecutor.shutdownNow();
+        }
+        if (ioExecutor != null) {
+            ioExecutor.shutdownNow();
+        }
+        if (gzipCompressor != null) {
+            gzipCompressor.shutdown();
+        }
+    }
+
+    /**
+     * 记录最近访问的文件,本次没有访问记录时保留上次的预热列表
+     */
+    private void saveHot() {
+        if (warmUpCount <= 0) {
+            return;
+        }
+        List<String> paths = Prefetcher.hottest(cacheIndex, warmUpCount);
+        if (paths.isEmpty()) {
+            return;
+        }
+        try {
+            Prefetcher.saveHot(hotFile, paths);
+        } catch (IOException e) {
+            LOG.warn("save warm up file [{}] error {}", hotFile, e.getMessage());
+        }
+    }
+
+    public CacheIndex getCacheIndex() {
+        return cacheIndex;
+    }
+
+    public FileFillRegistry getFileFillRegistry() {
+        return fileFillRegistry;
+    }
+
+    /**
+     * @param fillTimeout 等待其他请求填充同一文件的超时时间(毫秒)
+     */
+    public void setFillTimeout(Long fillTimeout) {
+        this.fileFillRegistry.setFillTimeout(fillTimeout);
+    }
+
 
-    private void handleByteRange(HttpServletRequest req, HttpServletResponse resp, File localFile, boolean isGzip) throws Exception {
+    private boolean handleByteRange(HttpServletRequest req, HttpServletResponse resp, File localFile, CacheEntry entry, boolean head,
+                                    AsyncContext asyncContext, SparseFile sparse) throws Exception {
         String range = req.getHeader("Range");
         String name = localFile.getName();
-        long fileSize = localFile.length();
-        resp.addHeader("ETag", String.valueOf(localFile.lastModified()));
-        // resp.addHeader("Last-Modified",new Date(localFile.lastModified()).toGMTString());
-        if (Utils.isEmpty(range)) {
+        long fileSize = entry.getSize();
+        //断点下载支持
+        resp.setHeader("Accept-Ranges", "bytes");
+        if (Utils.isEmpty(range) || head) {
             resp.setContentType(req.getServletContext().getMimeType(name));
             resp.setHeader("Content-Length", String.valueOf(fileSize));
-            //断点下载支持
-            resp.setHeader("Accept-Ranges", "bytes");
-            return;
+            return false;
         }
-        resp.setHeader("Accept-Ranges", "bytes");
-        Long[] byteRange = resolveByteRange(range, fileSize);
-        Long start = byteRange[0], endSize = byteRange[1], count = endSize - start + 1;
-        //range格式非法
-        if (start > fileSize || endSize > fileSize || start > endSize) {
+        //If-Range 校验失败时忽略Range
+        List<ByteRange> ranges = ConditionalUtil.isRangeValid(req, entry) ? ByteRange.parse(range, fileSize) : null;
+        //range格式非法或区间过多,忽略Range,输出完整文件
+        if (ranges == null || ranges.size() > ByteRange.MAX_RANGES) {
+            setAttachmentHeader(resp, name);
+            resp.setContentLengthLong(fileSize);
+            return transferRange(req, resp, localFile, sparse, 0, fileSize, asyncContext);
+        }
+        //range无法满足
+        if (ranges.isEmpty()) {
+            resp.setHeader("Content-Range", String.format(ByteRange.CONTENTRANGE_UNSATISFIED_FMT, fileSize));
             resp.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
-            return;
+            return false;
+        }
+        //Content-Range 针对原始内容,断点下载不压缩
+        resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (ranges.size() == 1) {
+            ByteRange byteRange = ranges.get(0);
+            setAttachmentHeader(resp, name);
+            //格式 bytes %s-%s/%s
+            resp.setHeader("Content-Range", byteRange.toContentRange(fileSize));
+            resp.setContentLengthLong(byteRange.getLength());
+            return transferRange(req, resp, localFile, sparse, byteRange.getStart(), byteRange.getLength(), asyncContext);
         }
+        //多区间较少见,阻塞输出
+        handleMultiRange(req, resp, localFile, sparse, fileSize, ranges);
+        return false;
+    }
+
+    private void setAttachmentHeader(HttpServletResponse resp, String name) throws UnsupportedEncodingException {
         resp.setHeader("Content-type", "application/octet-stream");
         resp.setHeader("Content-Disposition",
                 "attachment;fileName=" + URLEncoder.encode(FdfsUtil.getFileName(name), "UTF-8"));
-        //格式 bytes %s-%s/%s
-        resp.addHeader(" Content-Range", String.format(CONTENTRANGE_FMT, start, endSize, fileSize));
-        RandomAccessFile randomAccessFile = new RandomAccessFile(localFile, "r");
-        FileChannel channel = randomAccessFile.getChannel();
-        OutputStream outputStream = resp.getOutputStream();
-        if (isGzip) {
-            resp.setHeader("Content-Encoding", "gzip");
-            outputStream = new GZIPOutputStream(resp.getOutputStream());
+    }
+
+    /**
+     * 多区间输出 multipart/byteranges
+     */
+    private void handleMultiRange(HttpServletRequest req, HttpServletResponse resp, File localFile, SparseFile sparse, long fileSize,
+                                  List<ByteRange> ranges) throws Exception {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        String partType = req.getServletContext().getMimeType(localFile.getName());
+        if (Utils.isEmpty(partType)) {
+            partType = "application/octet-stream";
         }
-        resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
-        channel.transferTo(start, count, Channels.newChannel(outputStream));
-        outputStream.close();
-        channel.close();
-    }
-
-    private Long[] resolveByteRange(String range, Long fileSize) {
-        /**
-         * Range header 格式:bytes=
-         * 1. 500-1000：指定开始和结束的范围，一般用于多线程下载。
-         * 2. 500- ：指定开始区间，一直传递到结束。这个就比较适用于断点续传、或者在线播放等等。
-         * 3. -500：无开始区间，只意思是需要最后 500 bytes 的内容实体。
-         * 4. 100-300,1000-3000：指定多个范围，这种方式使用的场景很少，了解一下就好了
-         */
-        Long[] result = new Long[2];
-        range = range.replaceFirst("bytes=", "");
-        if (range.contains(",")) {
-            //暂不支持
-        } else {
-            int index = range.indexOf("-");
-            String[] split = range.split("-");
-            if (RANGE_FMT_START_END.matcher(range).matches()) {
-                result[0] = Long.parseLong(split[0]);
-                result[1] = Long.parseLong(split[1]);
-                return result;
-            }
-            if (RANGE_FMT_START_TILL_END.matcher(range).matches()) {
-                result[0] = Long.parseLong(split[0]);
-                result[1] = fileSize;
-                return result;
+        byte[][] partHeaders = new byte[ranges.size()][];
+        byte[] end = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        long contentLength = end.length;
+        for (int i = 0; i < ranges.size(); i++) {
+            ByteRange byteRange = ranges.get(i);
+            //首个分段前无需换行
+            String partHeader = (i == 0 ? "" : "\r\n") + "--" + boundary + "\r\n"
+                    + "Content-Type: " + partType + "\r\n"
+                    + "Content-Range: " + byteRange.toContentRange(fileSize) + "\r\n\r\n";
+            partHeaders[i] = partHeader.getBytes(StandardCharsets.ISO_8859_1);
+            contentLength += partHeaders[i].length + byteRange.getLength();
+        }
+        resp.setContentType("multipart/byteranges; boundary=" + boundary);
+        resp.setContentLengthLong(contentLength);
+        ServletOutputStream out = resp.getOutputStream();
+        WritableByteChannel target = Channels.newChannel(out);
+        if (sparse != null) {
+            for (int i = 0; i < ranges.size(); i++) {
+                ByteRange byteRange = ranges.get(i);
+                out.write(partHeaders[i]);
+                sparse.transferTo(byteRange.getStart(), byteRange.getLength(), target);
             }
-            if (RANGE_FMT_BYTES_END.matcher(range).matches()) {
-                result[0] = fileSize - Long.parseLong(split[0]);
-                result[1] = fileSize - 1;
-                return result;
+        } else {
+            try (RandomAccessFile raf = new RandomAccessFile(localFile, "r");
+                 FileChannel channel = raf.getChannel()) {
+                for (int i = 0; i < ranges.size(); i++) {
+                    ByteRange byteRange = ranges.get(i);
+                    out.write(partHeaders[i]);
+                    FileTransfer.copy(channel, byteRange.getStart(), byteRange.getLength(), out);
+                }
             }
-
         }
-        return null;
+        out.write(end);
+        out.flush();
     }
-
-    private static Pattern RANGE_FMT_START_END = Pattern.compile("^[0-9]{1,}-[0-9]{1,}$");
-    private static Pattern RANGE_FMT_START_TILL_END = Pattern.compile("^[0-9]{1,}-$");
-    private static Pattern RANGE_FMT_BYTES_END = Pattern.compile("^-[0-9]{1,}$");
-    private static String CONTENTRANGE_FMT = "bytes %s-%s/%s";
 }
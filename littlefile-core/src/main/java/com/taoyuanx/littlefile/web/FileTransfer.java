@@ -0,0 +1,150 @@
+package com.taoyuanx.littlefile.web;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * @author dushitaoyuan
+ * @desc 文件传输, 容器支持sendfile(tomcat)时交给容器零拷贝输出, 否则使用池化缓冲区复制
+ * servlet 输出流不是文件或socket通道, transferTo 到 Channels.newChannel(out) 只会退化为JDK内部8KB缓冲区的循环复制,
+ * 因此输出流直接使用64KB池化缓冲区复制, 避免每次请求分配大缓冲区
+ * @date 2026/10/18
+ */
+public class FileTransfer {
+    /**
+     * tomcat sendfile 支持,参见 org.apache.coyote.Constants
+     */
+    public static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    public static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    public static final String SENDFILE_FILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    public static final String SENDFILE_FILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * BUFFER_SIZE 池化缓冲区大小
+     * BUFFER_POOL_SIZE 池中最多保留的缓冲区个数,超出时临时分配
+     */
+    public static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BUFFER_POOL_SIZE = 256;
+    private static final ArrayBlockingQueue<byte[]> BUFFER_POOL = new ArrayBlockingQueue<>(BUFFER_POOL_SIZE);
+
+    /**
+     * 将文件指定区间原样输出到响应,调用方需保证响应未经过gzip等转换
+     *
+     * @param req      请求
+     * @param resp     响应
+     * @param file     本地完整文件
+     * @param position 开始位置
+     * @param count    输出字节数
+     */
+    public static void transfer(HttpServletRequest req, HttpServletResponse resp, File file, long position, long count) throws IOException {
+        if (isSendfileSupported(req)) {
+            //交给容器使用sendfile,零拷贝
+            req.setAttribute(SENDFILE_FILENAME_ATTR, file.getCanonicalPath());
+            req.setAttribute(SENDFILE_FILE_START_ATTR, position);
+            req.setAttribute(SENDFILE_FILE_END_ATTR, position + count);
+            return;
+        }
+        transfer(file, position, count, resp.getOutputStream());
+    }
+
+    /**
+     * 使用池化缓冲区输出文件指定区间
+     */
+    public static long transfer(File file, long position, long count, OutputStream out) throws IOException {
+        return copy(file, position, count, out);
+    }
+
+    /**
+     * transferTo 单次调用不保证传输完全部数据,循环直到完成
+     * 目标为文件或socket通道时由操作系统直接传输,其他通道(如包装的输出流)为缓冲区复制
+     */
+    public static long transfer(FileChannel channel, long position, long count, WritableByteChannel target) throws IOException {
+        long transferred = 0;
+        while (transferred < count) {
+            long len = channel.transferTo(position + transferred, count - transferred, target);
+            if (len <= 0) {
+                break;
+            }
+            transferred += len;
+        }
+        return transferred;
+    }
+
+    /**
+     * 使用池化缓冲区复制文件指定区间
+     */
+    public static long copy(File file, long position, long count, OutputStream out) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            return copy(channel, position, count, out);
+        }
+    }
+
+    /**
+     * 使用池化缓冲区复制通道指定区间
+     */
+    public static long copy(FileChannel channel, long position, long count, OutputStream out) throws IOException {
+        byte[] buffer = borrowBuffer();
+        try {
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+            long copied = 0;
+            while (copied < count) {
+                byteBuffer.clear();
+                if (count - copied < buffer.length) {
+                    byteBuffer.limit((int) (count - copied));
+                }
+                int len = channel.read(byteBuffer, position + copied);
+                if (len <= 0) {
+                    break;
+                }
+                out.write(buffer, 0, len);
+                copied += len;
+            }
+            return copied;
+        } finally {
+            returnBuffer(buffer);
+        }
+    }
+
+    /**
+     * 使用池化缓冲区输出内存数据,用于堆外内存缓存
+     */
+    public static void write(ByteBuffer data, OutputStream out) throws IOException {
+        byte[] buffer = borrowBuffer();
+        try {
+            while (data.hasRemaining()) {
+                int len = Math.min(buffer.length, data.remaining());
+                data.get(buffer, 0, len);
+                out.write(buffer, 0, len);
+            }
+        } finally {
+            returnBuffer(buffer);
+        }
+    }
+
+    public static boolean isSendfileSupported(HttpServletRequest req) {
+        return Boolean.TRUE.equals(req.getAttribute(SENDFILE_SUPPORTED_ATTR));
+    }
+
+    public static byte[] borrowBuffer() {
+        byte[] buffer = BUFFER_POOL.poll();
+        if (buffer == null) {
+            buffer = new byte[BUFFER_SIZE];
+        }
+        return buffer;
+    }
+
+    public static void returnBuffer(byte[] buffer) {
+        if (buffer != null && buffer.length == BUFFER_SIZE) {
+            BUFFER_POOL.offer(buffer);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.taoyuanx.littlefile.web;
+
+import com.taoyuanx.littlefile.fdfs.FdfsUtil;
+import com.taoyuanx.littlefile.util.Utils;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * @author dushitaoyuan
+ * @desc gzip 压缩策略: 根据客户端 Accept-Encoding 及文件类型决定是否使用gzip
+ * @date 2026/10/18
+ */
+public class GzipPolicy {
+    /**
+     * MIN_SIZE 小于该大小的文件不压缩
+     * SKIP_MIME_PREFIX 已压缩的媒体类型前缀
+     * SKIP_MIME 已压缩的媒体类型
+     * SKIP_EXT 已压缩的文件扩展名,无法识别媒体类型时使用
+     */
+    public static final long MIN_SIZE = 1024;
+    private static final String[] SKIP_MIME_PREFIX = {"image/", "video/", "audio/"};
+    private static final Set<String> COMPRESSIBLE_MIME = new HashSet<>(Arrays.asList(
+            "image/svg+xml", "image/bmp", "image/x-icon", "image/vnd.microsoft.icon"));
+    private static final Set<String> SKIP_MIME = new HashSet<>(Arrays.asList(
+            "application/zip", "application/gzip", "application/x-gzip", "application/x-rar-compressed",
+            "application/x-7z-compressed", "application/x-bzip2", "application/x-xz", "application/pdf",
+            "application/java-archive", "font/woff", "font/woff2", "application/font-woff"));
+    private static final Set<String> SKIP_EXT = new HashSet<>(Arrays.asList(
+            "jpg", "jpeg", "png", "gif", "webp", "heic", "mp4", "m4v", "mov", "avi", "mkv", "flv", "webm",
+            "mp3", "aac", "ogg", "m4a", "flac", "zip", "gz", "tgz", "rar", "7z", "bz2", "xz", "jar", "war",
+            "apk", "pdf", "docx", "xlsx", "pptx", "woff", "woff2"));
+
+    /**
+     * 客户端是否接受gzip
+     */
+    public static boolean acceptGzip(HttpServletRequest req) {
+        String acceptEncoding = req.getHeader("Accept-Encoding");
+        if (Utils.isEmpty(acceptEncoding)) {
+            return false;
+        }
+        for (String encoding : acceptEncoding.split(",")) {
+            String[] params = encoding.trim().split(";");
+            String coding = params[0].trim().toLowerCase(Locale.ENGLISH);
+            if (!"gzip".equals(coding) && !"x-gzip".equals(coding) && !"*".equals(coding)) {
+                continue;
+            }
+            //q=0 表示不接受
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 文件是否值得压缩
+     *
+     * @param mimeType 媒体类型,可为空
+     * @param file     本地文件
+     */
+    public static boolean isCompressible(String mimeType, File file) {
+        return isCompressible(mimeType, file.getName(), file.length());
+    }
+
+    /**
+     * 文件是否值得压缩
+     *
+     * @param mimeType 媒体类型,可为空
+     * @param name     文件名
+     * @param size     文件大小
+     */
+    public static boolean isCompressible(String mimeType, String name, long size) {
+        if (size < MIN_SIZE) {
+            return false;
+        }
+        if (Utils.isNotEmpty(mimeType)) {
+            String mime = mimeType.toLowerCase(Locale.ENGLISH);
+            int index = mime.indexOf(';');
+            if (index > 0) {
+                mime = mime.substring(0, index).trim();
+            }
+            if (COMPRESSIBLE_MIME.contains(mime)) {
+                return true;
+            }
+            if (SKIP_MIME.contains(mime)) {
+                return false;
+            }
+            for (String prefix : SKIP_MIME_PREFIX) {
+                if (mime.startsWith(prefix)) {
+                    return false;
+                }
+            }
+        }
+        if (name.lastIndexOf(".") < 0) {
+            return true;
+        }
+        String ext = FdfsUtil.getExtension(name);
+        return !SKIP_EXT.contains(ext.toLowerCase(Locale.ENGLISH));
+    }
+}
@@ -6,28 +6,52 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.codec.binary.StringUtils;
+import org.apache.commons.codec.digest.HmacAlgorithms;
 import org.apache.commons.codec.digest.HmacUtils;
 
+import java.security.MessageDigest;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 public class HmacTokenManager extends AbstractSimpleTokenManager {
-	Mac mac = null;
+	/**
+	 * mac Mac 非线程安全,每个线程持有一个实例
+	 * verifiedCache 已校验通过的token缓存,热点链接无需重复解码及计算hmac
+	 * cacheSize 缓存最大token数,0 不缓存
+	 */
+	private final ThreadLocal<Mac> mac;
+	private final ConcurrentHashMap<String, VerifiedToken> verifiedCache = new ConcurrentHashMap<>();
+	private int cacheSize = CACHE_SIZE_DEFAULT;
+	public static final int CACHE_SIZE_DEFAULT = 10000;
 
 	public HmacTokenManager(MacEum hmac, String password) {
+		HmacAlgorithms algorithm = null;
 		switch (hmac) {
 			case MD5:
-				mac = HmacUtils.getHmacMd5(password.getBytes());
+				algorithm = HmacAlgorithms.HMAC_MD5;
 				break;
 			case SHA1:
-				mac = HmacUtils.getHmacSha1(password.getBytes());
+				algorithm = HmacAlgorithms.HMAC_SHA_1;
 				break;
 			case SHA256:
-				mac = HmacUtils.getHmacSha256(password.getBytes());
+				algorithm = HmacAlgorithms.HMAC_SHA_256;
 				break;
 		}
+		HmacAlgorithms macAlgorithm = algorithm;
+		byte[] key = password.getBytes();
+		this.mac = ThreadLocal.withInitial(() -> HmacUtils.getInitializedMac(macAlgorithm, key));
+		//提前校验算法及秘钥
+		this.mac.get();
 	}
+
+	public HmacTokenManager(MacEum hmac, String password, int cacheSize) {
+		this(hmac, password);
+		this.cacheSize = cacheSize;
+	}
+
 	@Override
 	public String create(Map<String, Object> signMap, Long expire, TimeUnit timeUnit) {
 		Long end = System.currentTimeMillis() + timeUnit.toMillis(expire);
@@ -36,31 +60,41 @@ public class HmacTokenManager extends AbstractSimpleTokenManager {
 		}
 		signMap.put(END_KEY, end);
 		byte[] signData = JSON.toJSONBytes(signMap);
-		String token = String.format(TOKEN_FMT,Base64.encodeBase64URLSafeString(signData),Base64.encodeBase64URLSafeString(mac.doFinal(signData)));
+		String token = String.format(TOKEN_FMT,Base64.encodeBase64URLSafeString(signData),Base64.encodeBase64URLSafeString(mac.get().doFinal(signData)));
 		return token;
 	}
 
 	@Override
 	public Map<String, Object> vafy(String token) {
-		try {
-			if (null == token || "".equals(token)) {
-				return null;
+		if (null == token || "".equals(token)) {
+			return null;
+		}
+		VerifiedToken verified = verifiedCache.get(token);
+		if (verified != null) {
+			if (verified.end < System.currentTimeMillis()) {
+				verifiedCache.remove(token);
+				throw new TokenException("token过期");
 			}
+			return verified.signData;
+		}
+		try {
 			String[] split = token.split("\\.");
-			if (split.length > 2) {
+			if (split.length != 2) {
 				throw new TokenException("token格式非法");
 			}
 			byte[] signData = Base64.decodeBase64(split[0].getBytes());
+			byte[] sign = mac.get().doFinal(signData);
+			if (!MessageDigest.isEqual(sign, Base64.decodeBase64(split[1]))) {
+				throw new TokenException("token校验失败");
+			}
 			JSONObject signObj = JSON.parseObject(StringUtils.newString(signData, "UTF-8"));
 			Long end = signObj.getLong(END_KEY);
 			if (end < System.currentTimeMillis()) {
 				throw new TokenException("token过期");
 			}
-			String tokenC = Base64.encodeBase64URLSafeString(mac.doFinal(signData));
-			if (tokenC.equals(split[1])) {
-				return signObj;
-			}
-			throw new TokenException("token校验失败");
+			Map<String, Object> result = Collections.unmodifiableMap(signObj);
+			cache(token, new VerifiedToken(result, end));
+			return result;
 		} catch (Exception e) {
 			if (e instanceof TokenException) {
 				throw e;
@@ -69,4 +103,35 @@ public class HmacTokenManager extends AbstractSimpleTokenManager {
 			}
 		}
 	}
+
+	/**
+	 * 缓存已满时先清理过期token,仍然已满则清空缓存
+	 */
+	private void cache(String token, VerifiedToken verified) {
+		if (cacheSize <= 0) {
+			return;
+		}
+		if (verifiedCache.size() >= cacheSize) {
+			long now = System.currentTimeMillis();
+			verifiedCache.values().removeIf(v -> v.end < now);
+			if (verifiedCache.size() >= cacheSize) {
+				verifiedCache.clear();
+			}
+		}
+		verifiedCache.put(token, verified);
+	}
+
+	public int getCachedCount() {
+		return verifiedCache.size();
+	}
+
+	private static class VerifiedToken {
+		private final Map<String, Object> signData;
+		private final long end;
+
+		VerifiedToken(Map<String, Object> signData, long end) {
+			this.signData = signData;
+			this.end = end;
+		}
+	}
 }
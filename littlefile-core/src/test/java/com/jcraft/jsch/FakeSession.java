@@ -0,0 +1,77 @@
+package com.jcraft.jsch;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author dushitaoyuan
+ * @desc 测试用sftp会话, 不连接服务端, Session 构造方法非公开, 需位于jsch同一包下
+ * @date 2026/10/18
+ */
+public class FakeSession extends Session {
+    private volatile boolean connected = true;
+    private final AtomicInteger channelCount = new AtomicInteger();
+
+    public FakeSession() throws JSchException {
+        super(new JSch(), "test", "localhost", 22);
+    }
+
+    @Override
+    public Channel openChannel(String type) throws JSchException {
+        if (!connected) {
+            throw new JSchException("session is down");
+        }
+        channelCount.incrementAndGet();
+        return new ChannelSftp() {
+            private volatile boolean open = false;
+
+            @Override
+            public void connect() {
+                open = true;
+            }
+
+            @Override
+            public boolean isConnected() {
+                return open && FakeSession.this.isConnected();
+            }
+
+            @Override
+            public void cd(String path) {
+            }
+
+            @Override
+            public String pwd() {
+                return "/";
+            }
+
+            @Override
+            public SftpATTRS stat(String path) throws SftpException {
+                if (!isConnected()) {
+                    throw new SftpException(ChannelSftp.SSH_FX_CONNECTION_LOST, "connection lost");
+                }
+                return null;
+            }
+
+            @Override
+            public void disconnect() {
+                open = false;
+            }
+        };
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public void disconnect() {
+        connected = false;
+    }
+
+    /**
+     * 打开过的通道数
+     */
+    public int getChannelCount() {
+        return channelCount.get();
+    }
+}
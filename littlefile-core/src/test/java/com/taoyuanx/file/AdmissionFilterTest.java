@@ -0,0 +1,30 @@
+package com.taoyuanx.file;
+
+import com.taoyuanx.littlefile.cache.AdmissionFilter;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author dushitaoyuan
+ * @desc 磁盘缓存准入测试: 只访问一次的文件不准入, 再次访问准入
+ * @date 2026/10/18
+ */
+public class AdmissionFilterTest {
+
+    @Test
+    public void admitTest() {
+        AdmissionFilter filter = new AdmissionFilter(1000, 2);
+        Assert.assertFalse(filter.admit("hot.mp4"));
+        Assert.assertTrue(filter.admit("hot.mp4"));
+        int admitted = 0;
+        for (int i = 0; i < 500; i++) {
+            if (filter.admit("export" + i + ".xlsx")) {
+                admitted++;
+            }
+        }
+        //门卫误判率很低,只访问一次的文件几乎都不准入
+        Assert.assertTrue(admitted < 10);
+        Assert.assertTrue(filter.admit("hot.mp4"));
+        Assert.assertTrue(filter.frequency("hot.mp4") >= 3);
+    }
+}
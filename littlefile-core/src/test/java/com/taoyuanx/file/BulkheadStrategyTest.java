@@ -0,0 +1,127 @@
+package com.taoyuanx.file;
+
+import com.taoyuanx.littlefile.cache.CacheEntry;
+import com.taoyuanx.littlefile.support.impl.BulkheadStrategy;
+import com.taoyuanx.littlefile.support.impl.LocalStrategy;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author dushitaoyuan
+ * @desc 后端隔离舱测试: 超过并发上限排队超时后拒绝, 预取不排队, 后端异常时减少上限, 空闲时耗时抖动不减少上限
+ * @date 2026/10/18
+ */
+public class BulkheadStrategyTest {
+
+    @Test
+    public void bulkheadTest() throws Exception {
+        File sourceDir = Files.createTempDirectory("littlefile-source").toFile();
+        File cacheDir = Files.createTempDirectory("littlefile-cache").toFile();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Files.write(new File(sourceDir, "a.txt").toPath(), "hello".getBytes());
+            CountDownLatch blocked = new CountDownLatch(1);
+            LocalStrategy slow = new LocalStrategy(new String[]{sourceDir.getAbsolutePath()}) {
+                @Override
+                public CacheEntry downWithMeta(String src, String dest) throws Exception {
+                    if ("error.txt".equals(src)) {
+                        throw new IOException("connection reset");
+                    }
+                    blocked.await();
+                    return super.downWithMeta(src, dest);
+                }
+            };
+            BulkheadStrategy strategy = new BulkheadStrategy(slow, 2, 100);
+            Assert.assertEquals(2, strategy.getLimit());
+            Future<?> first = executor.submit(() -> strategy.downWithMeta("a.txt", new File(cacheDir, "1").getAbsolutePath()));
+            Future<?> second = executor.submit(() -> strategy.downWithMeta("a.txt", new File(cacheDir, "2").getAbsolutePath()));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (strategy.getInFlight() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(2, strategy.getInFlight());
+            try {
+                strategy.downWithMeta("a.txt", new File(cacheDir, "3").getAbsolutePath());
+                Assert.fail();
+            } catch (RejectedExecutionException e) {
+            }
+            Assert.assertEquals(1, strategy.getRejectedCount());
+            //预取不排队,直接拒绝
+            BulkheadStrategy patient = new BulkheadStrategy(slow, 1, 5000);
+            Future<?> third = executor.submit(() -> patient.downWithMeta("a.txt", new File(cacheDir, "6").getAbsolutePath()));
+            while (patient.getInFlight() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            long start = System.currentTimeMillis();
+            try {
+                BulkheadStrategy.noWait(() -> patient.downWithMeta("a.txt", new File(cacheDir, "7").getAbsolutePath()));
+                Assert.fail();
+            } catch (RejectedExecutionException e) {
+            }
+            Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+            Assert.assertEquals(0, patient.getWaiting());
+            blocked.countDown();
+            third.get(5, TimeUnit.SECONDS);
+            first.get(5, TimeUnit.SECONDS);
+            second.get(5, TimeUnit.SECONDS);
+            Assert.assertEquals(0, strategy.getInFlight());
+
+            try {
+                strategy.downWithMeta("error.txt", new File(cacheDir, "4").getAbsolutePath());
+                Assert.fail();
+            } catch (IOException e) {
+            }
+            Assert.assertEquals(1, strategy.getDecreaseCount());
+            Assert.assertEquals(1, strategy.getLimit());
+            Assert.assertEquals(5, strategy.downWithMeta("a.txt", new File(cacheDir, "5").getAbsolutePath()).getSize());
+            Assert.assertEquals(5, strategy.downAsync("a.txt", new File(cacheDir, "8").getAbsolutePath(), executor)
+                    .get(5, TimeUnit.SECONDS).getSize());
+            Assert.assertEquals(0, strategy.getInFlight());
+        } finally {
+            executor.shutdownNow();
+            FileUtils.deleteDirectory(sourceDir);
+            FileUtils.deleteDirectory(cacheDir);
+        }
+    }
+
+    /**
+     * 空闲时单次下载耗时抖动不减少上限
+     */
+    @Test
+    public void idleJitterTest() throws Exception {
+        File sourceDir = Files.createTempDirectory("littlefile-source").toFile();
+        File cacheDir = Files.createTempDirectory("littlefile-cache").toFile();
+        try {
+            Files.write(new File(sourceDir, "a.txt").toPath(), "hello".getBytes());
+            AtomicInteger count = new AtomicInteger();
+            LocalStrategy jitter = new LocalStrategy(new String[]{sourceDir.getAbsolutePath()}) {
+                @Override
+                public CacheEntry downWithMeta(String src, String dest) throws Exception {
+                    Thread.sleep(count.incrementAndGet() % 5 == 0 ? 60 : 1);
+                    return super.downWithMeta(src, dest);
+                }
+            };
+            BulkheadStrategy strategy = new BulkheadStrategy(jitter, 10, 100);
+            for (int i = 0; i < 40; i++) {
+                strategy.downWithMeta("a.txt", new File(cacheDir, String.valueOf(i)).getAbsolutePath());
+            }
+            Assert.assertEquals(0, strategy.getDecreaseCount());
+            Assert.assertEquals(10, strategy.getLimit());
+        } finally {
+            FileUtils.deleteDirectory(sourceDir);
+            FileUtils.deleteDirectory(cacheDir);
+        }
+    }
+}
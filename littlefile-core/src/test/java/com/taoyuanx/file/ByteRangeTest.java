@@ -0,0 +1,53 @@
+package com.taoyuanx.file;
+
+import com.taoyuanx.littlefile.web.ByteRange;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author dushitaoyuan
+ * @desc Range header 解析测试
+ * @date 2026/10/18
+ */
+public class ByteRangeTest {
+
+    @Test
+    public void singleRangeTest() {
+        Assert.assertEquals(Arrays.asList(new ByteRange(0, 499)), ByteRange.parse("bytes=0-499", 1000));
+        Assert.assertEquals(Arrays.asList(new ByteRange(500, 999)), ByteRange.parse("bytes=500-", 1000));
+        Assert.assertEquals(Arrays.asList(new ByteRange(900, 999)), ByteRange.parse("bytes=-100", 1000));
+        //超出文件大小时截断
+        Assert.assertEquals(Arrays.asList(new ByteRange(900, 999)), ByteRange.parse("bytes=900-5000", 1000));
+        Assert.assertEquals(Arrays.asList(new ByteRange(0, 999)), ByteRange.parse("bytes=-5000", 1000));
+    }
+
+    @Test
+    public void multiRangeTest() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=500-600, 0-99,-100", 1000);
+        Assert.assertEquals(Arrays.asList(new ByteRange(0, 99), new ByteRange(500, 600), new ByteRange(900, 999)), ranges);
+        //重叠及相邻区间合并
+        ranges = ByteRange.parse("bytes=0-99,100-199,150-300,400-500", 1000);
+        Assert.assertEquals(Arrays.asList(new ByteRange(0, 300), new ByteRange(400, 500)), ranges);
+    }
+
+    @Test
+    public void unsatisfiableTest() {
+        Assert.assertTrue(ByteRange.parse("bytes=1000-", 1000).isEmpty());
+        Assert.assertTrue(ByteRange.parse("bytes=-0", 1000).isEmpty());
+        Assert.assertTrue(ByteRange.parse("bytes=0-10", 0).isEmpty());
+        //部分区间可满足
+        Assert.assertEquals(Arrays.asList(new ByteRange(0, 9)), ByteRange.parse("bytes=2000-3000,0-9", 1000));
+    }
+
+    @Test
+    public void invalidTest() {
+        Assert.assertNull(ByteRange.parse("bytes=10-1", 1000));
+        Assert.assertNull(ByteRange.parse("bytes=a-b", 1000));
+        Assert.assertNull(ByteRange.parse("bytes=-", 1000));
+        Assert.assertNull(ByteRange.parse("items=0-10", 1000));
+        Assert.assertNull(ByteRange.parse("bytes=99999999999999999999-", 1000));
+    }
+}
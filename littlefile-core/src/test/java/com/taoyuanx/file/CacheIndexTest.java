@@ -0,0 +1,54 @@
+package com.taoyuanx.file;
+
+import com.taoyuanx.littlefile.cache.CacheEntry;
+import com.taoyuanx.littlefile.cache.CacheIndex;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * @author dushitaoyuan
+ * @desc 缓存索引淘汰测试: 按容量及过期时间从最久未访问的文件开始淘汰
+ * @date 2026/10/18
+ */
+public class CacheIndexTest {
+
+    @Test
+    public void capacityEvictTest() {
+        CacheIndex cacheIndex = new CacheIndex();
+        for (int i = 0; i < 5; i++) {
+            cacheIndex.put(new CacheEntry("file" + i, 100, 0, -1));
+        }
+        Assert.assertEquals(500, cacheIndex.getUsedBytes());
+        //访问后移到末尾,不会被优先淘汰
+        cacheIndex.get("file0");
+        List<CacheEntry> evicted = cacheIndex.evict(0, 300, 100);
+        Assert.assertEquals(2, evicted.size());
+        Assert.assertEquals("file1", evicted.get(0).getKey());
+        Assert.assertEquals("file2", evicted.get(1).getKey());
+        Assert.assertEquals(300, cacheIndex.getUsedBytes());
+        Assert.assertNotNull(cacheIndex.get("file0"));
+        //未超出容量不淘汰
+        Assert.assertTrue(cacheIndex.evict(0, 300, 100).isEmpty());
+    }
+
+    @Test
+    public void ttlEvictTest() {
+        CacheIndex cacheIndex = new CacheIndex();
+        long now = System.currentTimeMillis();
+        CacheEntry old = new CacheEntry("old", 100, 0, -1);
+        old.setLastAccess(now - 60000);
+        cacheIndex.put(old);
+        cacheIndex.put(new CacheEntry("new", 100, 0, -1));
+        List<CacheEntry> evicted = cacheIndex.evict(30000, 0, 100);
+        Assert.assertEquals(1, evicted.size());
+        Assert.assertEquals("old", evicted.get(0).getKey());
+        Assert.assertEquals(1, cacheIndex.size());
+        //分批淘汰
+        for (int i = 0; i < 10; i++) {
+            cacheIndex.put(new CacheEntry("batch" + i, 100, 0, -1));
+        }
+        Assert.assertEquals(3, cacheIndex.evict(0, 100, 3).size());
+    }
+}
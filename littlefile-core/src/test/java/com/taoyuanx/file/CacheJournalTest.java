@@ -0,0 +1,84 @@
+package com.taoyuanx.file;
+
+import com.taoyuanx.littlefile.cache.CacheEntry;
+import com.taoyuanx.littlefile.cache.CacheIndex;
+import com.taoyuanx.littlefile.cache.CacheJournal;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * @author dushitaoyuan
+ * @desc 缓存索引持久化测试: 快照+日志重放恢复索引及访问顺序, 访问记录合并写入
+ * @date 2026/10/18
+ */
+public class CacheJournalTest {
+
+    @Test
+    public void recoverTest() throws Exception {
+        File dir = Files.createTempDirectory("littlefile-journal").toFile();
+        CacheIndex cacheIndex = new CacheIndex();
+        CacheJournal journal = new CacheJournal(dir, cacheIndex, 3);
+        Assert.assertFalse(journal.load());
+        for (int i = 0; i < 5; i++) {
+            cacheIndex.put(new CacheEntry("file" + i, 100, 1000 + i, i));
+        }
+        Assert.assertTrue(journal.needCompact());
+        journal.compact();
+        //合并后的变更只在日志中
+        cacheIndex.remove("file1");
+        cacheIndex.put(new CacheEntry("file5", 200, 2000, -1));
+        cacheIndex.evict(0, 500, 100);
+        journal.close();
+
+        CacheIndex recovered = new CacheIndex();
+        CacheJournal recoveredJournal = new CacheJournal(dir, recovered);
+        Assert.assertTrue(recoveredJournal.load());
+        Assert.assertEquals(cacheIndex.size(), recovered.size());
+        Assert.assertEquals(cacheIndex.getUsedBytes(), recovered.getUsedBytes());
+        Assert.assertNull(recovered.get("file0"));
+        Assert.assertNull(recovered.get("file1"));
+        CacheEntry entry = recovered.get("file3");
+        Assert.assertEquals(1003, entry.getLastModified());
+        Assert.assertEquals(cacheIndex.get("file3").getETag(), entry.getETag());
+        //恢复最久未访问顺序
+        List<CacheEntry> evicted = recovered.evict(0, 300, 100);
+        Assert.assertEquals("file2", evicted.get(0).getKey());
+        recoveredJournal.close();
+    }
+
+    /**
+     * 访问记录合并后随刷盘写入, 重启后恢复访问顺序
+     */
+    @Test
+    public void accessTest() throws Exception {
+        File dir = Files.createTempDirectory("littlefile-journal").toFile();
+        CacheIndex cacheIndex = new CacheIndex();
+        CacheJournal journal = new CacheJournal(dir, cacheIndex);
+        journal.load();
+        for (int i = 0; i < 3; i++) {
+            cacheIndex.put(new CacheEntry("file" + i, 100, -1, -1));
+        }
+        cacheIndex.get("file0");
+        cacheIndex.get("file1");
+        cacheIndex.get("file0");
+        long lastAccess = cacheIndex.get("file0").getLastAccess();
+        journal.flush();
+        journal.close();
+
+        CacheIndex recovered = new CacheIndex();
+        CacheJournal recoveredJournal = new CacheJournal(dir, recovered);
+        Assert.assertTrue(recoveredJournal.load());
+        List<CacheEntry> entries = recovered.snapshot(null);
+        Assert.assertEquals("file2", entries.get(0).getKey());
+        Assert.assertEquals("file1", entries.get(1).getKey());
+        Assert.assertEquals("file0", entries.get(2).getKey());
+        Assert.assertEquals(lastAccess, entries.get(2).getLastAccess());
+        recoveredJournal.close();
+        FileUtils.deleteDirectory(dir);
+    }
+}
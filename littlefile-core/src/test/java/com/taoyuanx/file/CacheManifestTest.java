@@ -0,0 +1,38 @@
+package com.taoyuanx.file;
+
+import com.taoyuanx.littlefile.cache.CacheEntry;
+import com.taoyuanx.littlefile.cache.CacheManifest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+/**
+ * @author dushitaoyuan
+ * @desc 缓存文件清单测试
+ * @date 2026/10/18
+ */
+public class CacheManifestTest {
+
+    @Test
+    public void writeReadTest() throws Exception {
+        File dir = Files.createTempDirectory("littlefile-manifest").toFile();
+        File cacheFile = new File(dir, "icon.png");
+        //小于1KB的文件同样可以被识别为完整缓存
+        Files.write(cacheFile.toPath(), new byte[100]);
+        Assert.assertNull(CacheManifest.read("group1/icon.png", cacheFile));
+
+        CacheManifest.write(cacheFile, new CacheEntry("group1/icon.png", 100, cacheFile.lastModified(), 0xFFFFFFF0L));
+        CacheEntry entry = CacheManifest.read("group1/icon.png", cacheFile);
+        Assert.assertNotNull(entry);
+        Assert.assertEquals(100, entry.getSize());
+        Assert.assertEquals(0xFFFFFFF0L, entry.getCrc32());
+        Assert.assertEquals(cacheFile.lastModified(), entry.getLastModified());
+
+        CacheManifest.delete(cacheFile);
+        Assert.assertNull(CacheManifest.read("group1/icon.png", cacheFile));
+        cacheFile.delete();
+        dir.delete();
+    }
+}
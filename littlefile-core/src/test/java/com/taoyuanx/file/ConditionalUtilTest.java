@@ -0,0 +1,111 @@
+package com.taoyuanx.file;
+
+import com.taoyuanx.littlefile.cache.CacheEntry;
+import com.taoyuanx.littlefile.web.ConditionalUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.Proxy;
+import java.text.SimpleDateFormat;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * @author dushitaoyuan
+ * @desc 条件请求测试: If-None-Match 列表及弱校验, If-Modified-Since, If-Range, 后端未提供校验信息时不匹配
+ * @date 2026/10/18
+ */
+public class ConditionalUtilTest {
+    private static final long LAST_MODIFIED = 1760745600000L;
+
+    private final CacheEntry crcEntry = new CacheEntry("a.txt", 100, -1, 0x1234L);
+    private final CacheEntry timeEntry = new CacheEntry("b.txt", 100, LAST_MODIFIED, -1);
+    private final CacheEntry unknownEntry = new CacheEntry("c.txt", 100, -1, -1);
+
+    @Test
+    public void ifNoneMatchTest() {
+        String etag = crcEntry.getETag();
+        Assert.assertEquals("\"64-1234\"", etag);
+        Assert.assertTrue(ConditionalUtil.isNotModified(request("If-None-Match", etag), crcEntry));
+        Assert.assertTrue(ConditionalUtil.isNotModified(request("If-None-Match", "\"x\", " + etag), crcEntry));
+        Assert.assertTrue(ConditionalUtil.isNotModified(request("If-None-Match", "W/" + etag), crcEntry));
+        Assert.assertTrue(ConditionalUtil.isNotModified(request("If-None-Match", crcEntry.getGzipETag()), crcEntry));
+        Assert.assertTrue(ConditionalUtil.isNotModified(request("If-None-Match", "*"), crcEntry));
+        Assert.assertFalse(ConditionalUtil.isNotModified(request("If-None-Match", "\"x\", \"y\""), crcEntry));
+        //If-None-Match 存在时忽略 If-Modified-Since
+        Assert.assertFalse(ConditionalUtil.isNotModified(request("If-None-Match", "\"x\"",
+                "If-Modified-Since", httpDate(LAST_MODIFIED)), timeEntry));
+    }
+
+    @Test
+    public void ifModifiedSinceTest() {
+        Assert.assertEquals("\"64-" + Long.toHexString(LAST_MODIFIED) + "\"", timeEntry.getETag());
+        Assert.assertTrue(ConditionalUtil.isNotModified(request("If-Modified-Since", httpDate(LAST_MODIFIED)), timeEntry));
+        Assert.assertTrue(ConditionalUtil.isNotModified(request("If-Modified-Since", httpDate(LAST_MODIFIED + 60000)), timeEntry));
+        Assert.assertFalse(ConditionalUtil.isNotModified(request("If-Modified-Since", httpDate(LAST_MODIFIED - 60000)), timeEntry));
+        Assert.assertFalse(ConditionalUtil.isNotModified(request("If-Modified-Since", "not a date"), timeEntry));
+        Assert.assertFalse(ConditionalUtil.isNotModified(request(), timeEntry));
+    }
+
+    @Test
+    public void ifRangeTest() {
+        Assert.assertTrue(ConditionalUtil.isRangeValid(request(), crcEntry));
+        Assert.assertTrue(ConditionalUtil.isRangeValid(request("If-Range", crcEntry.getETag()), crcEntry));
+        //If-Range 使用强比较,弱校验不通过
+        Assert.assertFalse(ConditionalUtil.isRangeValid(request("If-Range", "W/" + crcEntry.getETag()), crcEntry));
+        Assert.assertFalse(ConditionalUtil.isRangeValid(request("If-Range", "\"x\""), crcEntry));
+        Assert.assertTrue(ConditionalUtil.isRangeValid(request("If-Range", httpDate(LAST_MODIFIED)), timeEntry));
+        Assert.assertFalse(ConditionalUtil.isRangeValid(request("If-Range", httpDate(LAST_MODIFIED + 60000)), timeEntry));
+    }
+
+    /**
+     * 后端未提供crc32及修改时间时不生成校验信息, 条件请求均不匹配
+     */
+    @Test
+    public void noValidatorTest() {
+        Assert.assertNull(unknownEntry.getETag());
+        Assert.assertNull(unknownEntry.getGzipETag());
+        Assert.assertFalse(ConditionalUtil.isNotModified(request("If-None-Match", "\"64-ffffffffffffffff\""), unknownEntry));
+        Assert.assertFalse(ConditionalUtil.isNotModified(request("If-Modified-Since", httpDate(LAST_MODIFIED)), unknownEntry));
+        Assert.assertFalse(ConditionalUtil.isRangeValid(request("If-Range", "\"64-1234\""), unknownEntry));
+        Assert.assertFalse(ConditionalUtil.isRangeValid(request("If-Range", httpDate(LAST_MODIFIED)), unknownEntry));
+    }
+
+    private static String httpDate(long time) {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.format(time);
+    }
+
+    /**
+     * 仅提供请求头的请求, getDateHeader 按http日期解析
+     */
+    private static HttpServletRequest request(String... headers) {
+        Map<String, String> map = new HashMap<>();
+        for (int i = 0; i < headers.length; i += 2) {
+            map.put(headers[i], headers[i + 1]);
+        }
+        return (HttpServletRequest) Proxy.newProxyInstance(ConditionalUtilTest.class.getClassLoader(),
+                new Class[]{HttpServletRequest.class}, (proxy, method, args) -> {
+                    String value = map.get((String) args[0]);
+                    if ("getHeader".equals(method.getName())) {
+                        return value;
+                    }
+                    if ("getDateHeader".equals(method.getName())) {
+                        if (value == null) {
+                            return -1L;
+                        }
+                        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+                        try {
+                            return format.parse(value).getTime();
+                        } catch (Exception e) {
+                            throw new IllegalArgumentException(value);
+                        }
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
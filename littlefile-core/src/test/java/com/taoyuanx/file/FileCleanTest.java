@@ -0,0 +1,193 @@
+package com.taoyuanx.file;
+
+import com.taoyuanx.littlefile.cache.CacheEntry;
+import com.taoyuanx.littlefile.cache.CacheIndex;
+import com.taoyuanx.littlefile.cache.CacheJournal;
+import com.taoyuanx.littlefile.cache.CacheManifest;
+import com.taoyuanx.littlefile.clean.FileClean;
+import com.taoyuanx.littlefile.clean.FileCleanTask;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileStoreAttributeView;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * @author dushitaoyuan
+ * @desc 缓存清理测试: 清理长时间未更新的稀疏缓存及下载临时文件残留, 磁盘水位淘汰只承担缓存所占比例, 启动核对补回丢失日志记录的文件
+ * @date 2026/10/18
+ */
+public class FileCleanTest {
+    private File cacheDir;
+
+    @Before
+    public void init() throws Exception {
+        cacheDir = Files.createTempDirectory("littlefile-cache").toFile();
+    }
+
+    @After
+    public void destroy() throws Exception {
+        FileUtils.deleteDirectory(cacheDir);
+    }
+
+    @Test
+    public void sweepStaleTest() throws Exception {
+        File dir = new File(cacheDir, "group1");
+        dir.mkdirs();
+        long old = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2);
+        File[] stale = {new File(dir, "a.mp4.lf.sparse"), new File(dir, "a.mp4.lf.blocks"), new File(dir, "b.txt.123.fill")};
+        File[] keep = {new File(dir, "c.mp4.lf.sparse"), new File(dir, "c.mp4.lf.blocks"), new File(dir, "d.txt")};
+        for (File file : stale) {
+            Files.write(file.toPath(), "a".getBytes());
+            file.setLastModified(old);
+        }
+        for (File file : keep) {
+            Files.write(file.toPath(), "a".getBytes());
+        }
+        new File(dir, "d.txt").setLastModified(old);
+        FileClean fileClean = new FileClean(1, cacheDir, new CacheIndex(), new FileCleanTask.CheckDelete() {
+            @Override
+            public boolean delete(File file) {
+                return false;
+            }
+        }, 0L, 0L);
+        Assert.assertEquals(3, fileClean.sweepStale());
+        for (File file : stale) {
+            Assert.assertFalse(file.exists());
+        }
+        for (File file : keep) {
+            Assert.assertTrue(file.exists());
+        }
+    }
+
+    /**
+     * 磁盘压力主要来自其他数据时, 只淘汰缓存按占用比例应承担的部分
+     */
+    @Test
+    public void evictDiskShareTest() throws Exception {
+        CacheIndex cacheIndex = new CacheIndex();
+        for (int i = 0; i < 10; i++) {
+            Files.write(new File(cacheDir, i + ".txt").toPath(), new byte[10]);
+            cacheIndex.put(new CacheEntry(i + ".txt", 10, 0, -1));
+        }
+        //磁盘1000字节,缓存占用100字节,可用50字节,每删除一个缓存文件释放10字节
+        FileStore fileStore = new FakeFileStore(1000, () -> 50 + 10 * (10 - cacheDir.list().length));
+        FileClean fileClean = new FileClean(1, cacheDir, cacheIndex, new FileCleanTask.CheckDelete() {
+            @Override
+            public boolean delete(File file) {
+                return false;
+            }
+        }, 0L, 0L);
+        fileClean.setDiskWatermark(90, 80, 95, fileStore);
+        //需释放150字节,缓存占已用空间的100/950,承担15字节
+        Assert.assertEquals(2, fileClean.evictDisk());
+        Assert.assertEquals(8, cacheDir.list().length);
+        Assert.assertEquals(80, cacheIndex.getUsedBytes());
+    }
+
+    private static class FakeFileStore extends FileStore {
+        private final long total;
+        private final LongSupplier usable;
+
+        FakeFileStore(long total, LongSupplier usable) {
+            this.total = total;
+            this.usable = usable;
+        }
+
+        @Override
+        public String name() {
+            return "fake";
+        }
+
+        @Override
+        public String type() {
+            return "fake";
+        }
+
+        @Override
+        public boolean isReadOnly() {
+            return false;
+        }
+
+        @Override
+        public long getTotalSpace() {
+            return total;
+        }
+
+        @Override
+        public long getUsableSpace() {
+            return usable.getAsLong();
+        }
+
+        @Override
+        public long getUnallocatedSpace() {
+            return usable.getAsLong();
+        }
+
+        @Override
+        public boolean supportsFileAttributeView(Class<? extends FileAttributeView> type) {
+            return false;
+        }
+
+        @Override
+        public boolean supportsFileAttributeView(String name) {
+            return false;
+        }
+
+        @Override
+        public <V extends FileStoreAttributeView> V getFileStoreAttributeView(Class<V> type) {
+            return null;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) {
+            return null;
+        }
+    }
+
+    /**
+     * 启动核对时补回有清单但丢失日志记录的文件
+     */
+    @Test
+    public void reconcileTest() throws Exception {
+        CacheIndex cacheIndex = new CacheIndex();
+        CacheJournal journal = new CacheJournal(cacheDir, cacheIndex);
+        journal.load();
+        File indexed = new File(cacheDir, "a.txt"), lost = new File(cacheDir, "group1/b.txt");
+        lost.getParentFile().mkdirs();
+        Files.write(indexed.toPath(), new byte[10]);
+        Files.write(lost.toPath(), new byte[20]);
+        CacheManifest.write(indexed, new CacheEntry("a.txt", 10, -1, -1));
+        CacheManifest.write(lost, new CacheEntry("group1/b.txt", 20, -1, -1));
+        cacheIndex.put(new CacheEntry("a.txt", 10, -1, -1));
+        journal.close();
+
+        CacheIndex recovered = new CacheIndex();
+        FileClean fileClean = new FileClean(1, cacheDir, recovered, new FileCleanTask.CheckDelete() {
+            @Override
+            public boolean delete(File file) {
+                return false;
+            }
+        }, 0L, 0L);
+        fileClean.start();
+        try {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!recovered.contains("group1/b.txt") && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue(recovered.contains("a.txt"));
+            Assert.assertTrue(recovered.contains("group1/b.txt"));
+            Assert.assertEquals(30, recovered.getUsedBytes());
+        } finally {
+            fileClean.stop();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.taoyuanx.file;
+
+import com.taoyuanx.littlefile.cache.FileFill;
+import com.taoyuanx.littlefile.cache.FileFillRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author dushitaoyuan
+ * @desc 缓存填充合并测试
+ * @date 2026/10/18
+ */
+public class FileFillRegistryTest {
+
+    @Test
+    public void concurrentFillTest() throws Exception {
+        FileFillRegistry registry = new FileFillRegistry();
+        AtomicInteger downCount = new AtomicInteger();
+        int concurrent = 50;
+        ExecutorService pool = Executors.newFixedThreadPool(concurrent);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<File>> results = new ArrayList<>();
+        for (int i = 0; i < concurrent; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return registry.fill("a.txt", () -> {
+                    downCount.incrementAndGet();
+                    Thread.sleep(200);
+                    return new File("a.txt");
+                });
+            }));
+        }
+        start.countDown();
+        for (Future<File> result : results) {
+            Assert.assertEquals(new File("a.txt"), result.get());
+        }
+        pool.shutdown();
+        Assert.assertEquals(1, downCount.get());
+        Assert.assertEquals(concurrent - 1, registry.getCoalescedCount());
+        Assert.assertEquals(0, registry.getInFlightCount());
+    }
+
+    @Test
+    public void fillFailedTest() throws Exception {
+        FileFillRegistry registry = new FileFillRegistry();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        CountDownLatch filling = new CountDownLatch(1);
+        Future<File> leader = pool.submit(() -> registry.fill("b.txt", () -> {
+            filling.countDown();
+            Thread.sleep(200);
+            throw new IllegalStateException("down failed");
+        }));
+        filling.await();
+        Future<File> waiter = pool.submit(() -> registry.fill("b.txt", () -> new File("b.txt")));
+        try {
+            waiter.get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        try {
+            leader.get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        pool.shutdown();
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void fillTimeoutTest() throws Throwable {
+        FileFillRegistry registry = new FileFillRegistry(100);
+        ExecutorService pool = Executors.newFixedThreadPool(1);
+        CountDownLatch filling = new CountDownLatch(1);
+        pool.submit(() -> registry.fill("c.txt", () -> {
+            filling.countDown();
+            Thread.sleep(1000);
+            return new File("c.txt");
+        }));
+        filling.await();
+        try {
+            registry.fill("c.txt", () -> new File("c.txt"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void streamThroughTest() throws Exception {
+        File dest = File.createTempFile("stream", ".txt");
+        dest.delete();
+        File fillFile = new File(dest.getAbsolutePath() + ".fill");
+        FileFillRegistry registry = new FileFillRegistry();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        byte[] chunk = new byte[4096];
+        int chunkNum = 20;
+        FileFill fill = registry.fillAsync(dest.getAbsolutePath(), fillFile, () -> {
+            try (FileOutputStream out = new FileOutputStream(fillFile)) {
+                for (int i = 0; i < chunkNum; i++) {
+                    out.write(chunk);
+                    Thread.sleep(20);
+                }
+            }
+            Files.move(fillFile.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return dest;
+        }, pool);
+        //后加入的请求跟随同一填充
+        Assert.assertSame(fill, registry.fillAsync(dest.getAbsolutePath(), fillFile, () -> dest, pool));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long len = fill.transferTo(out, new byte[1024], 1000);
+        Assert.assertEquals(chunk.length * chunkNum, len);
+        Assert.assertEquals(chunk.length * chunkNum, out.size());
+        Assert.assertEquals(1, registry.getCoalescedCount());
+        pool.shutdown();
+        dest.delete();
+    }
+
+    /**
+     * 预取等同步填充进行中时,异步请求跟随同一填充读取
+     */
+    @Test
+    public void syncFillFollowTest() throws Exception {
+        File dest = File.createTempFile("follow", ".txt");
+        dest.delete();
+        File fillFile = new File(dest.getAbsolutePath() + ".fill");
+        FileFillRegistry registry = new FileFillRegistry();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        byte[] chunk = new byte[4096];
+        int chunkNum = 10;
+        try {
+            for (File syncFillFile : new File[]{fillFile, null}) {
+                CountDownLatch filling = new CountDownLatch(1);
+                Future<File> prefetch = pool.submit(() -> registry.fill(dest.getAbsolutePath(), syncFillFile, () -> {
+                    filling.countDown();
+                    try (FileOutputStream out = new FileOutputStream(fillFile)) {
+                        for (int i = 0; i < chunkNum; i++) {
+                            out.write(chunk);
+                            Thread.sleep(20);
+                        }
+                    }
+                    Files.move(fillFile.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    return dest;
+                }));
+                filling.await();
+                FileFill fill = registry.fillAsync(dest.getAbsolutePath(), fillFile, () -> dest, pool);
+                Assert.assertEquals(syncFillFile, fill.getFillFile());
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                Assert.assertEquals(chunk.length * chunkNum, fill.transferTo(out, new byte[1024], 1000));
+                Assert.assertEquals(chunk.length * chunkNum, out.size());
+                Assert.assertEquals(dest, prefetch.get());
+                dest.delete();
+            }
+            Assert.assertEquals(2, registry.getCoalescedCount());
+        } finally {
+            pool.shutdown();
+            dest.delete();
+        }
+    }
+
+    /**
+     * 所有跟随的请求离开后取消异步填充,同步填充不取消
+     */
+    @Test
+    public void cancelOnLeaveTest() throws Exception {
+        FileFillRegistry registry = new FileFillRegistry();
+        File fillFile = new File("d.txt.fill");
+        CompletableFuture<File> loading = new CompletableFuture<>();
+        FileFill fill = registry.fillAsync("d.txt", fillFile, () -> loading);
+        Assert.assertSame(fill, registry.fillAsync("d.txt", fillFile, () -> new CompletableFuture<>()));
+        fill.unfollow();
+        Assert.assertFalse(loading.isCancelled());
+        fill.unfollow();
+        Assert.assertTrue(loading.isCancelled());
+        Assert.assertTrue(fill.getFuture().isCancelled());
+        Assert.assertFalse(registry.isFilling("d.txt"));
+        //取消后的请求重新发起填充
+        FileFill refill = registry.fillAsync("d.txt", fillFile, () -> CompletableFuture.completedFuture(new File("d.txt")));
+        Assert.assertNotSame(fill, refill);
+        Assert.assertEquals(new File("d.txt"), registry.await(refill));
+        refill.unfollow();
+        Assert.assertEquals(2, registry.getFillCount());
+
+        ExecutorService pool = Executors.newFixedThreadPool(1);
+        CountDownLatch filling = new CountDownLatch(1), finish = new CountDownLatch(1);
+        try {
+            Future<File> prefetch = pool.submit(() -> registry.fill("e.txt", fillFile, () -> {
+                filling.countDown();
+                finish.await();
+                return new File("e.txt");
+            }));
+            filling.await();
+            FileFill follow = registry.fillAsync("e.txt", fillFile, () -> new CompletableFuture<>());
+            follow.unfollow();
+            Assert.assertFalse(follow.getFuture().isCancelled());
+            finish.countDown();
+            Assert.assertEquals(new File("e.txt"), prefetch.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
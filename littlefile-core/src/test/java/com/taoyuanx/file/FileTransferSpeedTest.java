@@ -0,0 +1,109 @@
+package com.taoyuanx.file;
+
+import com.taoyuanx.littlefile.web.FileTransfer;
+import org.apache.commons.io.output.NullOutputStream;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * @author dushitaoyuan
+ * @desc 文件输出速度及内存分配对比: 旧的4M堆缓冲区复制 vs FileTransfer 池化缓冲区复制
+ * 非sendfile路径的性能对比, 结果与机器相关, 不参与默认测试, 需要时手动运行
+ * @date 2026/10/18
+ */
+public class FileTransferSpeedTest {
+    private static File file;
+    private static final int FILE_SIZE = 16 << 20;
+    private static final int CONCURRENT = 32;
+    private static final int ROUND = 4;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        file = File.createTempFile("transfer", ".bin");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(FILE_SIZE);
+        }
+    }
+
+    @AfterClass
+    public static void destroy() {
+        file.delete();
+    }
+
+    /**
+     * 测试结论(参考): 池化缓冲区复制耗时与旧方式相近,每次请求的堆内存分配从4M降到KB级别
+     */
+    @Ignore("benchmark, run manually")
+    @Test
+    public void compareTest() throws Exception {
+        //预热
+        run("warm old", this::oldHandle);
+        run("warm new", this::newHandle);
+        run("old heap buffer", this::oldHandle);
+        run("pooled buffer copy", this::newHandle);
+    }
+
+    private long[] run(String name, Handle handle) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(CONCURRENT);
+        long start = System.currentTimeMillis();
+        List<Future<Long>> results = new ArrayList<>();
+        for (int i = 0; i < CONCURRENT * ROUND; i++) {
+            results.add(pool.submit(() -> {
+                long before = allocatedBytes();
+                handle.handle(file, NullOutputStream.NULL_OUTPUT_STREAM);
+                return allocatedBytes() - before;
+            }));
+        }
+        long allocated = 0;
+        for (Future<Long> result : results) {
+            allocated += result.get();
+        }
+        long cost = System.currentTimeMillis() - start;
+        pool.shutdown();
+        long perRequest = allocated / results.size();
+        System.out.println(name + " 耗时:" + cost + "ms, 每次请求分配内存:" + perRequest + " bytes");
+        return new long[]{cost, perRequest};
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * 旧实现: FileHandler.handle
+     */
+    private void oldHandle(File localFile, OutputStream out) throws Exception {
+        FileChannel channel = new FileInputStream(localFile).getChannel();
+        ByteBuffer buffer = ByteBuffer.allocate(1024 * 1024 * 4);
+        int len = 0;
+        while ((len = channel.read(buffer)) > 0) {
+            buffer.flip();
+            out.write(buffer.array(), 0, len);
+            buffer.clear();
+        }
+        channel.close();
+    }
+
+    private void newHandle(File localFile, OutputStream out) throws Exception {
+        FileTransfer.copy(localFile, 0, localFile.length(), out);
+    }
+
+    interface Handle {
+        void handle(File localFile, OutputStream out) throws Exception;
+    }
+}
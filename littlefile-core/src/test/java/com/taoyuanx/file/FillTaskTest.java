@@ -0,0 +1,61 @@
+package com.taoyuanx.file;
+
+import com.taoyuanx.littlefile.support.FillTask;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author dushitaoyuan
+ * @desc 异步填充测试: 队列满时拒绝, 取消时中止传输
+ * @date 2026/10/18
+ */
+public class FillTaskTest {
+
+    @Test
+    public void cancelTest() throws Exception {
+        ExecutorService executor = FillTask.newExecutor("littlefile-test", 1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch aborted = new CountDownLatch(1);
+        AtomicReference<Exception> error = new AtomicReference<>();
+        FillTask running = FillTask.submit(executor, task -> {
+            started.countDown();
+            try (OutputStream out = task.abortable(new ByteArrayOutputStream())) {
+                //模拟不响应中断的阻塞传输
+                while (true) {
+                    out.write(new byte[16], 0, 16);
+                    long deadline = System.currentTimeMillis() + 10;
+                    while (System.currentTimeMillis() < deadline) {
+                    }
+                }
+            } catch (InterruptedIOException e) {
+                error.set(e);
+                aborted.countDown();
+                throw e;
+            }
+        });
+        FillTask queued = FillTask.submit(executor, task -> null);
+        FillTask rejected = FillTask.submit(executor, task -> null);
+        try {
+            rejected.get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(running.cancel(true));
+        Assert.assertTrue(aborted.await(5, TimeUnit.SECONDS));
+        Assert.assertNotNull(error.get());
+        Assert.assertNull(queued.get(5, TimeUnit.SECONDS));
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,44 @@
+package com.taoyuanx.file;
+
+import com.taoyuanx.littlefile.ftp.FtpClientPool;
+import com.taoyuanx.littlefile.ftp.FtpClientPool.PooledClient;
+import org.apache.commons.net.ftp.FTPClient;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author dushitaoyuan
+ * @desc ftp 连接池测试: 连接复用, 异常连接关闭
+ * @date 2026/10/18
+ */
+public class FtpClientPoolTest {
+
+    @Test
+    public void reuseTest() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        FtpClientPool pool = new FtpClientPool(() -> {
+            created.incrementAndGet();
+            return new FTPClient() {
+                @Override
+                public boolean isConnected() {
+                    return true;
+                }
+            };
+        }, 2, 60000, 60000);
+        PooledClient first = pool.borrow();
+        pool.release(first, false);
+        PooledClient second = pool.borrow();
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, pool.getActiveCount());
+        //异常的连接不再复用
+        pool.release(second, true);
+        Assert.assertEquals(0, pool.getIdleCount());
+        pool.release(pool.borrow(), false);
+        Assert.assertEquals(2, created.get());
+        Assert.assertEquals(1, pool.getIdleCount());
+        pool.close();
+        Assert.assertEquals(0, pool.getIdleCount());
+    }
+}
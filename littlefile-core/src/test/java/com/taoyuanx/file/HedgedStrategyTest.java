@@ -0,0 +1,188 @@
+package com.taoyuanx.file;
+
+import com.taoyuanx.littlefile.cache.CacheEntry;
+import com.taoyuanx.littlefile.support.FillTask;
+import com.taoyuanx.littlefile.support.impl.HedgedStrategy;
+import com.taoyuanx.littlefile.support.impl.LocalStrategy;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author dushitaoyuan
+ * @desc 对冲下载测试: 主下载慢时对冲下载先完成, 中止主下载并清理临时文件, 对冲延迟按文件大小计算, 同步下载线程均忙时拒绝
+ * @date 2026/10/18
+ */
+public class HedgedStrategyTest {
+
+    @Test
+    public void hedgeTest() throws Exception {
+        File sourceDir = Files.createTempDirectory("littlefile-source").toFile();
+        File cacheDir = Files.createTempDirectory("littlefile-cache").toFile();
+        try {
+            byte[] data = new byte[64 * 1024];
+            new Random(1).nextBytes(data);
+            Files.write(new File(sourceDir, "a.bin").toPath(), data);
+            LocalStrategy fast = new LocalStrategy(new String[]{sourceDir.getAbsolutePath()});
+            LocalStrategy slow = new LocalStrategy(new String[]{sourceDir.getAbsolutePath()}) {
+                @Override
+                public CacheEntry downWithMeta(String src, String dest) throws Exception {
+                    Thread.sleep(5000);
+                    return super.downWithMeta(src, dest);
+                }
+            };
+            HedgedStrategy strategy = new HedgedStrategy(slow, fast, 100, 10, 4);
+            File dest = new File(cacheDir, "a.bin");
+            long start = System.currentTimeMillis();
+            strategy.downWithMeta("a.bin", dest.getAbsolutePath());
+            Assert.assertTrue(System.currentTimeMillis() - start < 3000);
+            Assert.assertArrayEquals(data, Files.readAllBytes(dest.toPath()));
+            Assert.assertEquals(1, strategy.getHedgedCount());
+            Assert.assertEquals(1, strategy.getHedgeWinCount());
+            Thread.sleep(200);
+            Assert.assertEquals(1, cacheDir.list().length);
+        } finally {
+            FileUtils.deleteDirectory(sourceDir);
+            FileUtils.deleteDirectory(cacheDir);
+        }
+    }
+
+    /**
+     * 异步下载: 对冲下载先完成时, 主下载经可中止的传输停止
+     */
+    @Test
+    public void abortLoserTest() throws Exception {
+        File sourceDir = Files.createTempDirectory("littlefile-source").toFile();
+        File cacheDir = Files.createTempDirectory("littlefile-cache").toFile();
+        ExecutorService executor = FillTask.newExecutor("littlefile-io-test", 2, 10);
+        try {
+            Files.write(new File(sourceDir, "a.bin").toPath(), "hello".getBytes());
+            CountDownLatch aborted = new CountDownLatch(1);
+            LocalStrategy fast = new LocalStrategy(new String[]{sourceDir.getAbsolutePath()});
+            LocalStrategy blocking = new LocalStrategy(new String[]{sourceDir.getAbsolutePath()}) {
+                @Override
+                public CompletableFuture<CacheEntry> downAsync(String src, String dest, ExecutorService executor) {
+                    return FillTask.submit(executor, task -> {
+                        try (OutputStream out = task.abortable(new FileOutputStream(dest))) {
+                            //模拟不响应中断的阻塞传输
+                            while (true) {
+                                out.write(new byte[16], 0, 16);
+                                long deadline = System.currentTimeMillis() + 10;
+                                while (System.currentTimeMillis() < deadline) {
+                                }
+                            }
+                        } catch (InterruptedIOException e) {
+                            aborted.countDown();
+                            throw e;
+                        }
+                    });
+                }
+            };
+            HedgedStrategy strategy = new HedgedStrategy(blocking, fast, 100, 10, 4);
+            File dest = new File(cacheDir, "a.bin");
+            Assert.assertEquals(5, strategy.downAsync("a.bin", dest.getAbsolutePath(), executor).get(5, TimeUnit.SECONDS).getSize());
+            Assert.assertEquals("hello", new String(Files.readAllBytes(dest.toPath())));
+            Assert.assertTrue(aborted.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(1, strategy.getHedgeWinCount());
+            Thread.sleep(200);
+            Assert.assertEquals(1, cacheDir.list().length);
+        } finally {
+            executor.shutdownNow();
+            FileUtils.deleteDirectory(sourceDir);
+            FileUtils.deleteDirectory(cacheDir);
+        }
+    }
+
+    /**
+     * 对冲延迟按文件大小计算, 大文件耗时较长但未超过按大小计算的延迟时不对冲, 文件大小不在计时线程中获取
+     */
+    @Test
+    public void sizeDelayTest() throws Exception {
+        File sourceDir = Files.createTempDirectory("littlefile-source").toFile();
+        File cacheDir = Files.createTempDirectory("littlefile-cache").toFile();
+        try {
+            Files.write(new File(sourceDir, "a.bin").toPath(), "hello".getBytes());
+            Files.write(new File(sourceDir, "big.bin").toPath(), "hello".getBytes());
+            AtomicReference<String> metaThread = new AtomicReference<>();
+            LocalStrategy local = new LocalStrategy(new String[]{sourceDir.getAbsolutePath()}) {
+                @Override
+                public CacheEntry downWithMeta(String src, String dest) throws Exception {
+                    Thread.sleep("big.bin".equals(src) ? 150 : 20);
+                    return super.downWithMeta(src, dest);
+                }
+
+                @Override
+                public CacheEntry meta(String src) throws Exception {
+                    metaThread.set(Thread.currentThread().getName());
+                    return new CacheEntry(src, "big.bin".equals(src) ? 20 * 1024 * 1024 : 5, 0, -1);
+                }
+            };
+            HedgedStrategy strategy = new HedgedStrategy(local, local, 50, 100, 4);
+            for (int i = 0; i < 30; i++) {
+                strategy.downWithMeta("a.bin", new File(cacheDir, "a" + i).getAbsolutePath());
+            }
+            Assert.assertEquals(0, strategy.getHedgedCount());
+            strategy.downWithMeta("big.bin", new File(cacheDir, "big.bin").getAbsolutePath());
+            Assert.assertEquals(0, strategy.getHedgedCount());
+            Assert.assertNotNull(metaThread.get());
+            Assert.assertFalse(metaThread.get().startsWith("littlefile-hedge-timer"));
+        } finally {
+            FileUtils.deleteDirectory(sourceDir);
+            FileUtils.deleteDirectory(cacheDir);
+        }
+    }
+
+    /**
+     * 同步下载线程均忙时直接拒绝, 不在队列中等待
+     */
+    @Test
+    public void rejectTest() throws Exception {
+        File sourceDir = Files.createTempDirectory("littlefile-source").toFile();
+        File cacheDir = Files.createTempDirectory("littlefile-cache").toFile();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Files.write(new File(sourceDir, "a.bin").toPath(), "hello".getBytes());
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch blocked = new CountDownLatch(1);
+            LocalStrategy slow = new LocalStrategy(new String[]{sourceDir.getAbsolutePath()}) {
+                @Override
+                public CacheEntry downWithMeta(String src, String dest) throws Exception {
+                    started.countDown();
+                    blocked.await();
+                    return super.downWithMeta(src, dest);
+                }
+            };
+            HedgedStrategy strategy = new HedgedStrategy(slow, slow, 60000, 10, 1);
+            Future<CacheEntry> first = executor.submit(() -> strategy.downWithMeta("a.bin", new File(cacheDir, "1").getAbsolutePath()));
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+            long start = System.currentTimeMillis();
+            try {
+                strategy.downWithMeta("a.bin", new File(cacheDir, "2").getAbsolutePath());
+                Assert.fail();
+            } catch (RejectedExecutionException e) {
+            }
+            Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+            blocked.countDown();
+            Assert.assertEquals(5, first.get(5, TimeUnit.SECONDS).getSize());
+        } finally {
+            executor.shutdownNow();
+            FileUtils.deleteDirectory(sourceDir);
+            FileUtils.deleteDirectory(cacheDir);
+        }
+    }
+}
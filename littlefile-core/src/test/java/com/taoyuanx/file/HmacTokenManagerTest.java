@@ -0,0 +1,95 @@
+package com.taoyuanx.file;
+
+import com.taoyuanx.littlefile.web.security.HmacTokenManager;
+import com.taoyuanx.littlefile.web.security.MacEum;
+import com.taoyuanx.littlefile.web.security.TokenException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author dushitaoyuan
+ * @desc token 校验测试: 并发正确性, 过期, 已校验token缓存对比
+ * @date 2026/10/18
+ */
+public class HmacTokenManagerTest {
+    private static final int CONCURRENT = 32;
+    private static final int TOKEN_NUM = 64;
+    private static final int ROUND = 5000;
+
+    @Test
+    public void expireTest() throws Exception {
+        HmacTokenManager tokenManager = new HmacTokenManager(MacEum.SHA256, "password");
+        String token = tokenManager.create(signMap("group1/a.png"), 1000L, TimeUnit.MILLISECONDS);
+        Assert.assertEquals("group1/a.png", tokenManager.vafy(token).get("f"));
+        Assert.assertEquals(1, tokenManager.getCachedCount());
+        Thread.sleep(1200);
+        //缓存中的token过期后同样校验失败
+        try {
+            tokenManager.vafy(token);
+            Assert.fail();
+        } catch (TokenException e) {
+            Assert.assertEquals(0, tokenManager.getCachedCount());
+        }
+        try {
+            tokenManager.vafy(token.substring(0, token.length() - 2) + "AA");
+            Assert.fail();
+        } catch (TokenException e) {
+        }
+    }
+
+    /**
+     * 测试结论(参考): 多线程校验结果全部正确,开启缓存后热点token校验耗时降低一个数量级
+     */
+    @Test
+    public void contentionTest() throws Exception {
+        HmacTokenManager creator = new HmacTokenManager(MacEum.SHA256, "password");
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < TOKEN_NUM; i++) {
+            tokens.add(creator.create(signMap("group1/" + i + ".png"), 30L, TimeUnit.MINUTES));
+        }
+        //预热
+        run("warm", new HmacTokenManager(MacEum.SHA256, "password", 0), tokens);
+        long uncached = run("no cache", new HmacTokenManager(MacEum.SHA256, "password", 0), tokens);
+        long cached = run("verified cache", new HmacTokenManager(MacEum.SHA256, "password"), tokens);
+        Assert.assertTrue(cached < uncached);
+    }
+
+    private long run(String name, HmacTokenManager tokenManager, List<String> tokens) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(CONCURRENT);
+        long start = System.currentTimeMillis();
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < CONCURRENT; i++) {
+            results.add(pool.submit(() -> {
+                for (int j = 0; j < ROUND; j++) {
+                    int index = j % TOKEN_NUM;
+                    Map<String, Object> signData = tokenManager.vafy(tokens.get(index));
+                    Assert.assertEquals("group1/" + index + ".png", signData.get("f"));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        long cost = System.currentTimeMillis() - start;
+        pool.shutdown();
+        System.out.println(name + " 耗时:" + cost + "ms, 校验次数:" + CONCURRENT * ROUND);
+        return cost;
+    }
+
+    private Map<String, Object> signMap(String file) {
+        Map<String, Object> signMap = new HashMap<>();
+        signMap.put("f", file);
+        signMap.put("t", "1");
+        return signMap;
+    }
+}
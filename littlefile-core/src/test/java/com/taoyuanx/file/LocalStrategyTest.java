@@ -0,0 +1,61 @@
+package com.taoyuanx.file;
+
+import com.taoyuanx.littlefile.support.BackendFileNotFoundException;
+import com.taoyuanx.littlefile.support.impl.LocalStrategy;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * @author dushitaoyuan
+ * @desc 本地模式测试: 多个本地目录查找, 硬链接写入缓存, 直接输出源文件, 仅后端文件不存在视为不存在
+ * @date 2026/10/18
+ */
+public class LocalStrategyTest {
+
+    @Test
+    public void localTest() throws Exception {
+        File dir1 = Files.createTempDirectory("littlefile-local1").toFile();
+        File dir2 = Files.createTempDirectory("littlefile-local2").toFile();
+        File cacheDir = Files.createTempDirectory("littlefile-cache").toFile();
+        try {
+            File source = new File(dir2, "a/b/c.txt");
+            source.getParentFile().mkdirs();
+            Files.write(source.toPath(), "hello".getBytes());
+            LocalStrategy strategy = new LocalStrategy(new String[]{dir1.getAbsolutePath(), dir2.getAbsolutePath()});
+            Assert.assertNull(strategy.localFile("a/b/c.txt"));
+
+            File dest = new File(cacheDir, "c.txt");
+            Assert.assertEquals(5, strategy.downWithMeta("a/b/c.txt", dest.getAbsolutePath()).getSize());
+            //同一文件系统硬链接,不复制数据
+            Assert.assertTrue(Files.isSameFile(source.toPath(), dest.toPath()));
+
+            strategy.setDirect(true);
+            Assert.assertEquals(source.getCanonicalFile(), strategy.localFile("a/b/c.txt").getCanonicalFile());
+            Assert.assertNull(strategy.localFile("a/b/none.txt"));
+            try {
+                strategy.downWithMeta("a/b/none.txt", new File(cacheDir, "none.txt").getAbsolutePath());
+                Assert.fail();
+            } catch (BackendFileNotFoundException e) {
+            }
+            //缓存目录无法写入不是文件不存在
+            File blocked = new File(cacheDir, "blocked");
+            Assert.assertTrue(blocked.createNewFile());
+            try {
+                strategy.downWithMeta("a/b/c.txt", new File(blocked, "c.txt").getAbsolutePath());
+                Assert.fail();
+            } catch (BackendFileNotFoundException e) {
+                Assert.fail();
+            } catch (IOException e) {
+            }
+        } finally {
+            FileUtils.deleteDirectory(dir1);
+            FileUtils.deleteDirectory(dir2);
+            FileUtils.deleteDirectory(cacheDir);
+        }
+    }
+}
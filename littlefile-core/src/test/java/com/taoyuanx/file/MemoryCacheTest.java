@@ -0,0 +1,80 @@
+package com.taoyuanx.file;
+
+import com.taoyuanx.littlefile.cache.CacheEntry;
+import com.taoyuanx.littlefile.cache.MemoryCache;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * @author dushitaoyuan
+ * @desc 内存缓存测试: 容量限制, 按访问频率淘汰及准入, 命中率统计
+ * @date 2026/10/18
+ */
+public class MemoryCacheTest {
+    private static final int FILE_SIZE = 1024;
+    private File dir;
+
+    @Before
+    public void init() throws Exception {
+        dir = Files.createTempDirectory("littlefile-memory").toFile();
+    }
+
+    @After
+    public void destroy() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void evictionTest() throws Exception {
+        MemoryCache memoryCache = new MemoryCache(4 * FILE_SIZE, 2 * FILE_SIZE);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertNull(memoryCache.get("hot" + i));
+            Assert.assertTrue(memoryCache.put(entry("hot" + i), file("hot" + i, (byte) i)));
+        }
+        Assert.assertEquals(4 * FILE_SIZE, memoryCache.getUsedBytes());
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 4; i++) {
+                Assert.assertNotNull(memoryCache.get("hot" + i));
+            }
+        }
+        //只访问过一次的文件不能淘汰热点文件
+        memoryCache.get("cold");
+        Assert.assertFalse(memoryCache.put(entry("cold"), file("cold", (byte) 9)));
+        Assert.assertEquals(1, memoryCache.getRejectCount());
+        //访问频率更高的文件淘汰频率最低的文件
+        for (int i = 0; i < 10; i++) {
+            memoryCache.get("hotter");
+        }
+        Assert.assertTrue(memoryCache.put(entry("hotter"), file("hotter", (byte) 7)));
+        Assert.assertEquals(1, memoryCache.getEvictionCount());
+        Assert.assertEquals(4, memoryCache.size());
+        Assert.assertEquals(4 * FILE_SIZE, memoryCache.getUsedBytes());
+
+        ByteBuffer data = memoryCache.get("hotter").getData();
+        Assert.assertEquals(FILE_SIZE, data.remaining());
+        Assert.assertEquals(7, data.get(FILE_SIZE - 1));
+        //超过单个文件大小限制不缓存
+        Assert.assertFalse(memoryCache.isAdmissible(new CacheEntry("big", 3 * FILE_SIZE, 0, -1)));
+        Assert.assertTrue(memoryCache.getHitRatio() > 0.5);
+    }
+
+    private CacheEntry entry(String key) {
+        return new CacheEntry(key, FILE_SIZE, 0, -1);
+    }
+
+    private File file(String name, byte value) throws Exception {
+        File file = new File(dir, name);
+        byte[] data = new byte[FILE_SIZE];
+        Arrays.fill(data, value);
+        Files.write(file.toPath(), data);
+        return file;
+    }
+}
@@ -0,0 +1,31 @@
+package com.taoyuanx.file;
+
+import com.taoyuanx.littlefile.cache.NegativeCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author dushitaoyuan
+ * @desc 不存在文件缓存测试: 过期及个数上限
+ * @date 2026/10/18
+ */
+public class NegativeCacheTest {
+
+    @Test
+    public void missingTest() throws Exception {
+        NegativeCache negativeCache = new NegativeCache(500, 3);
+        Assert.assertFalse(negativeCache.isMissing("a"));
+        negativeCache.put("a");
+        Assert.assertTrue(negativeCache.isMissing("a"));
+        Assert.assertTrue(negativeCache.isMissing("a"));
+        Assert.assertEquals(2, negativeCache.getSuppressedCount());
+        //超出个数淘汰最早加入的
+        negativeCache.put("b");
+        negativeCache.put("c");
+        negativeCache.put("d");
+        Assert.assertEquals(3, negativeCache.size());
+        Assert.assertFalse(negativeCache.isMissing("a"));
+        Thread.sleep(600);
+        Assert.assertFalse(negativeCache.isMissing("d"));
+    }
+}
@@ -0,0 +1,168 @@
+package com.taoyuanx.file;
+
+import com.taoyuanx.littlefile.cache.CacheEntry;
+import com.taoyuanx.littlefile.cache.FileFill;
+import com.taoyuanx.littlefile.cache.FileFillRegistry;
+import com.taoyuanx.littlefile.support.FillTask;
+import com.taoyuanx.littlefile.support.impl.LocalStrategy;
+import com.taoyuanx.littlefile.support.impl.ParallelFillStrategy;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author dushitaoyuan
+ * @desc 并行分段下载测试: 分段并发下载, 失败的段单独重试, 异步下载可取消, 边下载边读取不会读到未下载的部分
+ * @date 2026/10/18
+ */
+public class ParallelFillStrategyTest {
+    private static final int PART_SIZE = 256 * 1024;
+
+    @Test
+    public void downTest() throws Exception {
+        File sourceDir = Files.createTempDirectory("littlefile-source").toFile();
+        File cacheDir = Files.createTempDirectory("littlefile-cache").toFile();
+        try {
+            byte[] data = new byte[10 * PART_SIZE + 100];
+            new Random(1).nextBytes(data);
+            Files.write(new File(sourceDir, "big.bin").toPath(), data);
+            AtomicInteger rangeCount = new AtomicInteger();
+            AtomicInteger failCount = new AtomicInteger();
+            LocalStrategy local = new LocalStrategy(new String[]{sourceDir.getAbsolutePath()}) {
+                @Override
+                public byte[] downRange(String src, long offset, int length) throws Exception {
+                    rangeCount.incrementAndGet();
+                    //第3段首次下载失败
+                    if (offset == 3L * PART_SIZE && failCount.getAndIncrement() == 0) {
+                        throw new IOException("connection reset");
+                    }
+                    return super.downRange(src, offset, length);
+                }
+            };
+            ParallelFillStrategy strategy = new ParallelFillStrategy(local, PART_SIZE, PART_SIZE, 4);
+            File dest = new File(cacheDir, "big.bin");
+            CacheEntry meta = strategy.downWithMeta("big.bin", dest.getAbsolutePath());
+            Assert.assertEquals(data.length, meta.getSize());
+            Assert.assertArrayEquals(data, Files.readAllBytes(dest.toPath()));
+            Assert.assertEquals(12, rangeCount.get());
+
+            //小于阈值的文件不分段
+            Files.write(new File(sourceDir, "small.bin").toPath(), new byte[100]);
+            rangeCount.set(0);
+            strategy.downWithMeta("small.bin", new File(cacheDir, "small.bin").getAbsolutePath());
+            Assert.assertEquals(0, rangeCount.get());
+        } finally {
+            FileUtils.deleteDirectory(sourceDir);
+            FileUtils.deleteDirectory(cacheDir);
+        }
+    }
+
+    /**
+     * 异步下载: 小文件转给实际下载策略的异步下载, 取消后不再下载新的分段
+     */
+    @Test
+    public void downAsyncTest() throws Exception {
+        File sourceDir = Files.createTempDirectory("littlefile-source").toFile();
+        File cacheDir = Files.createTempDirectory("littlefile-cache").toFile();
+        ExecutorService executor = FillTask.newExecutor("littlefile-io-test", 2, 10);
+        try {
+            byte[] data = new byte[10 * PART_SIZE];
+            new Random(1).nextBytes(data);
+            Files.write(new File(sourceDir, "big.bin").toPath(), data);
+            Files.write(new File(sourceDir, "small.bin").toPath(), new byte[100]);
+            AtomicInteger asyncCount = new AtomicInteger();
+            AtomicInteger rangeCount = new AtomicInteger();
+            CountDownLatch ranging = new CountDownLatch(1);
+            LocalStrategy local = new LocalStrategy(new String[]{sourceDir.getAbsolutePath()}) {
+                @Override
+                public CompletableFuture<CacheEntry> downAsync(String src, String dest, ExecutorService executor) {
+                    asyncCount.incrementAndGet();
+                    return super.downAsync(src, dest, executor);
+                }
+
+                @Override
+                public byte[] downRange(String src, long offset, int length) throws Exception {
+                    rangeCount.incrementAndGet();
+                    ranging.countDown();
+                    Thread.sleep(100);
+                    return super.downRange(src, offset, length);
+                }
+            };
+            ParallelFillStrategy strategy = new ParallelFillStrategy(local, PART_SIZE, PART_SIZE, 2);
+            Assert.assertEquals(100, strategy.downAsync("small.bin", new File(cacheDir, "small.bin").getAbsolutePath(), executor)
+                    .get(5, TimeUnit.SECONDS).getSize());
+            Assert.assertEquals(1, asyncCount.get());
+            Assert.assertEquals(0, rangeCount.get());
+
+            CompletableFuture<CacheEntry> task = strategy.downAsync("big.bin", new File(cacheDir, "big.bin").getAbsolutePath(), executor);
+            Assert.assertTrue(ranging.await(5, TimeUnit.SECONDS));
+            Assert.assertTrue(task.cancel(true));
+            Thread.sleep(500);
+            Assert.assertTrue(rangeCount.get() < 10);
+            Assert.assertEquals(1, asyncCount.get());
+        } finally {
+            executor.shutdownNow();
+            FileUtils.deleteDirectory(sourceDir);
+            FileUtils.deleteDirectory(cacheDir);
+        }
+    }
+
+    /**
+     * 边下载边读取: 后面的段先完成时, 读取方不能读到前面未下载的空洞
+     */
+    @Test
+    public void streamThroughTest() throws Exception {
+        File sourceDir = Files.createTempDirectory("littlefile-source").toFile();
+        File cacheDir = Files.createTempDirectory("littlefile-cache").toFile();
+        ExecutorService executor = FillTask.newExecutor("littlefile-io-test", 2, 10);
+        try {
+            byte[] data = new byte[8 * PART_SIZE];
+            new Random(1).nextBytes(data);
+            Files.write(new File(sourceDir, "big.bin").toPath(), data);
+            LocalStrategy local = new LocalStrategy(new String[]{sourceDir.getAbsolutePath()}) {
+                @Override
+                public byte[] downRange(String src, long offset, int length) throws Exception {
+                    //第一段最后完成
+                    Thread.sleep(offset == 0 ? 300 : 10);
+                    return super.downRange(src, offset, length);
+                }
+            };
+            ParallelFillStrategy strategy = new ParallelFillStrategy(local, PART_SIZE, PART_SIZE, 4);
+            File fillFile = new File(cacheDir, "big.bin.fill");
+            File dest = new File(cacheDir, "big.bin");
+            FileFill fill = new FileFillRegistry().fillAsync("big.bin", fillFile,
+                    () -> strategy.downAsync("big.bin", fillFile.getAbsolutePath(), executor).thenApply(meta -> {
+                        try {
+                            Files.move(fillFile.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                            return dest;
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                fill.transferTo(out, new byte[8192], 5000);
+            } finally {
+                fill.unfollow();
+            }
+            Assert.assertArrayEquals(data, out.toByteArray());
+            Assert.assertArrayEquals(data, Files.readAllBytes(dest.toPath()));
+        } finally {
+            executor.shutdownNow();
+            FileUtils.deleteDirectory(sourceDir);
+            FileUtils.deleteDirectory(cacheDir);
+        }
+    }
+}
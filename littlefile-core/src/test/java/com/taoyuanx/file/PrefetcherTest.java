@@ -0,0 +1,65 @@
+package com.taoyuanx.file;
+
+import com.taoyuanx.littlefile.cache.CacheEntry;
+import com.taoyuanx.littlefile.cache.CacheIndex;
+import com.taoyuanx.littlefile.cache.Prefetcher;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author dushitaoyuan
+ * @desc 缓存预取测试: 已缓存跳过, 失败计数, 预热列表按最近访问顺序保存及读取
+ * @date 2026/10/18
+ */
+public class PrefetcherTest {
+
+    @Test
+    public void prefetchTest() throws Exception {
+        Set<String> cached = ConcurrentHashMap.newKeySet();
+        cached.add("a.txt");
+        Prefetcher prefetcher = new Prefetcher(path -> {
+            if (path.startsWith("none")) {
+                throw new FileNotFoundException(path);
+            }
+            return cached.add(path);
+        }, () -> 0, 2);
+        try {
+            Prefetcher.Progress progress = prefetcher.prefetch(Arrays.asList("a.txt", "b.txt", "c.txt", "none.txt"));
+            Assert.assertTrue(progress.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(4, progress.getDone());
+            Assert.assertEquals(2, progress.getFetched());
+            Assert.assertEquals(1, progress.getCached());
+            Assert.assertEquals(1, progress.getFailed());
+            Assert.assertTrue(cached.containsAll(Arrays.asList("b.txt", "c.txt")));
+            Assert.assertTrue(prefetcher.prefetch(Arrays.asList()).isDone());
+        } finally {
+            prefetcher.shutdown();
+        }
+    }
+
+    @Test
+    public void hotTest() throws Exception {
+        CacheIndex cacheIndex = new CacheIndex();
+        for (String key : Arrays.asList("a", "b", "c", "d")) {
+            cacheIndex.put(new CacheEntry(key, 1, 0, -1));
+        }
+        cacheIndex.get("a");
+        File hotFile = File.createTempFile("littlefile", ".hot");
+        try {
+            Prefetcher.saveHot(hotFile, Prefetcher.hottest(cacheIndex, 3));
+            List<String> paths = Prefetcher.loadHot(hotFile, 2);
+            Assert.assertEquals(Arrays.asList("a", "d"), paths);
+            Assert.assertTrue(Prefetcher.loadHot(new File(hotFile.getAbsolutePath() + ".none"), 2).isEmpty());
+        } finally {
+            hotFile.delete();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.taoyuanx.file;
+
+import com.taoyuanx.littlefile.cache.CacheEntry;
+import com.taoyuanx.littlefile.config.LittleFileConfig;
+import com.taoyuanx.littlefile.support.FileDownStrategy;
+import com.taoyuanx.littlefile.support.FillTask;
+import com.taoyuanx.littlefile.support.impl.LocalStrategy;
+import com.taoyuanx.littlefile.support.impl.RoutingStrategy;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author dushitaoyuan
+ * @desc 多后端路由测试: 按前缀及正则选择后端, 未匹配且无默认后端时文件不存在, 各后端使用各自的下载线程池
+ * @date 2026/10/18
+ */
+public class RoutingStrategyTest {
+
+    @Test
+    public void routeTest() throws Exception {
+        File dir1 = Files.createTempDirectory("littlefile-local1").toFile();
+        File dir2 = Files.createTempDirectory("littlefile-local2").toFile();
+        File cacheDir = Files.createTempDirectory("littlefile-cache").toFile();
+        File config = File.createTempFile("littlefile", ".properties");
+        try {
+            Files.write(new File(dir1, "a.txt").toPath(), "hello".getBytes());
+            Files.write(new File(dir2, "a.txt").toPath(), "hello world".getBytes());
+            Files.write(config.toPath(), Arrays.asList(
+                    "littlefile.fileHandle.url_format=http://localhost/file/{0}",
+                    "littlefile.file.io_thread_num=4",
+                    "littlefile.routes=one,two",
+                    "littlefile.route.one.server_type=LOCAL",
+                    "littlefile.route.one.prefix=group1/,group2/",
+                    "littlefile.route.one.local.dirs=" + dir1.getAbsolutePath().replace('\\', '/'),
+                    "littlefile.route.two.server_type=LOCAL",
+                    "littlefile.route.two.pattern=^o_",
+                    "littlefile.route.two.file.io_thread_num=1",
+                    "littlefile.route.two.local.dirs=" + dir2.getAbsolutePath().replace('\\', '/')));
+            FileDownStrategy strategy = new LittleFileConfig(config.getAbsolutePath()).getFileDownStrategy(cacheDir.getAbsolutePath());
+            Assert.assertTrue(strategy instanceof RoutingStrategy);
+            RoutingStrategy routing = (RoutingStrategy) strategy;
+            Assert.assertTrue(routing.getStrategy("one") instanceof LocalStrategy);
+            Assert.assertSame(routing.getStrategy("two"), routing.route("o_a.txt"));
+
+            Assert.assertEquals(5, routing.getStrategy("one").downWithMeta("a.txt", new File(cacheDir, "1").getAbsolutePath()).getSize());
+            Assert.assertSame(routing.getStrategy("one"), routing.route("group2/a.txt"));
+            try {
+                routing.route("group3/a.txt");
+                Assert.fail();
+            } catch (FileNotFoundException e) {
+            }
+            Assert.assertFalse(routing.isRangeSupported("group3/a.txt"));
+
+            //未开启隔离舱时各后端同样使用各自的下载线程池,线程数可按后端配置
+            Assert.assertEquals(4, ((ThreadPoolExecutor) routing.getExecutor("one")).getMaximumPoolSize());
+            Assert.assertEquals(1, ((ThreadPoolExecutor) routing.getExecutor("two")).getMaximumPoolSize());
+        } finally {
+            config.delete();
+            FileUtils.deleteDirectory(dir1);
+            FileUtils.deleteDirectory(dir2);
+            FileUtils.deleteDirectory(cacheDir);
+        }
+    }
+
+    /**
+     * 异步下载在所在后端的线程池中执行, 未设置线程池时使用调用方的线程池
+     */
+    @Test
+    public void executorTest() throws Exception {
+        File dir = Files.createTempDirectory("littlefile-local").toFile();
+        File cacheDir = Files.createTempDirectory("littlefile-cache").toFile();
+        ExecutorService shared = FillTask.newExecutor("littlefile-io", 1, 10);
+        ExecutorService backend = FillTask.newExecutor("littlefile-io-one", 1, 10);
+        try {
+            Files.write(new File(dir, "a.txt").toPath(), "hello".getBytes());
+            Files.write(new File(dir, "b.txt").toPath(), "hello".getBytes());
+            AtomicReference<String> threadName = new AtomicReference<>();
+            LocalStrategy local = new LocalStrategy(new String[]{dir.getAbsolutePath()}) {
+                @Override
+                public CacheEntry downWithMeta(String src, String dest) throws Exception {
+                    threadName.set(Thread.currentThread().getName());
+                    return super.downWithMeta(src, dest);
+                }
+            };
+            RoutingStrategy routing = new RoutingStrategy(local)
+                    .addRoute("one", new String[]{"a"}, null, local, backend);
+            Assert.assertEquals(5, routing.downAsync("a.txt", new File(cacheDir, "1").getAbsolutePath(), shared)
+                    .get(5, TimeUnit.SECONDS).getSize());
+            Assert.assertTrue(threadName.get().startsWith("littlefile-io-one"));
+            Assert.assertEquals(5, routing.downAsync("b.txt", new File(cacheDir, "2").getAbsolutePath(), shared)
+                    .get(5, TimeUnit.SECONDS).getSize());
+            Assert.assertFalse(threadName.get().startsWith("littlefile-io-one"));
+        } finally {
+            shared.shutdownNow();
+            backend.shutdownNow();
+            FileUtils.deleteDirectory(dir);
+            FileUtils.deleteDirectory(cacheDir);
+        }
+    }
+}
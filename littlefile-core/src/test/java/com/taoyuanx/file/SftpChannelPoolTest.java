@@ -0,0 +1,76 @@
+package com.taoyuanx.file;
+
+import com.jcraft.jsch.FakeSession;
+import com.taoyuanx.littlefile.sftp.SftpChannelPool;
+import com.taoyuanx.littlefile.sftp.SftpChannelPool.PooledChannel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author dushitaoyuan
+ * @desc sftp 连接池测试: 会话内通道复用, 过期会话关闭
+ * @date 2026/10/18
+ */
+public class SftpChannelPoolTest {
+
+    @Test
+    public void reuseTest() throws Exception {
+        List<FakeSession> created = new ArrayList<>();
+        SftpChannelPool pool = new SftpChannelPool(() -> {
+            FakeSession session = new FakeSession();
+            created.add(session);
+            return session;
+        }, null, 2, 2, 60000, 60000);
+        PooledChannel first = pool.borrow();
+        pool.release(first, false);
+        Assert.assertSame(first, pool.borrow());
+        //同一会话打开第二个通道
+        PooledChannel second = pool.borrow();
+        Assert.assertEquals(1, created.size());
+        Assert.assertEquals(2, created.get(0).getChannelCount());
+        //会话通道已满时新建会话
+        PooledChannel third = pool.borrow();
+        Assert.assertEquals(2, created.size());
+        Assert.assertEquals(2, pool.getSessionCount());
+        pool.release(first, false);
+        pool.release(second, true);
+        pool.release(third, false);
+        Assert.assertEquals(2, pool.getIdleCount());
+        pool.close();
+        Assert.assertEquals(0, pool.getIdleCount());
+        Assert.assertEquals(0, pool.getSessionCount());
+        for (FakeSession session : created) {
+            Assert.assertFalse(session.isConnected());
+        }
+    }
+
+    @Test
+    public void expireTest() throws Exception {
+        List<FakeSession> created = new ArrayList<>();
+        SftpChannelPool pool = new SftpChannelPool(() -> {
+            FakeSession session = new FakeSession();
+            created.add(session);
+            return session;
+        }, null, 2, 1, 50, 300);
+        PooledChannel first = pool.borrow(), second = pool.borrow();
+        Assert.assertEquals(2, created.size());
+        pool.release(first, false);
+        //空闲超时的通道关闭,会话未过期时保留
+        Thread.sleep(100);
+        pool.release(second, false);
+        Assert.assertEquals(1, pool.getIdleCount());
+        Assert.assertTrue(created.get(0).isConnected());
+        //没有通道的会话超过最长存活时间后关闭
+        Thread.sleep(300);
+        PooledChannel pooled = pool.borrow();
+        Assert.assertEquals(3, created.size());
+        Assert.assertFalse(created.get(0).isConnected());
+        Assert.assertFalse(created.get(1).isConnected());
+        Assert.assertEquals(1, pool.getSessionCount());
+        pool.release(pooled, false);
+        pool.close();
+    }
+}
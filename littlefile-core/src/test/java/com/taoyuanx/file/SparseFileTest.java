@@ -0,0 +1,180 @@
+package com.taoyuanx.file;
+
+import com.taoyuanx.littlefile.cache.CacheEntry;
+import com.taoyuanx.littlefile.cache.CacheManifest;
+import com.taoyuanx.littlefile.cache.FileFillRegistry;
+import com.taoyuanx.littlefile.cache.SparseCache;
+import com.taoyuanx.littlefile.cache.SparseFile;
+import com.taoyuanx.littlefile.support.impl.LocalStrategy;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author dushitaoyuan
+ * @desc 稀疏缓存测试: 按块下载, 断点恢复, 下载完成后转为完整缓存, 读取中的稀疏文件延迟删除, 后端文件被覆盖或无法校验时不沿用已下载的块
+ * @date 2026/10/18
+ */
+public class SparseFileTest {
+    private static final int BLOCK_SIZE = 1 << 20;
+    private File sourceDir, cacheDir;
+    private byte[] data;
+
+    @Before
+    public void init() throws Exception {
+        sourceDir = Files.createTempDirectory("littlefile-source").toFile();
+        cacheDir = Files.createTempDirectory("littlefile-cache").toFile();
+        data = new byte[5 * BLOCK_SIZE + 100];
+        new Random(1).nextBytes(data);
+        Files.write(new File(sourceDir, "video.mp4").toPath(), data);
+    }
+
+    @After
+    public void destroy() throws Exception {
+        FileUtils.deleteDirectory(sourceDir);
+        FileUtils.deleteDirectory(cacheDir);
+    }
+
+    @Test
+    public void rangeTest() throws Exception {
+        LocalStrategy strategy = new LocalStrategy(new String[]{sourceDir.getAbsolutePath()});
+        File cacheFile = new File(cacheDir, "video.mp4");
+        AtomicInteger completeCount = new AtomicInteger();
+        SparseCache sparseCache = new SparseCache(BLOCK_SIZE, strategy, new FileFillRegistry(), (entry, file) -> completeCount.incrementAndGet());
+        SparseFile sparseFile = sparseCache.open("video.mp4", cacheFile);
+        Assert.assertEquals(6, sparseFile.getBlockCount());
+
+        //跨越第1,2块的区间只下载这两块
+        long start = BLOCK_SIZE + BLOCK_SIZE / 2;
+        Assert.assertArrayEquals(Arrays.copyOfRange(data, (int) start, (int) start + BLOCK_SIZE), read(sparseFile, start, BLOCK_SIZE));
+        Assert.assertEquals(2, sparseFile.getBlockCachedCount());
+        Assert.assertFalse(cacheFile.exists());
+
+        //重新打开时沿用已下载的块
+        SparseFile reopen = new SparseCache(BLOCK_SIZE, strategy, new FileFillRegistry(), (entry, file) -> completeCount.incrementAndGet())
+                .open("video.mp4", cacheFile);
+        Assert.assertEquals(2, reopen.getBlockCachedCount());
+        Assert.assertEquals(sparseFile.getEntry().getETag(), reopen.getEntry().getETag());
+
+        //全部块下载完成后转为完整缓存
+        Assert.assertArrayEquals(data, read(reopen, 0, data.length));
+        Assert.assertTrue(reopen.isComplete());
+        Assert.assertEquals(1, completeCount.get());
+        Assert.assertArrayEquals(data, Files.readAllBytes(cacheFile.toPath()));
+        Assert.assertFalse(SparseFile.dataOf(cacheFile).exists());
+        CacheEntry entry = CacheManifest.read("video.mp4", cacheFile);
+        Assert.assertEquals(data.length, entry.getSize());
+        Assert.assertEquals(reopen.getEntry().getETag(), entry.getETag());
+    }
+
+    /**
+     * 完整文件已缓存时有请求正在读取稀疏文件,读取结束后再删除
+     */
+    @Test
+    public void removeWhileReadingTest() throws Exception {
+        LocalStrategy strategy = new LocalStrategy(new String[]{sourceDir.getAbsolutePath()});
+        File cacheFile = new File(cacheDir, "video.mp4");
+        SparseCache sparseCache = new SparseCache(BLOCK_SIZE, strategy, new FileFillRegistry(), (entry, file) -> {
+        });
+        SparseFile sparseFile = sparseCache.open("video.mp4", cacheFile);
+        CountDownLatch reading = new CountDownLatch(1), resume = new CountDownLatch(1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WritableByteChannel target = new WritableByteChannel() {
+            private final WritableByteChannel delegate = Channels.newChannel(out);
+
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                reading.countDown();
+                try {
+                    resume.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return delegate.write(src);
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> reader = pool.submit(() -> {
+                sparseFile.transferTo(0, 2 * BLOCK_SIZE, target);
+                return null;
+            });
+            Assert.assertTrue(reading.await(5, TimeUnit.SECONDS));
+            sparseCache.remove("video.mp4", cacheFile);
+            Assert.assertFalse(sparseFile.isValid());
+            Assert.assertTrue(SparseFile.dataOf(cacheFile).exists());
+            resume.countDown();
+            reader.get(5, TimeUnit.SECONDS);
+            Assert.assertArrayEquals(Arrays.copyOfRange(data, 0, 2 * BLOCK_SIZE), out.toByteArray());
+            Assert.assertFalse(SparseFile.dataOf(cacheFile).exists());
+        } finally {
+            resume.countDown();
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 后端文件被同样大小的文件覆盖(修改时间变化), 或后端不提供crc32及修改时间时, 重新打开不沿用已下载的块
+     */
+    @Test
+    public void staleTest() throws Exception {
+        LocalStrategy strategy = new LocalStrategy(new String[]{sourceDir.getAbsolutePath()});
+        File cacheFile = new File(cacheDir, "video.mp4");
+        SparseCache sparseCache = new SparseCache(BLOCK_SIZE, strategy, new FileFillRegistry(), (entry, file) -> {
+        });
+        read(sparseCache.open("video.mp4", cacheFile), 0, BLOCK_SIZE);
+
+        File source = new File(sourceDir, "video.mp4");
+        byte[] overwrite = new byte[data.length];
+        new Random(2).nextBytes(overwrite);
+        Files.write(source.toPath(), overwrite);
+        source.setLastModified(source.lastModified() + 60000);
+        SparseFile reopen = new SparseCache(BLOCK_SIZE, strategy, new FileFillRegistry(), (entry, file) -> {
+        }).open("video.mp4", cacheFile);
+        Assert.assertEquals(0, reopen.getBlockCachedCount());
+        Assert.assertArrayEquals(Arrays.copyOfRange(overwrite, 0, BLOCK_SIZE), read(reopen, 0, BLOCK_SIZE));
+
+        LocalStrategy unknown = new LocalStrategy(new String[]{sourceDir.getAbsolutePath()}) {
+            @Override
+            public CacheEntry meta(String src) throws Exception {
+                return new CacheEntry(src, data.length, -1, -1);
+            }
+        };
+        SparseCache unknownCache = new SparseCache(BLOCK_SIZE, unknown, new FileFillRegistry(), (entry, file) -> {
+        });
+        Assert.assertEquals(0, unknownCache.open("video.mp4", cacheFile).getBlockCachedCount());
+    }
+
+    private byte[] read(SparseFile sparseFile, long position, long count) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sparseFile.transferTo(position, count, Channels.newChannel(out));
+        return out.toByteArray();
+    }
+}
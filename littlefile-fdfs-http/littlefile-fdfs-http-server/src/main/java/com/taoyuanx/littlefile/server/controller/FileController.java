@@ -25,8 +25,9 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.*;
 import java.net.URLEncoder;
-import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Objects;
 
 
@@ -41,8 +42,6 @@ public class FileController {
     @Autowired
     FileProperties fileProperties;
 
-    private static final int BUFFER_SIZE = 4 << 20;
-
     @ApiOperation(value = "上传文件", notes = "上传文件")
     @PostMapping(value = "/upload")
     public Result uploadFile(
@@ -120,6 +119,7 @@ public class FileController {
         }
         response.setHeader("Content-type", "application/octet-stream");
         response.setHeader("Content-Disposition", "attachment;fileName=" + tempFile.getName());
+        response.setContentLengthLong(tempFile.length());
         transferToOutStream(tempFile, response.getOutputStream());
     }
 
@@ -221,15 +221,21 @@ public class FileController {
 
     }
 
+    /**
+     * 通过 FileChannel.transferTo 输出文件,避免每次请求分配大块堆内缓冲区
+     */
     private void transferToOutStream(File tempFile, OutputStream outputStream) throws Exception {
-        RandomAccessFile dest = new RandomAccessFile(tempFile, "r");
-        FileChannel channel = dest.getChannel();
-        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
-        int len = 0;
-        while ((len = channel.read(buffer)) > 0) {
-            buffer.flip();
-            outputStream.write(buffer.array(), 0, len);
-            buffer.clear();
+        try (RandomAccessFile dest = new RandomAccessFile(tempFile, "r");
+             FileChannel channel = dest.getChannel()) {
+            WritableByteChannel target = Channels.newChannel(outputStream);
+            long size = channel.size(), position = 0;
+            while (position < size) {
+                long len = channel.transferTo(position, size - position, target);
+                if (len <= 0) {
+                    break;
+                }
+                position += len;
+            }
         }
     }
 
@@ -23,7 +23,7 @@ public class LittleFileBootConfig {
         return littleFileConfig;
     }
 
-    @Bean
+    @Bean(destroyMethod = "destroy")
     @Autowired
     public FileHandler fileHandler(LittleFileConfig littleFileConfig) {
         // 配置缓存目录地址
@@ -38,25 +38,45 @@ public class LittleFileBootConfig {
         String absloulteCacheFileDIR = cacheDirFile.getAbsolutePath();
         boolean gzip = littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_GZIP);
         String url_format = littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILEHANDLE_URL_FORMAT);
+        FileHandler fileHandler = null;
         if (littleFileConfig.getTokenManager() != null) {
             Long tokenExpireMin = littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_TOKEN_EXPIRE_MIN);
-            return new FileHandler(absloulteCacheFileDIR,
+            fileHandler = new FileHandler(absloulteCacheFileDIR,
                     littleFileConfig.getFileDownStrategy(absloulteCacheFileDIR), gzip,
                     littleFileConfig.getTokenManager()
                     , tokenExpireMin, url_format);
 
         } else {
-            return new FileHandler(absloulteCacheFileDIR, littleFileConfig.getFileDownStrategy(absloulteCacheFileDIR), gzip, url_format);
+            fileHandler = new FileHandler(absloulteCacheFileDIR, littleFileConfig.getFileDownStrategy(absloulteCacheFileDIR), gzip, url_format);
         }
+        fileHandler.setFillTimeout(littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_FILL_TIMEOUT));
+        fileHandler.setStreamThrough(littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_STREAM_THROUGH),
+                littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_FILL_THREAD_NUM));
+        fileHandler.setAsync(littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_ASYNC),
+                littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_FILL_THREAD_NUM));
+        fileHandler.setSparseBlockSize(littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_SPARSE_BLOCK_KB));
+        fileHandler.setMemoryCache(littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_MEMORY_CACHE_MB),
+                littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_MEMORY_OBJECT_KB));
+        fileHandler.setAdmissionThreshold(littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_ADMISSION_THRESHOLD));
+        fileHandler.setNegativeCache(littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_NEGATIVE_CACHE_TIME),
+                littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_NEGATIVE_CACHE_SIZE));
+        fileHandler.setIoExecutor(littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_IO_THREAD_NUM),
+                littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_IO_QUEUE_SIZE));
+        fileHandler.setPrefetch(littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_PREFETCH_THREAD_NUM),
+                littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_PREFETCH_ON_SIGN));
+        return fileHandler;
     }
 
     @Bean(destroyMethod = "stop")
     @Autowired
     public FileClean fileClean(LittleFileConfig littleFileConfig, FileHandler fileHandler) {
-        FileClean fileClean = littleFileConfig.getFileClean(fileHandler.getCacheDir());
+        FileClean fileClean = littleFileConfig.getFileClean(fileHandler.getCacheDir(), fileHandler.getCacheIndex());
         if (fileClean != null) {
             fileClean.start();
+            fileHandler.setFileClean(fileClean);
         }
+        fileHandler.warmUp(littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_WARMUP_COUNT),
+                littleFileConfig.getConfig(LittleFileConfig.LITTLEFILE_FILE_WARMUP_FILE));
         return fileClean;
     }
 }
@@ -22,6 +22,10 @@ public class FileController {
 
     @RequestMapping(method = RequestMethod.GET, value = "")
     public void handleFile(HttpServletRequest req, HttpServletResponse resp) {
+        if (fileHandler.isAsync() && req.isAsyncSupported()) {
+            fileHandler.handleFileAsync(resp, req);
+            return;
+        }
         fileHandler.handleFile(resp, req);
     }
 }